@@ -14,6 +14,7 @@ package org.sonatype.nexus.repository.composer;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Optional;
 
 import javax.annotation.Nullable;
@@ -47,4 +48,22 @@ public interface ComposerContentFacet
   TempBlob getTempBlob(InputStream in, @Nullable String contentType);
 
   void setCacheInfo(String path, Content content, CacheInfo cacheInfo) throws IOException;
+
+  /**
+   * Records the {@code Last-Modified} and {@code ETag} header values the remote sent for the given (stored) content,
+   * so that later revalidations of the content can be conditional. Both values being {@code null} clears them.
+   */
+  void setUpstreamValidators(String path, Content content, @Nullable String lastModified, @Nullable String etag);
+
+  /**
+   * Records the version sort key of the components stored without one, such as those stored by earlier versions of
+   * the format, returning the number of components updated.
+   */
+  int updateMissingSortKeys();
+
+  /**
+   * Returns the names ({@code vendor/project}) of up to {@code limit} packages in namespace and name order, starting
+   * after the given package name, or with the first package when none is given.
+   */
+  List<String> browsePackageNames(int limit, @Nullable String lastPackageName);
 }
@@ -39,10 +39,21 @@ public interface ComposerHostedFacet
 
   Content getPackageJson(String vendor, String project) throws IOException;
 
-  Optional<Content> rebuildPackageJson(String vendor, String project) throws IOException;
+  /**
+   * Rebuilds the package JSON of a package listing either its stable or its dev versions.
+   */
+  Optional<Content> rebuildPackageJson(String vendor, String project, boolean devVersions) throws IOException;
 
   Optional<Content> rebuildProviderJson(String vendor, String project) throws IOException;
 
+  /**
+   * Builds the package JSON of every package whose package JSON is missing, such as after a migration or after the
+   * metadata assets were purged, and rebuilds package JSON stored before dev versions were split off into the
+   * {@code ~dev} package JSON. Provider JSON is left to be derived when a v1 client asks for it. Returns the number of
+   * documents built or rebuilt.
+   */
+  int materializeMissingMetadata() throws IOException;
+
   @Nullable
   Content getZipball(String path) throws IOException;
 }
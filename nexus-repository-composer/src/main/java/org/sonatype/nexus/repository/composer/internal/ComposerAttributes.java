@@ -54,4 +54,12 @@ public final class ComposerAttributes
   public static final String P_VENDOR = "vendor";
 
   public static final String P_PROJECT = "project";
+
+  public static final String P_UPSTREAM = "upstream";
+
+  public static final String P_LAST_MODIFIED = "last_modified";
+
+  public static final String P_ETAG = "etag";
+
+  public static final String P_CHANGES_SINCE = "changes_since";
 }
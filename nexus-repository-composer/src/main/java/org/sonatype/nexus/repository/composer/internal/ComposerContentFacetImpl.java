@@ -12,31 +12,48 @@
  */
 package org.sonatype.nexus.repository.composer.internal;
 
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.common.entity.Continuation;
 import org.sonatype.nexus.common.hash.HashAlgorithm;
 import org.sonatype.nexus.repository.cache.CacheInfo;
 import org.sonatype.nexus.repository.composer.AssetKind;
 import org.sonatype.nexus.repository.composer.ComposerContentFacet;
 import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Span;
+import org.sonatype.nexus.repository.composer.store.ComposerComponentStore;
 import org.sonatype.nexus.repository.content.Asset;
 import org.sonatype.nexus.repository.content.facet.ContentFacetSupport;
 import org.sonatype.nexus.repository.content.fluent.FluentAsset;
 import org.sonatype.nexus.repository.content.fluent.FluentComponent;
+import org.sonatype.nexus.repository.content.fluent.FluentComponentBuilder;
+import org.sonatype.nexus.repository.content.fluent.FluentQuery;
 import org.sonatype.nexus.repository.content.store.FormatStoreManager;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.repository.view.Payload;
 import org.sonatype.nexus.repository.view.payloads.TempBlob;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.emptyMap;
 import static org.sonatype.nexus.common.hash.HashAlgorithm.*;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_ETAG;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_LAST_MODIFIED;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_UPSTREAM;
 import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.normalizeAssetPath;
 import static org.sonatype.nexus.repository.composer.internal.recipe.ComposerRecipeSupport.*;
 
@@ -50,8 +67,15 @@ public class ComposerContentFacetImpl
 {
   public static final List<HashAlgorithm> hashAlgorithms = Arrays.asList(MD5, SHA1, SHA256);
 
+  @VisibleForTesting
+  static final String MISSING_SORT_KEY_FILTER = "sort_key IS NULL";
+
+  private static final int SORT_KEY_PAGE_SIZE = 100;
+
   private final ComposerFormatAttributesExtractor composerFormatAttributesExtractor;
 
+  private ComposerTracer tracer = ComposerTracer.DISABLED;
+
   @Inject
   public ComposerContentFacetImpl(@Named(ComposerFormat.NAME) final FormatStoreManager formatStoreManager,
                                   final ComposerFormatAttributesExtractor composerFormatAttributesExtractor)
@@ -60,6 +84,11 @@ public class ComposerContentFacetImpl
     this.composerFormatAttributesExtractor = composerFormatAttributesExtractor;
   }
 
+  @Inject
+  public void setTracer(final ComposerTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
   @Override
   public Optional<FluentAsset> getAsset(final String path) {
     return assets().path(path).find();
@@ -72,7 +101,7 @@ public class ComposerContentFacetImpl
 
   @Override
   public Content put(final String path, final Payload payload, final AssetKind assetKind) throws IOException {
-    try (TempBlob tempBlob = getTempBlob(payload)) {
+    try (Span span = tracer.span("store", path); TempBlob tempBlob = getTempBlob(payload)) {
       FluentAsset asset;
       switch (assetKind) {
         case ZIPBALL:
@@ -98,7 +127,7 @@ public class ComposerContentFacetImpl
   public FluentAsset put(final String path, final Payload payload, final String sourceType, final String sourceUrl,
                          final String sourceReference) throws IOException
   {
-    try (TempBlob tempBlob = blobs().ingest(payload, hashAlgorithms)) {
+    try (Span span = tracer.span("store", path); TempBlob tempBlob = blobs().ingest(payload, hashAlgorithms)) {
       return findOrCreateContentAsset(path, tempBlob, AssetKind.ZIPBALL, sourceType, sourceUrl, sourceReference);
     }
   }
@@ -126,6 +155,34 @@ public class ComposerContentFacetImpl
     assets().with(asset).markAsCached(cacheInfo);
   }
 
+  @Override
+  public void setUpstreamValidators(final String path,
+                                    final Content content,
+                                    @Nullable final String lastModified,
+                                    @Nullable final String etag)
+  {
+    Asset asset = content.getAttributes().get(Asset.class);
+    if (asset == null) {
+      log.debug("Attempting to set upstream validators for non-existent Composer asset {}", path);
+      return;
+    }
+
+    Map<String, Object> validators = new HashMap<>();
+    if (lastModified != null) {
+      validators.put(P_LAST_MODIFIED, lastModified);
+    }
+    if (etag != null) {
+      validators.put(P_ETAG, etag);
+    }
+
+    if (validators.isEmpty()) {
+      assets().with(asset).withoutAttribute(P_UPSTREAM);
+    }
+    else {
+      assets().with(asset).withAttribute(P_UPSTREAM, validators);
+    }
+  }
+
   protected FluentAsset findOrCreateMetadataAsset(final String path, final TempBlob tempBlob, final AssetKind assetKind) {
     return assets()
         .path(path)
@@ -146,18 +203,20 @@ public class ComposerContentFacetImpl
     String name = parts[2];
     String version = parts[3];
 
-    FluentComponent component = findOrCreateComponent(group, name, version);
+    Map<String, Object> attributes = new LinkedHashMap<>();
     if (sourceType != null) {
-      component = component.withAttribute(SOURCE_TYPE_FIELD_NAME, sourceType);
+      attributes.put(SOURCE_TYPE_FIELD_NAME, sourceType);
     }
     if (sourceUrl != null) {
-      component = component.withAttribute(SOURCE_URL_FIELD_NAME, sourceUrl);
+      attributes.put(SOURCE_URL_FIELD_NAME, sourceUrl);
     }
     if (sourceReference != null) {
-      component = component.withAttribute(SOURCE_REFERENCE_FIELD_NAME, sourceReference);
+      attributes.put(SOURCE_REFERENCE_FIELD_NAME, sourceReference);
     }
+    attributes.putAll(composerFormatAttributesExtractor.extractFromZip(tempBlob));
 
-    component = composerFormatAttributesExtractor.extractFromZip(tempBlob, component);
+    FluentComponent component = withChangedAttributes(findOrCreateComponent(group, name, version, attributes),
+        attributes);
 
     return assets()
         .path(normalizeAssetPath(path))
@@ -168,12 +227,71 @@ public class ComposerContentFacetImpl
 
   }
 
-  private FluentComponent findOrCreateComponent(final String vendor, final String project, final String version) {
-    return components()
+  /**
+   * Finds or creates the component, creating it together with the given attributes so a new component is written
+   * once, and records the {@link ComposerVersionComparator#sortKey(String) sort key} of its version.
+   */
+  private FluentComponent findOrCreateComponent(final String vendor,
+                                                final String project,
+                                                final String version,
+                                                final Map<String, Object> attributes)
+  {
+    FluentComponentBuilder builder = components()
         .name(project)
         .version(version)
         .normalizedVersion(versionNormalizerService().getNormalizedVersionByFormat(version, repository().getFormat()))
-        .namespace(vendor)
-        .getOrCreate();
+        .namespace(vendor);
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      builder = builder.attributes(attribute.getKey(), attribute.getValue());
+    }
+    FluentComponent component = builder.getOrCreate();
+    componentStore().updateSortKey(component, ComposerVersionComparator.sortKey(version));
+    return component;
+  }
+
+  @Override
+  public int updateMissingSortKeys() {
+    ComposerComponentStore componentStore = componentStore();
+    FluentQuery<FluentComponent> query = components().byFilter(MISSING_SORT_KEY_FILTER, emptyMap());
+    int updated = 0;
+    Continuation<FluentComponent> page = query.browse(SORT_KEY_PAGE_SIZE, null);
+    while (!page.isEmpty()) {
+      for (FluentComponent component : page) {
+        componentStore.updateSortKey(component, ComposerVersionComparator.sortKey(component.version()));
+        updated++;
+      }
+      page = query.browse(SORT_KEY_PAGE_SIZE, page.nextContinuationToken());
+    }
+    return updated;
+  }
+
+  @Override
+  public List<String> browsePackageNames(final int limit, @Nullable final String lastPackageName) {
+    if (lastPackageName == null) {
+      return componentStore().browsePackageNames(contentRepositoryId(), limit, null, null);
+    }
+    int slash = lastPackageName.indexOf('/');
+    return componentStore().browsePackageNames(contentRepositoryId(), limit, lastPackageName.substring(0, slash),
+        lastPackageName.substring(slash + 1));
+  }
+
+  @VisibleForTesting
+  ComposerComponentStore componentStore() {
+    return (ComposerComponentStore) stores().componentStore;
+  }
+
+  /**
+   * Writes those of the given attributes whose values differ from the component's, which for a component that was
+   * just created with them, or one re-uploaded unchanged, are none.
+   */
+  @VisibleForTesting
+  static FluentComponent withChangedAttributes(FluentComponent component, final Map<String, Object> attributes) {
+    NestedAttributesMap current = component.attributes();
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      if (!Objects.equals(current.get(attribute.getKey()), attribute.getValue())) {
+        component = component.withAttribute(attribute.getKey(), attribute.getValue());
+      }
+    }
+    return component;
   }
 }
@@ -15,6 +15,7 @@ package org.sonatype.nexus.repository.composer.internal;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,8 +24,6 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.goodies.common.ComponentSupport;
-import org.sonatype.nexus.common.collect.NestedAttributesMap;
-import org.sonatype.nexus.repository.content.fluent.FluentComponent;
 import org.sonatype.nexus.repository.view.payloads.TempBlob;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -113,18 +112,20 @@ public class ComposerFormatAttributesExtractor
   }
 
   /**
-   * Populates an asset's format attributes with the content contained in a composer.json file in the zip archive. This
-   * does not extract all JSON entries, but does try to extract those that could be viewed as more "interesting" from
-   * the standpoint of the repository manager.
+   * Extracts the format attributes of a component from the composer.json file in the zip archive. This does not
+   * extract all JSON entries, but does try to extract those that could be viewed as more "interesting" from the
+   * standpoint of the repository manager. The attributes are returned together so they can be written to the component
+   * at once rather than one field at a time.
    */
-  public FluentComponent extractFromZip(final TempBlob tempBlob, FluentComponent component) throws IOException {
+  public Map<String, Object> extractFromZip(final TempBlob tempBlob) throws IOException {
+    Map<String, Object> attributes = new LinkedHashMap<>();
     Map<String, Object> contents = composerJsonExtractor.extractFromZip(tempBlob.getBlob());
     if (!contents.isEmpty()) {
-      component = extractStrings(contents, component, STRINGS_MAPPING);
-      component = extractAuthors(contents, component);
-      component = extractSupport(contents, component);
+      extractStrings(contents, attributes, STRINGS_MAPPING);
+      extractAuthors(contents, attributes);
+      extractSupport(contents, attributes);
     }
-    return component;
+    return attributes;
   }
 
   /**
@@ -132,14 +133,14 @@ public class ComposerFormatAttributesExtractor
    * is encountered, any string items within the collection are added to a list and stored as a collection of strings.
    */
   @VisibleForTesting
-  FluentComponent extractStrings(final Map<String, Object> source,
-                      FluentComponent component,
+  void extractStrings(final Map<String, Object> source,
+                      final Map<String, Object> attributes,
                       final Map<String, String> mappings)
   {
     for (Map.Entry<String, String> mapping : mappings.entrySet()) {
       Object sourceValue = source.get(mapping.getKey());
       if (sourceValue instanceof String) {
-        component = component.withAttribute(mapping.getValue(), sourceValue);
+        attributes.put(mapping.getValue(), sourceValue);
       }
       else if (sourceValue instanceof Collection) {
         List<String> entries = new ArrayList<>();
@@ -149,19 +150,17 @@ public class ComposerFormatAttributesExtractor
           }
         }
         if (!entries.isEmpty()) {
-          component = component.withAttribute(mapping.getValue(), entries);
+          attributes.put(mapping.getValue(), entries);
         }
       }
     }
-
-    return component;
   }
 
   /**
    * Extracts author contact information (except for the role) into a collection of strings.
    */
   @VisibleForTesting
-  FluentComponent extractAuthors(final Map<String, Object> contents, FluentComponent component) {
+  void extractAuthors(final Map<String, Object> contents, final Map<String, Object> attributes) {
     Object sourceValue = contents.get(AUTHORS);
     if (sourceValue instanceof Collection) {
       List<String> authors = new ArrayList<>();
@@ -177,10 +176,9 @@ public class ComposerFormatAttributesExtractor
         }
       }
       if (!authors.isEmpty()) {
-        component = component.withAttribute(P_AUTHORS, authors);
+        attributes.put(P_AUTHORS, authors);
       }
     }
-    return component;
   }
 
   /**
@@ -202,11 +200,10 @@ public class ComposerFormatAttributesExtractor
   /**
    * Extracts the subkeys for the support entry into their own top-level format attributes.
    */
-  private FluentComponent extractSupport(final Map<String, Object> contents, final FluentComponent component) {
+  private void extractSupport(final Map<String, Object> contents, final Map<String, Object> attributes) {
     Object sourceValue = contents.get(SUPPORT);
     if (sourceValue instanceof Map) {
-      return extractStrings((Map<String, Object>) sourceValue, component, SUPPORT_MAPPING);
+      extractStrings((Map<String, Object>) sourceValue, attributes, SUPPORT_MAPPING);
     }
-    return component;
   }
 }
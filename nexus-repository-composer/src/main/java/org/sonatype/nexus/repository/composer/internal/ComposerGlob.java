@@ -0,0 +1,50 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.util.regex.Pattern;
+
+/**
+ * Utility class for the package name globs Composer uses in list filters and {@code available-package-patterns}, in
+ * which {@code *} matches any sequence of characters and every other character matches itself.
+ */
+public final class ComposerGlob
+{
+  private ComposerGlob() {
+    // utility
+  }
+
+  /**
+   * Returns a regular expression matching the same names as the glob.
+   */
+  public static String toRegex(final String glob) {
+    String[] parts = glob.split("\\*+", -1);
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < parts.length; i++) {
+      if (i > 0) {
+        regex.append(".*");
+      }
+      if (!parts[i].isEmpty()) {
+        regex.append(Pattern.quote(parts[i]));
+      }
+    }
+    return regex.toString();
+  }
+
+  /**
+   * Returns a pattern matching the same names as the glob.
+   */
+  public static Pattern toPattern(final String glob) {
+    return Pattern.compile(toRegex(glob));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerVersion;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Shared JSON codec for all Composer metadata. The object mapper, its readers and writer are built once and reused
+ * rather than per document, and so is its {@link JsonFactory}, whose default settings already recycle parser and
+ * generator buffers and canonicalize the keys repeated across versions.
+ */
+@Named
+@Singleton
+public class ComposerJsonCodec
+    extends ComponentSupport
+{
+  private final ObjectMapper mapper;
+
+  private final ObjectReader mapReader;
+
+  private final ObjectReader versionReader;
+
+  private final ObjectWriter writer;
+
+  public ComposerJsonCodec() {
+    this.mapper = new ObjectMapper();
+    this.mapReader = mapper.readerFor(new TypeReference<Map<String, Object>>() { });
+    this.versionReader = mapper.readerFor(ComposerVersion.class);
+    this.writer = mapper.writer();
+  }
+
+  public JsonFactory getFactory() {
+    return mapper.getFactory();
+  }
+
+  /**
+   * Creates a streaming parser whose values can be read with {@link #readVersion(JsonParser)}.
+   */
+  public JsonParser createParser(final InputStream in) throws IOException {
+    return mapper.getFactory().createParser(in);
+  }
+
+  /**
+   * Reads a JSON object as a map, without closing the stream.
+   */
+  public Map<String, Object> readMap(final InputStream in) throws IOException {
+    try (JsonParser parser = createParser(in)) {
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+      return mapReader.readValue(parser);
+    }
+  }
+
+  /**
+   * Reads the version object the parser is positioned at.
+   */
+  public ComposerVersion readVersion(final JsonParser parser) throws IOException {
+    return versionReader.readValue(parser);
+  }
+
+  public String writeValueAsString(final Object value) throws IOException {
+    return writer.writeValueAsString(value);
+  }
+}
@@ -18,19 +18,20 @@ import java.util.Collections;
 import java.util.Map;
 
 import javax.annotation.Nullable;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.blobstore.api.Blob;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Utility class for extracting the contents of a package's {@code composer.json} file and returning it as a map.
  */
@@ -39,12 +40,15 @@ import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 public class ComposerJsonExtractor
     extends ComponentSupport
 {
-  private final TypeReference<Map<String, Object>> typeReference = new TypeReference<Map<String, Object>>() { };
-
-  private final ObjectMapper mapper = new ObjectMapper();
+  private final ComposerJsonCodec codec;
 
   private final ArchiveStreamFactory archiveStreamFactory = new ArchiveStreamFactory();
 
+  @Inject
+  public ComposerJsonExtractor(final ComposerJsonCodec codec) {
+    this.codec = checkNotNull(codec);
+  }
+
   /**
    * Extracts the contents for the first matching {@code composer.json} file (of which there should only be one) as a
    * map representing the parsed JSON content. If no such file is found then an empty map is returned.
@@ -75,7 +79,7 @@ public class ComposerJsonExtractor
   private Map<String, Object> processEntry(final ArchiveInputStream stream, final ArchiveEntry entry) throws IOException
   {
     if (isComposerJsonFilename(entry.getName())) {
-      return mapper.readValue(stream, typeReference);
+      return codec.readMap(stream);
     }
     return Collections.emptyMap();
   }
@@ -12,8 +12,10 @@
  */
 package org.sonatype.nexus.repository.composer.internal;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.StringUtils;
 import org.sonatype.nexus.blobstore.api.Blob;
@@ -21,7 +23,13 @@ import org.sonatype.nexus.common.entity.Continuation;
 import org.sonatype.nexus.common.hash.HashAlgorithm;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.cache.CacheInfo;
+import org.sonatype.nexus.repository.composer.AssetKind;
 import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.composer.internal.ComposerMetrics.Stage;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerPackage;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerVersion;
+import org.sonatype.nexus.repository.composer.internal.model.Dist;
+import org.sonatype.nexus.repository.composer.internal.model.Source;
 import org.sonatype.nexus.repository.content.AssetBlob;
 import org.sonatype.nexus.repository.content.fluent.FluentAsset;
 import org.sonatype.nexus.repository.content.fluent.FluentComponent;
@@ -44,10 +52,14 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Collections.singletonMap;
+import static org.sonatype.nexus.repository.composer.internal.ComposerJsonMinifier.MINIFIED_KEY;
+import static org.sonatype.nexus.repository.composer.internal.ComposerJsonMinifier.V2_FORMAT;
 import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildZipballPath;
 import static org.sonatype.nexus.repository.composer.internal.recipe.ComposerRecipeSupport.*;
 
@@ -78,8 +90,6 @@ public class ComposerJsonProcessor
 
   private static final String DESCRIPTION_KEY = "description";
 
-  private static final String DIST_KEY = "dist";
-
   private static final String EXTRA_KEY = "extra";
 
   private static final String HOMEPAGE_KEY = "homepage";
@@ -109,34 +119,20 @@ public class ComposerJsonProcessor
 
   private static final String REPLACE_KEY = "replace";
 
-  private static final String REFERENCE_KEY = "reference";
-
   private static final String REQUIRE_KEY = "require";
 
   private static final String REQUIRE_DEV_KEY = "require-dev";
 
-  private static final String SHASUM_KEY = "shasum";
-
   private static final String SCRIPTS_KEY = "scripts";
 
-  private static final String SOURCE_KEY = "source";
-
   private static final String SUGGEST_KEY = "suggest";
 
   private static final String SUPPORT_KEY = "support";
 
   private static final String TYPE_KEY = "type";
 
-  private static final String URL_KEY = "url";
-
-  private static final String NAME_KEY = "name";
-
-  private static final String VERSION_KEY = "version";
-
   private static final String TARGET_DIR_KEY = "target-dir";
 
-  private static final String TIME_KEY = "time";
-
   private static final String UID_KEY = "uid";
 
   private static final String ZIP_TYPE = "zip";
@@ -152,24 +148,64 @@ public class ComposerJsonProcessor
       AVAILABLE_PACKAGE_PATTERNS_KEY
   );
 
+  /**
+   * List of fields of a version copied into built and merged package and provider JSON
+   */
+  private static final List<String> PACKAGE_INFO_FIELDS = Arrays.asList(
+      AUTOLOAD_KEY,
+      AUTOLOAD_DEV_KEY,
+      REQUIRE_KEY,
+      REPLACE_KEY,
+      REQUIRE_DEV_KEY,
+      SUGGEST_KEY,
+      AUTHORS_KEY,
+      BIN_KEY,
+      CONFLICT_KEY,
+      DESCRIPTION_KEY,
+      EXTRA_KEY,
+      HOMEPAGE_KEY,
+      INCLUDE_PATH_KEY,
+      KEYWORDS_KEY,
+      LICENSE_KEY,
+      PROVIDE_KEY,
+      TARGET_DIR_KEY,
+      SCRIPTS_KEY,
+      SUPPORT_KEY,
+      TYPE_KEY
+  );
+
+  /**
+   * Order of the versions of a package in built and merged package JSON, newest first as on Packagist
+   */
+  private static final Comparator<ComposerVersion> VERSION_ORDER =
+      Comparator.comparing(ComposerVersion::getVersion, Comparator.nullsLast(ComposerVersionComparator.NEWEST_FIRST));
+
+  private static final ObjIntConsumer<String> NO_ORIGINS = (zipballPath, index) -> { };
+
   private static final int MAX_AVAILABLE_PACKAGES = 100;
   private static final int PAGE_SIZE = 50;
 
-  private static final ObjectMapper mapper = new ObjectMapper();
-
   private static final DateTimeFormatter timeFormatter = new DateTimeFormatterBuilder()
       .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
       .parseLenient()
       .appendOffset("+HH:MM", "+00:00")
       .toFormatter();
 
+  private ComposerJsonCodec codec;
   private ComposerJsonExtractor composerJsonExtractor;
   private ComposerJsonMinifier composerJsonMinifier;
+  private ComposerMetrics metrics;
 
   @Inject
-  public ComposerJsonProcessor(final ComposerJsonExtractor composerJsonExtractor, final ComposerJsonMinifier composerJsonMinifier) {
+  public ComposerJsonProcessor(final ComposerJsonCodec codec,
+                               final ComposerJsonExtractor composerJsonExtractor,
+                               final ComposerJsonMinifier composerJsonMinifier,
+                               final ComposerMetrics metrics)
+  {
+    this.codec = checkNotNull(codec);
     this.composerJsonExtractor = checkNotNull(composerJsonExtractor);
     this.composerJsonMinifier = checkNotNull(composerJsonMinifier);
+    this.metrics = checkNotNull(metrics);
   }
 
   /**
@@ -178,16 +214,18 @@ public class ComposerJsonProcessor
    * the packages.json for the client to use.
    */
   public Content generatePackagesFromList(final Repository repository, final Payload payload) throws IOException {
-    // TODO: Parse using JSON tokens rather than loading all this into memory, it "should" work but I'd be careful.
-    Map<String, Object> listJson = parseJson(payload);
-    Content packagesJson = buildPackagesJson(repository, new LinkedHashSet<>((Collection<String>) listJson.get(PACKAGE_NAMES_KEY)));
+    try (Timer.Context timer = metrics.time(Stage.BUILD, repository, AssetKind.PACKAGES)) {
+      // TODO: Parse using JSON tokens rather than loading all this into memory, it "should" work but I'd be careful.
+      Map<String, Object> listJson = parseJson(payload);
+      Content packagesJson = buildPackagesJson(repository, new LinkedHashSet<>((Collection<String>) listJson.get(PACKAGE_NAMES_KEY)));
+
+      // Preserve caching info from list, if present.
+      if (payload instanceof Content) {
+        packagesJson.getAttributes().set(CacheInfo.class, ((Content) payload).getAttributes().get(CacheInfo.class));
+      }
 
-    // Preserve caching info from list, if present.
-    if (payload instanceof Content) {
-      packagesJson.getAttributes().set(CacheInfo.class, ((Content) payload).getAttributes().get(CacheInfo.class));
+      return packagesJson;
     }
-
-    return packagesJson;
   }
 
   /**
@@ -198,18 +236,20 @@ public class ComposerJsonProcessor
   public Content generatePackagesFromComponents(final Repository repository, final FluentComponents components)
       throws IOException
   {
-    Set<String> packages = new HashSet<>();
-
-    // Only populate "available-packages", if the repository is "small"
-    if (components.count() <= MAX_AVAILABLE_PACKAGES) {
-      Continuation<FluentComponent> comps = components.browse(PAGE_SIZE, null);
-      while (!comps.isEmpty()) {
-        comps.stream().map(comp -> comp.namespace() + "/" + comp.name()).forEach(packages::add);
-        comps = components.browse(PAGE_SIZE, comps.nextContinuationToken());
+    try (Timer.Context timer = metrics.time(Stage.BUILD, repository, AssetKind.PACKAGES)) {
+      Set<String> packages = new HashSet<>();
+
+      // Only populate "available-packages", if the repository is "small"
+      if (components.count() <= MAX_AVAILABLE_PACKAGES) {
+        Continuation<FluentComponent> comps = components.browse(PAGE_SIZE, null);
+        while (!comps.isEmpty()) {
+          comps.stream().map(comp -> comp.namespace() + "/" + comp.name()).forEach(packages::add);
+          comps = components.browse(PAGE_SIZE, comps.nextContinuationToken());
+        }
       }
-    }
 
-    return buildPackagesJson(repository, packages);
+      return buildPackagesJson(repository, packages);
+    }
   }
 
   /**
@@ -222,108 +262,109 @@ public class ComposerJsonProcessor
     if (!names.isEmpty()) {
       packagesJson.put(AVAILABLE_PACKAGES_KEY, names);
     }
-    return new Content(new StringPayload(mapper.writeValueAsString(packagesJson), ContentTypes.APPLICATION_JSON));
+    return new Content(new StringPayload(codec.writeValueAsString(packagesJson), ContentTypes.APPLICATION_JSON));
   }
 
   /**
-   * Generates a list.json file based on the components provided.
+   * Generates a list.json file listing the given package names. The names are written to the client as the response
+   * is sent, iterating them only then, so a lazily read list of names is never held in memory.
    *
-   * @param components Components to process
+   * @param packageNames Names of the packages to list, in the order to list them
    * @return JSON list with package names
    */
-  public Content generateListFromComponents(@Nullable final FluentQuery<FluentComponent> components) throws IOException {
-    Set<String> packages = new HashSet<>();
-    if (components != null) {
-      Continuation<FluentComponent> comps = components.browse(PAGE_SIZE, null);
-      while (!comps.isEmpty()) {
-        comps.stream().map(comp -> comp.namespace() + "/" + comp.name()).forEach(packages::add);
-        comps = components.browse(PAGE_SIZE, comps.nextContinuationToken());
+  public Content generateList(final Iterable<String> packageNames) {
+    return new Content(new StreamingJsonPayload(codec.getFactory(), generator -> {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart(PACKAGE_NAMES_KEY);
+      for (String packageName : packageNames) {
+        generator.writeString(packageName);
       }
-    }
-
-    Map<String, Object> packagesJson = singletonMap(PACKAGE_NAMES_KEY, packages.stream().sorted().collect(Collectors.toList()));
-
-    return new Content(new StringPayload(mapper.writeValueAsString(packagesJson), ContentTypes.APPLICATION_JSON));
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }));
   }
 
   /**
    * Rewrites the provider JSON so that source entries are removed and dist entries are pointed back to Nexus.
    */
   public Payload rewriteProviderJson(final Repository repository, final Payload payload) throws IOException {
-    Map<String, Object> json = parseJson(payload);
-    if (json.get(PACKAGES_KEY) instanceof Map) {
-      Map<String, Object> packagesMap = (Map<String, Object>) json.get(PACKAGES_KEY);
-      for (String packageName : packagesMap.keySet()) {
-        Map<String, Object> packageVersions = (Map<String, Object>) packagesMap.get(packageName);
-        for (String packageVersion : packageVersions.keySet()) {
-          // TODO: Make this more robust, right now it makes a lot of assumptions and doesn't deal with bad things well
-          Map<String, Object> versionInfo = (Map<String, Object>) packageVersions.get(packageVersion);
-          versionInfo.remove(SOURCE_KEY); // TODO: For now don't allow sources, probably should make this configurable?
-
-          Map<String, Object> distInfo = (Map<String, Object>) versionInfo.get(DIST_KEY);
-          if (distInfo != null && ZIP_TYPE.equals(distInfo.get(TYPE_KEY))) {
-            versionInfo.put(DIST_KEY,
-                buildDistInfo(repository, packageName, packageVersion, (String) distInfo.get(REFERENCE_KEY),
-                    (String) distInfo.get(SHASUM_KEY), ZIP_TYPE));
-          }
-        }
+    try (Timer.Context timer = metrics.time(Stage.REWRITE, repository, AssetKind.PROVIDER)) {
+      metrics.payloadSize(repository, AssetKind.PROVIDER, payload.getSize());
+      Map<String, Map<String, ComposerVersion>> packages = readProviderJson(payload);
+      metrics.versionCount(repository, AssetKind.PROVIDER, countVersions(packages));
+      for (Map.Entry<String, Map<String, ComposerVersion>> entry : packages.entrySet()) {
+        entry.getValue().replaceAll((packageVersion, versionInfo) ->
+            rewriteVersion(repository, entry.getKey(), packageVersion, versionInfo));
       }
+      return new StringPayload(codec.writeValueAsString(singletonMap(PACKAGES_KEY, packages)),
+          payload.getContentType());
     }
-    return new StringPayload(mapper.writeValueAsString(json), payload.getContentType());
   }
 
   /**
-   * Rewrites the provider JSON so that source entries are removed and dist entries are pointed back to Nexus.
+   * Rewrites the package JSON so that source entries are removed and dist entries are pointed back to Nexus.
    */
   public Payload rewritePackageJson(final Repository repository, final Payload payload) throws IOException {
-    Map<String, Object> json = parseJson(payload);
-
-    this.composerJsonMinifier.expand(json);
-
-    if (json.get(PACKAGES_KEY) instanceof Map) {
-      Map<String, Object> packagesMap = (Map<String, Object>) json.get(PACKAGES_KEY);
-      for (String packageName : packagesMap.keySet()) {
-        List<Map<String, Object>> packageVersions = (List<Map<String, Object>>) packagesMap.get(packageName);
-        for (Map<String, Object> versionInfo : packageVersions) {
-          // TODO: Make this more robust, right now it makes a lot of assumptions and doesn't deal with bad things well
-          versionInfo.remove(SOURCE_KEY); // TODO: For now don't allow sources, probably should make this configurable?
-
-          Map<String, Object> distInfo = (Map<String, Object>) versionInfo.get(DIST_KEY);
-          if (distInfo != null && ZIP_TYPE.equals(distInfo.get(TYPE_KEY))) {
-            versionInfo.put(DIST_KEY,
-                buildDistInfo(repository, packageName, (String) versionInfo.get(VERSION_KEY), (String) distInfo.get(REFERENCE_KEY),
-                    (String) distInfo.get(SHASUM_KEY), ZIP_TYPE));
-          }
+    try (Timer.Context timer = metrics.time(Stage.REWRITE, repository, AssetKind.PACKAGE)) {
+      metrics.payloadSize(repository, AssetKind.PACKAGE, payload.getSize());
+      List<ComposerPackage> packages = readPackageJson(repository, payload);
+      metrics.versionCount(repository, AssetKind.PACKAGE, countVersions(packages));
+
+      List<ComposerPackage> rewritten = new ArrayList<>(packages.size());
+      for (ComposerPackage composerPackage : packages) {
+        List<ComposerVersion> versions = new ArrayList<>(composerPackage.getVersions().size());
+        for (ComposerVersion versionInfo : composerPackage.getVersions()) {
+          versions.add(rewriteVersion(repository, composerPackage.getName(), versionInfo.getVersion(), versionInfo));
         }
+        rewritten.add(new ComposerPackage(composerPackage.getName(), versions));
       }
-    }
 
-    this.composerJsonMinifier.minify(json);
+      return writePackageJson(repository, rewritten, payload.getContentType());
+    }
+  }
 
-    return new StringPayload(mapper.writeValueAsString(json), payload.getContentType());
+  /**
+   * Removes the source entry of a version and points its dist entry back to Nexus if it is a zip.
+   */
+  private ComposerVersion rewriteVersion(final Repository repository,
+                                         final String packageName,
+                                         @Nullable final String packageVersion,
+                                         final ComposerVersion versionInfo)
+  {
+    // TODO: For now don't allow sources, probably should make this configurable?
+    ComposerVersion rewritten = versionInfo.withoutSource();
+    Dist dist = rewritten.getDist();
+    if (dist != null && packageVersion != null && ZIP_TYPE.equals(dist.getType())) {
+      rewritten = rewritten.withDist(
+          buildDistInfo(repository, packageName, packageVersion, dist.getReference(), dist.getShasum(), ZIP_TYPE));
+    }
+    return rewritten;
   }
 
   /**
    * Rewrites the packages JSON so that source entries are removed and dist entries are pointed back to Nexus.
    */
   public Payload rewritePackagesJson(final Repository repository, final Payload payload) throws IOException {
-    Map<String, Object> packagesJson = parseJson(payload);
+    try (Timer.Context timer = metrics.time(Stage.REWRITE, repository, AssetKind.PACKAGES)) {
+      metrics.payloadSize(repository, AssetKind.PACKAGES, payload.getSize());
+      Map<String, Object> packagesJson = parseJson(payload);
 
-    // Strip all fields we do not want to pass-through or rewrite
-    packagesJson.keySet().retainAll(PACAKGES_JSON_FIELDS);
+      // Strip all fields we do not want to pass-through or rewrite
+      packagesJson.keySet().retainAll(PACAKGES_JSON_FIELDS);
 
-    // Rewrite URLs to our proxy instance, if present in upstream response
-    if (packagesJson.containsKey(METADATA_URL_KEY)) {
-      packagesJson.put(METADATA_URL_KEY, repository.getUrl() + PACKAGE_V2_JSON_PATH);
-    }
-    if (packagesJson.containsKey(PROVIDERS_URL_KEY)) {
-      packagesJson.put(PROVIDERS_URL_KEY, repository.getUrl() + PACKAGE_JSON_PATH);
-    }
-    if (packagesJson.containsKey(LIST_KEY)) {
-      packagesJson.put(LIST_KEY, repository.getUrl() + LIST_JSON_PATH);
-    }
+      // Rewrite URLs to our proxy instance, if present in upstream response
+      if (packagesJson.containsKey(METADATA_URL_KEY)) {
+        packagesJson.put(METADATA_URL_KEY, repository.getUrl() + PACKAGE_V2_JSON_PATH);
+      }
+      if (packagesJson.containsKey(PROVIDERS_URL_KEY)) {
+        packagesJson.put(PROVIDERS_URL_KEY, repository.getUrl() + PACKAGE_JSON_PATH);
+      }
+      if (packagesJson.containsKey(LIST_KEY)) {
+        packagesJson.put(LIST_KEY, repository.getUrl() + LIST_JSON_PATH);
+      }
 
-    return new StringPayload(mapper.writeValueAsString(packagesJson), payload.getContentType());
+      return new StringPayload(codec.writeValueAsString(packagesJson), payload.getContentType());
+    }
   }
 
   private String getAttributeFromAsset(FluentAsset asset, String name) {
@@ -331,67 +372,38 @@ public class ComposerJsonProcessor
   }
 
   /**
-   * Builds a provider JSON file for a list of components. This minimal subset will contain the packages entries with
-   * the name, version, and dist information for each component. A timestamp derived from the component's last updated
-   * field and a uid derived from the component group/name/version and last updated time is also included in the JSON.
+   * Derives the provider JSON of a hosted package from its package JSON documents (the stable and the {@code ~dev}
+   * one), which hold the same versions in minified form, by expanding the versions and keying them by version. Returns
+   * nothing if the package JSON documents have no versions.
    */
-  public Optional<Content> buildProviderJson(final Repository repository,
-                                             final ComposerContentFacet content,
-                                             final FluentQuery<FluentComponent> componentQuery) throws IOException
+  public Optional<Content> buildProviderJson(final Repository repository, final List<Payload> packageJsons)
+      throws IOException
   {
-    Map<String, Map<String, Object>> packages = new LinkedHashMap<>();
-
-    Continuation<FluentComponent> components = componentQuery.browse(PAGE_SIZE, null);
-    while (!components.isEmpty()) {
-      for (FluentComponent component : components) {
-        FluentAsset asset = component.assets().stream().findFirst().orElse(null);
-        if (!asset.hasBlob()) {
-          return null;
-        }
-        AssetBlob assetBlob = asset.blob().get();
-        Blob blob = content.blobs().blob(assetBlob.blobRef()).orElse(null);
-        Map<String, Object> composerJson = composerJsonExtractor.extractFromZip(blob);
-
-        String vendor = component.namespace();
-        String project = component.name();
-        String version = component.version();
-
-        String name = vendor + "/" + project;
-        String time = formatUtc(component.lastUpdated());
-
-        if (!packages.containsKey(name)) {
-          packages.put(name, new LinkedHashMap<>());
-        }
-
-        String sha1 = assetBlob.checksums().get(HashAlgorithm.SHA1.name());
-        Map<String, Object> sourceInfo = null;
-        String sourceType = getAttributeFromAsset(asset, SOURCE_TYPE_FIELD_NAME);
-        String sourceUrl = getAttributeFromAsset(asset, SOURCE_URL_FIELD_NAME);
-        String sourceReference = getAttributeFromAsset(asset, SOURCE_REFERENCE_FIELD_NAME);
-        if (StringUtils.isNotBlank(sourceType) && StringUtils.isNotBlank(sourceUrl) && StringUtils.isNotBlank(sourceReference)) {
-          sourceInfo = new LinkedHashMap<>();
-          sourceInfo.put(TYPE_KEY, sourceType);
-          sourceInfo.put(URL_KEY, sourceUrl);
-          sourceInfo.put(REFERENCE_KEY, sourceReference);
+    try (Timer.Context timer = metrics.time(Stage.BUILD, repository, AssetKind.PROVIDER)) {
+      Map<String, Map<String, ComposerVersion>> packages = new LinkedHashMap<>();
+      for (Payload packageJson : packageJsons) {
+        for (ComposerPackage composerPackage : readPackageJson(repository, packageJson)) {
+          for (ComposerVersion versionInfo : composerPackage.getVersions()) {
+            if (versionInfo.getVersion() != null) {
+              packages.computeIfAbsent(composerPackage.getName(), name -> new LinkedHashMap<>())
+                  .put(versionInfo.getVersion(), versionInfo);
+            }
+          }
         }
-        Map<String, Object> packagesForName = packages.get(name);
-        packagesForName
-            .put(version, buildPackageInfo(repository, name, version, sha1, sha1, ZIP_TYPE, time, composerJson, sourceInfo));
       }
 
-      components = componentQuery.browse(PAGE_SIZE, components.nextContinuationToken());
-    }
+      if (packages.isEmpty()) {
+        return Optional.empty();
+      }
+      metrics.versionCount(repository, AssetKind.PROVIDER, countVersions(packages));
 
-    if (packages.isEmpty()) {
-      return Optional.empty();
+      return Optional.of(
+          new Content(
+              new StringPayload(codec.writeValueAsString(singletonMap(PACKAGES_KEY, packages)),
+                  ContentTypes.APPLICATION_JSON)
+          )
+      );
     }
-
-    return Optional.of(
-        new Content(
-            new StringPayload(mapper.writeValueAsString(singletonMap(PACKAGES_KEY, packages)),
-                ContentTypes.APPLICATION_JSON)
-        )
-    );
   }
 
   /**
@@ -403,83 +415,83 @@ public class ComposerJsonProcessor
                                             final ComposerContentFacet content,
                                             final FluentQuery<FluentComponent> componentQuery) throws IOException
   {
-    Map<String, List<Object>> packages = new LinkedHashMap<>();
-
-    Continuation<FluentComponent> components = componentQuery.browse(PAGE_SIZE, null);
-    while (!components.isEmpty()) {
-      for (FluentComponent component : components) {
-        FluentAsset asset = component.assets().stream().findFirst().orElse(null);
-        if (!asset.hasBlob()) {
-          continue;
-        }
-        AssetBlob assetBlob = asset.blob().get();
-        Blob blob = content.blobs().blob(assetBlob.blobRef()).orElse(null);
-        Map<String, Object> composerJson = composerJsonExtractor.extractFromZip(blob);
-
-        String vendor = component.namespace();
-        String project = component.name();
-        String version = component.version();
-
-        String name = vendor + "/" + project;
-        String time = formatUtc(component.lastUpdated());
-
-        if (!packages.containsKey(name)) {
-          packages.put(name, new ArrayList<>());
+    try (Timer.Context timer = metrics.time(Stage.BUILD, repository, AssetKind.PACKAGE)) {
+      Map<String, List<ComposerVersion>> packages = new LinkedHashMap<>();
+
+      Continuation<FluentComponent> components = componentQuery.browse(PAGE_SIZE, null);
+      while (!components.isEmpty()) {
+        for (FluentComponent component : components) {
+          FluentAsset asset = component.assets().stream().findFirst().orElse(null);
+          if (!asset.hasBlob()) {
+            continue;
+          }
+          ComposerVersion versionInfo = buildPackageInfo(repository, content, component, asset);
+          packages.computeIfAbsent(versionInfo.getName(), name -> new ArrayList<>()).add(versionInfo);
         }
 
-        String sha1 = assetBlob.checksums().get(HashAlgorithm.SHA1.name());
-        Map<String, Object> sourceInfo = null;
-        String sourceType = getAttributeFromAsset(asset, SOURCE_TYPE_FIELD_NAME);
-        String sourceUrl = getAttributeFromAsset(asset, SOURCE_URL_FIELD_NAME);
-        String sourceReference = getAttributeFromAsset(asset, SOURCE_REFERENCE_FIELD_NAME);
-        if (StringUtils.isNotBlank(sourceType) && StringUtils.isNotBlank(sourceUrl) && StringUtils.isNotBlank(sourceReference)) {
-          sourceInfo = new LinkedHashMap<>();
-          sourceInfo.put(TYPE_KEY, sourceType);
-          sourceInfo.put(URL_KEY, sourceUrl);
-          sourceInfo.put(REFERENCE_KEY, sourceReference);
-        }
-        List<Object> packagesForName = packages.get(name);
-        packagesForName.add(
-            buildPackageInfo(repository, name, version, sha1, sha1, ZIP_TYPE, time, composerJson, sourceInfo)
-        );
+        components = componentQuery.browse(PAGE_SIZE, components.nextContinuationToken());
       }
 
-      components = componentQuery.browse(PAGE_SIZE, components.nextContinuationToken());
-    }
+      if (packages.isEmpty()) {
+        return Optional.empty();
+      }
+      List<ComposerPackage> composerPackages = toPackages(packages);
+      metrics.versionCount(repository, AssetKind.PACKAGE, countVersions(composerPackages));
 
-    if (packages.isEmpty()) {
-      return Optional.empty();
+      return Optional.of(new Content(writePackageJson(repository, composerPackages, ContentTypes.APPLICATION_JSON)));
     }
+  }
 
-    Map<String, Object> json = new LinkedHashMap<>();
-    json.put(PACKAGES_KEY, packages);
-    this.composerJsonMinifier.minify(json);
-
-    return Optional.of(
-        new Content(new StringPayload(mapper.writeValueAsString(json), ContentTypes.APPLICATION_JSON))
-    );
+  /**
+   * Builds the version of a hosted component from the {@code composer.json} in its zipball and the attributes of its
+   * asset.
+   */
+  private ComposerVersion buildPackageInfo(final Repository repository,
+                                           final ComposerContentFacet content,
+                                           final FluentComponent component,
+                                           final FluentAsset asset) throws IOException
+  {
+    AssetBlob assetBlob = asset.blob().get();
+    Blob blob = content.blobs().blob(assetBlob.blobRef()).orElse(null);
+    Map<String, Object> composerJson = extractFromZip(repository, blob);
+
+    String name = component.namespace() + "/" + component.name();
+    String time = formatUtc(component.lastUpdated());
+    String sha1 = assetBlob.checksums().get(HashAlgorithm.SHA1.name());
+
+    Source source = null;
+    String sourceType = getAttributeFromAsset(asset, SOURCE_TYPE_FIELD_NAME);
+    String sourceUrl = getAttributeFromAsset(asset, SOURCE_URL_FIELD_NAME);
+    String sourceReference = getAttributeFromAsset(asset, SOURCE_REFERENCE_FIELD_NAME);
+    if (StringUtils.isNotBlank(sourceType) && StringUtils.isNotBlank(sourceUrl) && StringUtils.isNotBlank(sourceReference)) {
+      source = new Source(sourceType, sourceUrl, sourceReference);
+    }
+    return buildPackageInfo(repository, name, component.version(), sha1, sha1, ZIP_TYPE, time, composerJson, source);
   }
 
   /**
    * Merges an incoming set of packages.json files.
    */
   public Content mergePackagesJson(final Repository repository, final List<Payload> payloads) throws IOException {
-    boolean useAvailablePackages = true;
-    SortedSet<String> names = new TreeSet<>();
-
-    for (Payload payload : payloads) {
-      Map<String, Object> json = parseJson(payload);
-
-      // Only merge "available-packages", if all repositories provide a list
-      if (useAvailablePackages && json.containsKey(AVAILABLE_PACKAGES_KEY)) {
-        names.addAll((Collection<String>) json.get(AVAILABLE_PACKAGES_KEY));
-      } else {
-        useAvailablePackages = false;
-        names.clear();
+    try (Timer.Context timer = metrics.time(Stage.MERGE, repository, AssetKind.PACKAGES)) {
+      boolean useAvailablePackages = true;
+      SortedSet<String> names = new TreeSet<>();
+
+      for (Payload payload : payloads) {
+        metrics.payloadSize(repository, AssetKind.PACKAGES, payload.getSize());
+        Map<String, Object> json = parseJson(payload);
+
+        // Only merge "available-packages", if all repositories provide a list
+        if (useAvailablePackages && json.containsKey(AVAILABLE_PACKAGES_KEY)) {
+          names.addAll((Collection<String>) json.get(AVAILABLE_PACKAGES_KEY));
+        } else {
+          useAvailablePackages = false;
+          names.clear();
+        }
       }
-    }
 
-    return buildPackagesJson(repository, names);
+      return buildPackagesJson(repository, names);
+    }
   }
 
   /**
@@ -489,48 +501,42 @@ public class ComposerJsonProcessor
   public Content mergeProviderJson(final Repository repository, final List<Payload> payloads, final OffsetDateTime now)
       throws IOException
   {
-    String currentTime = formatUtc(now);
-
-    // TODO: Make this more robust, right now it makes a lot of assumptions and doesn't deal with bad things well,
-    // can probably consolidate this with the handling for rewrites for proxy (or at least make it more rational).
-    Map<String, Map<String, Object>> packages = new LinkedHashMap<>();
-    for (Payload payload : payloads) {
-      Map<String, Object> json = parseJson(payload);
-      if (json.get(PACKAGES_KEY) instanceof Map) {
-
-        Map<String, Object> packagesMap = (Map<String, Object>) json.get(PACKAGES_KEY);
-        for (String packageName : packagesMap.keySet()) {
-
-          Map<String, Object> packageVersions = (Map<String, Object>) packagesMap.get(packageName);
-          for (String packageVersion : packageVersions.keySet()) {
-
-            Map<String, Object> versionInfo = (Map<String, Object>) packageVersions.get(packageVersion);
-            Map<String, Object> distInfo = (Map<String, Object>) versionInfo.get(DIST_KEY);
-            if (distInfo == null) {
-              continue;
-            }
-            Map<String, Object> sourceInfo = (Map<String, Object>) versionInfo.get(SOURCE_KEY);
-
-            if (!packages.containsKey(packageName)) {
-              packages.put(packageName, new LinkedHashMap<>());
-            }
+    return mergeProviderJson(repository, payloads, now, NO_ORIGINS);
+  }
 
-            String time = (String) versionInfo.get(TIME_KEY);
-            if (time == null) {
-              time = currentTime;
+  /**
+   * Merges incoming provider JSON files like {@link #mergeProviderJson(Repository, List, OffsetDateTime)}, passing the
+   * zipball path of each merged version to {@code origins} together with the index of the payload it was taken from.
+   */
+  public Content mergeProviderJson(final Repository repository,
+                                   final List<Payload> payloads,
+                                   final OffsetDateTime now,
+                                   final ObjIntConsumer<String> origins) throws IOException
+  {
+    try (Timer.Context timer = metrics.time(Stage.MERGE, repository, AssetKind.PROVIDER)) {
+      String currentTime = formatUtc(now);
+
+      Map<String, Map<String, ComposerVersion>> packages = new LinkedHashMap<>();
+      for (int index = 0; index < payloads.size(); index++) {
+        Payload payload = payloads.get(index);
+        metrics.payloadSize(repository, AssetKind.PROVIDER, payload.getSize());
+        for (Map.Entry<String, Map<String, ComposerVersion>> entry : readProviderJson(payload).entrySet()) {
+          String packageName = entry.getKey();
+          for (Map.Entry<String, ComposerVersion> version : entry.getValue().entrySet()) {
+            ComposerVersion merged = mergeVersion(repository, packageName, version.getKey(), version.getValue(),
+                currentTime);
+            if (merged != null && packages.computeIfAbsent(packageName, name -> new LinkedHashMap<>())
+                .putIfAbsent(version.getKey(), merged) == null) {
+              origins.accept(zipballPath(packageName, version.getKey()), index);
             }
-
-            Map<String, Object> packagesForName = packages.get(packageName);
-            packagesForName.putIfAbsent(packageVersion, buildPackageInfo(repository, packageName, packageVersion,
-                (String) distInfo.get(REFERENCE_KEY), (String) distInfo.get(SHASUM_KEY),
-                (String) distInfo.get(TYPE_KEY), time, versionInfo, sourceInfo));
           }
         }
       }
-    }
 
-    return new Content(new StringPayload(mapper.writeValueAsString(singletonMap(PACKAGES_KEY, packages)),
-        ContentTypes.APPLICATION_JSON));
+      metrics.versionCount(repository, AssetKind.PROVIDER, countVersions(packages));
+      return new Content(new StringPayload(codec.writeValueAsString(singletonMap(PACKAGES_KEY, packages)),
+          ContentTypes.APPLICATION_JSON));
+    }
   }
 
   /**
@@ -540,168 +546,114 @@ public class ComposerJsonProcessor
   public Content mergePackageJson(final Repository repository, final List<Payload> payloads, final OffsetDateTime now)
       throws IOException
   {
-    String currentTime = formatUtc(now);
-
-    // TODO: Make this more robust, right now it makes a lot of assumptions and doesn't deal with bad things well,
-    // can probably consolidate this with the handling for rewrites for proxy (or at least make it more rational).
-    Map<String, Map<String, Object>> packages = new LinkedHashMap<>();
-    for (Payload payload : payloads) {
-      Map<String, Object> json = parseJson(payload);
-      this.composerJsonMinifier.expand(json);
-      if (json.get(PACKAGES_KEY) instanceof Map) {
-
-        Map<String, Object> packagesMap = (Map<String, Object>) json.get(PACKAGES_KEY);
-        for (String packageName : packagesMap.keySet()) {
-
-          List<Map<String, Object>> packageVersions = (List<Map<String, Object>>) packagesMap.get(packageName);
-          for (Map<String, Object> versionInfo : packageVersions) {
-            String packageVersion = (String) versionInfo.get(VERSION_KEY);
-
-            Map<String, Object> distInfo = (Map<String, Object>) versionInfo.get(DIST_KEY);
-            if (distInfo == null) {
-              continue;
-            }
-            Map<String, Object> sourceInfo = (Map<String, Object>) versionInfo.get(SOURCE_KEY);
-
-            if (!packages.containsKey(packageName)) {
-              packages.put(packageName, new LinkedHashMap<>());
-            }
+    return mergePackageJson(repository, payloads, now, NO_ORIGINS);
+  }
 
-            String time = (String) versionInfo.get(TIME_KEY);
-            if (time == null) {
-              time = currentTime;
+  /**
+   * Merges incoming package JSON files like {@link #mergePackageJson(Repository, List, OffsetDateTime)}, passing the
+   * zipball path of each merged version to {@code origins} together with the index of the payload it was taken from.
+   */
+  public Content mergePackageJson(final Repository repository,
+                                  final List<Payload> payloads,
+                                  final OffsetDateTime now,
+                                  final ObjIntConsumer<String> origins) throws IOException
+  {
+    try (Timer.Context timer = metrics.time(Stage.MERGE, repository, AssetKind.PACKAGE)) {
+      String currentTime = formatUtc(now);
+
+      Map<String, Map<String, ComposerVersion>> packages = new LinkedHashMap<>();
+      for (int index = 0; index < payloads.size(); index++) {
+        Payload payload = payloads.get(index);
+        metrics.payloadSize(repository, AssetKind.PACKAGE, payload.getSize());
+        for (ComposerPackage composerPackage : readPackageJson(repository, payload)) {
+          String packageName = composerPackage.getName();
+          for (ComposerVersion versionInfo : composerPackage.getVersions()) {
+            String packageVersion = versionInfo.getVersion();
+            ComposerVersion merged = packageVersion == null ? null
+                : mergeVersion(repository, packageName, packageVersion, versionInfo, currentTime);
+            if (merged != null && packages.computeIfAbsent(packageName, name -> new LinkedHashMap<>())
+                .putIfAbsent(packageVersion, merged) == null) {
+              origins.accept(zipballPath(packageName, packageVersion), index);
             }
-
-            Map<String, Object> packagesForName = packages.get(packageName);
-            packagesForName.putIfAbsent(packageVersion, buildPackageInfo(repository, packageName, packageVersion,
-                (String) distInfo.get(REFERENCE_KEY), (String) distInfo.get(SHASUM_KEY),
-                (String) distInfo.get(TYPE_KEY), time, versionInfo, sourceInfo));
           }
         }
       }
-    }
 
-    Map<String, List<Object>> packagesNormalized = new LinkedHashMap<>();
-    for (Map.Entry<String, Map<String, Object>> pkg : packages.entrySet()) {
-      packagesNormalized.put(pkg.getKey(), new ArrayList<>(pkg.getValue().values()));
+      Map<String, List<ComposerVersion>> packagesNormalized = new LinkedHashMap<>();
+      for (Map.Entry<String, Map<String, ComposerVersion>> pkg : packages.entrySet()) {
+        packagesNormalized.put(pkg.getKey(), new ArrayList<>(pkg.getValue().values()));
+      }
+      List<ComposerPackage> composerPackages = toPackages(packagesNormalized);
+
+      metrics.versionCount(repository, AssetKind.PACKAGE, countVersions(composerPackages));
+
+      return new Content(writePackageJson(repository, composerPackages, ContentTypes.APPLICATION_JSON));
     }
+  }
 
-    Map<String, Object> json = new LinkedHashMap<>();
-    json.put(PACKAGES_KEY, packagesNormalized);
-    this.composerJsonMinifier.minify(json);
-
-    return new Content(new StringPayload(mapper.writeValueAsString(json),
-        ContentTypes.APPLICATION_JSON));
-  }
-
-  private Map<String, Object> buildPackageInfo(final Repository repository,
-                                               final String packageName,
-                                               final String packageVersion,
-                                               final String reference,
-                                               final String shasum,
-                                               final String type,
-                                               final String time,
-                                               final Map<String, Object> versionInfo,
-                                               final Map<String, Object> sourceInfo)
+  /**
+   * Builds the merged form of a member's version, or returns {@code null} if it has no dist entry.
+   */
+  @Nullable
+  private ComposerVersion mergeVersion(final Repository repository,
+                                       final String packageName,
+                                       final String packageVersion,
+                                       final ComposerVersion versionInfo,
+                                       final String currentTime)
   {
-    Map<String, Object> newPackageInfo = new LinkedHashMap<>();
-    newPackageInfo.put(NAME_KEY, packageName);
-    newPackageInfo.put(VERSION_KEY, packageVersion);
-    newPackageInfo.put(DIST_KEY, buildDistInfo(repository, packageName, packageVersion, reference, shasum, type));
-    if (sourceInfo != null) {
-      newPackageInfo.put(SOURCE_KEY, sourceInfo);
-    }
-    newPackageInfo.put(TIME_KEY, time);
-    newPackageInfo.put(UID_KEY, Integer.toUnsignedLong(
-        Hashing.md5().newHasher()
-            .putString(packageName, StandardCharsets.UTF_8)
-            .putString(packageVersion, StandardCharsets.UTF_8)
-            .putString(time, StandardCharsets.UTF_8)
-            .hash()
-            .asInt()));
-
-    if (versionInfo.containsKey(AUTOLOAD_KEY)) {
-      newPackageInfo.put(AUTOLOAD_KEY, versionInfo.get(AUTOLOAD_KEY));
-    }
-    if (versionInfo.containsKey(AUTOLOAD_DEV_KEY)) {
-      newPackageInfo.put(AUTOLOAD_DEV_KEY, versionInfo.get(AUTOLOAD_DEV_KEY));
-    }
-    if (versionInfo.containsKey(REQUIRE_KEY)) {
-      newPackageInfo.put(REQUIRE_KEY, versionInfo.get(REQUIRE_KEY));
-    }
-    if (versionInfo.containsKey(REPLACE_KEY)) {
-      newPackageInfo.put(REPLACE_KEY, versionInfo.get(REPLACE_KEY));
-    }
-    if (versionInfo.containsKey(REQUIRE_DEV_KEY)) {
-      newPackageInfo.put(REQUIRE_DEV_KEY, versionInfo.get(REQUIRE_DEV_KEY));
-    }
-    if (versionInfo.containsKey(SUGGEST_KEY)) {
-      newPackageInfo.put(SUGGEST_KEY, versionInfo.get(SUGGEST_KEY));
+    Dist dist = versionInfo.getDist();
+    if (dist == null) {
+      return null;
     }
+    String time = versionInfo.getTime() != null ? versionInfo.getTime() : currentTime;
+    return buildPackageInfo(repository, packageName, packageVersion, dist.getReference(), dist.getShasum(),
+        dist.getType(), time, versionInfo.getAttributes(), versionInfo.getSource());
+  }
 
-    if (versionInfo.containsKey(AUTHORS_KEY)) {
-      newPackageInfo.put(AUTHORS_KEY, versionInfo.get(AUTHORS_KEY));
-    }
-    if (versionInfo.containsKey(BIN_KEY)) {
-      newPackageInfo.put(BIN_KEY, versionInfo.get(BIN_KEY));
-    }
-    if (versionInfo.containsKey(CONFLICT_KEY)) {
-      newPackageInfo.put(CONFLICT_KEY, versionInfo.get(CONFLICT_KEY));
-    }
-    if (versionInfo.containsKey(DESCRIPTION_KEY)) {
-      newPackageInfo.put(DESCRIPTION_KEY, versionInfo.get(DESCRIPTION_KEY));
-    }
-    if (versionInfo.containsKey(EXTRA_KEY)) {
-      newPackageInfo.put(EXTRA_KEY, versionInfo.get(EXTRA_KEY));
-    }
-    if (versionInfo.containsKey(HOMEPAGE_KEY)) {
-      newPackageInfo.put(HOMEPAGE_KEY, versionInfo.get(HOMEPAGE_KEY));
-    }
-    if (versionInfo.containsKey(INCLUDE_PATH_KEY)) {
-      newPackageInfo.put(INCLUDE_PATH_KEY, versionInfo.get(INCLUDE_PATH_KEY));
-    }
-    if (versionInfo.containsKey(KEYWORDS_KEY)) {
-      newPackageInfo.put(KEYWORDS_KEY, versionInfo.get(KEYWORDS_KEY));
-    }
-    if (versionInfo.containsKey(LICENSE_KEY)) {
-      newPackageInfo.put(LICENSE_KEY, versionInfo.get(LICENSE_KEY));
-    }
-    if (versionInfo.containsKey(PROVIDE_KEY)) {
-      newPackageInfo.put(PROVIDE_KEY, versionInfo.get(PROVIDE_KEY));
-    }
-    if (versionInfo.containsKey(TARGET_DIR_KEY)) {
-      newPackageInfo.put(TARGET_DIR_KEY, versionInfo.get(TARGET_DIR_KEY));
-    }
-    if (versionInfo.containsKey(SCRIPTS_KEY)) {
-      newPackageInfo.put(SCRIPTS_KEY, versionInfo.get(SCRIPTS_KEY));
-    }
-    if (versionInfo.containsKey(SUPPORT_KEY)) {
-      newPackageInfo.put(SUPPORT_KEY, versionInfo.get(SUPPORT_KEY));
-    }
-    if (versionInfo.containsKey(TYPE_KEY)) {
-      newPackageInfo.put(TYPE_KEY, versionInfo.get(TYPE_KEY));
-    }
+  private ComposerVersion buildPackageInfo(final Repository repository,
+                                           final String packageName,
+                                           final String packageVersion,
+                                           final String reference,
+                                           final String shasum,
+                                           final String type,
+                                           final String time,
+                                           final Map<String, Object> versionInfo,
+                                           @Nullable final Source sourceInfo)
+  {
+    return ComposerVersion.builder()
+        .name(packageName)
+        .version(packageVersion)
+        .dist(buildDistInfo(repository, packageName, packageVersion, reference, shasum, type))
+        .source(sourceInfo)
+        .time(time)
+        .set(UID_KEY, Integer.toUnsignedLong(
+            Hashing.md5().newHasher()
+                .putString(packageName, StandardCharsets.UTF_8)
+                .putString(packageVersion, StandardCharsets.UTF_8)
+                .putString(time, StandardCharsets.UTF_8)
+                .hash()
+                .asInt()))
+        .setAll(versionInfo, PACKAGE_INFO_FIELDS)
+        .build();
+  }
 
-    return newPackageInfo;
+  private static String zipballPath(final String packageName, final String packageVersion) {
+    String[] packageNameParts = packageName.split("/");
+    return buildZipballPath(packageNameParts[0], packageNameParts[1], packageVersion);
   }
 
-  private Map<String, Object> buildDistInfo(final Repository repository,
-                                            final String packageName,
-                                            final String packageVersion,
-                                            final String reference,
-                                            final String shasum,
-                                            final String type)
+  private Dist buildDistInfo(final Repository repository,
+                             final String packageName,
+                             final String packageVersion,
+                             final String reference,
+                             final String shasum,
+                             final String type)
   {
     String packageNameParts[] = packageName.split("/");
     String packageVendor = packageNameParts[0];
     String packageProject = packageNameParts[1];
-    Map<String, Object> newDistInfo = new LinkedHashMap<>();
-    newDistInfo
-        .put(URL_KEY, repository.getUrl() + buildZipballPath(packageVendor, packageProject, packageVersion));
-    newDistInfo.put(TYPE_KEY, type);
-    newDistInfo.put(REFERENCE_KEY, reference);
-    newDistInfo.put(SHASUM_KEY, shasum);
-    return newDistInfo;
+    return new Dist(type, repository.getUrl() + buildZipballPath(packageVendor, packageProject, packageVersion),
+        reference, shasum);
   }
 
   /**
@@ -711,12 +663,12 @@ public class ComposerJsonProcessor
       throws IOException
   {
     String vendorAndProject = String.format(VENDOR_AND_PROJECT, vendor, project);
-    Map<String, Object> json = parseJson(payload);
-    Map<String, Object> packagesMap = (Map<String, Object>) json.get(PACKAGES_KEY);
-    Map<String, Object> packageInfo = (Map<String, Object>) packagesMap.get(vendorAndProject);
-    Map<String, Object> versionInfo = (Map<String, Object>) packageInfo.get(version);
-    Map<String, Object> distInfo = (Map<String, Object>) versionInfo.get(DIST_KEY);
-    return (String) distInfo.get(URL_KEY);
+    Map<String, ComposerVersion> versions = readProviderJson(payload).get(vendorAndProject);
+    ComposerVersion versionInfo = versions != null ? versions.get(version) : null;
+    if (versionInfo == null || versionInfo.getDist() == null) {
+      throw new IOException("version not found");
+    }
+    return versionInfo.getDist().getUrl();
   }
 
   /**
@@ -725,28 +677,270 @@ public class ComposerJsonProcessor
   public String getDistUrlFromPackage(final String vendor, final String project, final String version, final Payload payload)
       throws IOException
   {
-    String vendorAndProject = String.format(VENDOR_AND_PROJECT, vendor, project);
-    Map<String, Object> json = parseJson(payload);
-    composerJsonMinifier.expand(json);
-    Map<String, Object> packagesMap = (Map<String, Object>) json.get(PACKAGES_KEY);
-    List<Map<String, Object>> packageInfo = (List<Map<String, Object>>) packagesMap.get(vendorAndProject);
-
-    Map<String, Object> versionInfo = packageInfo
+    ComposerVersion versionInfo = getVersions(vendor, project, payload)
         .stream()
-        .filter((v) -> version.equals(v.get(VERSION_KEY)))
+        .filter((v) -> version.equals(v.getVersion()))
         .findFirst()
         .orElseThrow(() -> new IOException("version not found"));
 
-    Map<String, Object> distInfo = (Map<String, Object>) versionInfo.get(DIST_KEY);
-    return (String) distInfo.get(URL_KEY);
+    if (versionInfo.getDist() == null) {
+      throw new IOException("dist not found");
+    }
+    return versionInfo.getDist().getUrl();
+  }
+
+  /**
+   * Obtains the versions of a particular vendor/project within a package JSON payload, in document order, together with
+   * the names of the packages each version requires. Platform requirements such as {@code php} or {@code ext-json}
+   * are not packages and are left out.
+   */
+  public Map<String, Set<String>> getRequiredPackagesByVersion(final String vendor,
+                                                               final String project,
+                                                               final Payload payload) throws IOException
+  {
+    Map<String, Set<String>> requiredByVersion = new LinkedHashMap<>();
+    for (ComposerVersion versionInfo : getVersions(vendor, project, payload)) {
+      String version = versionInfo.getVersion();
+      if (version == null) {
+        continue;
+      }
+      Set<String> required = new LinkedHashSet<>();
+      Object require = versionInfo.getAttributes().get(REQUIRE_KEY);
+      if (require instanceof Map) {
+        for (Object name : ((Map<?, ?>) require).keySet()) {
+          if (name instanceof String && ((String) name).indexOf('/') > 0) {
+            required.add((String) name);
+          }
+        }
+      }
+      requiredByVersion.put(version, required);
+    }
+    return requiredByVersion;
+  }
+
+  /**
+   * Obtains the expanded versions of a particular vendor/project within a package JSON payload, in document order.
+   */
+  private List<ComposerVersion> getVersions(final String vendor, final String project, final Payload payload)
+      throws IOException
+  {
+    String vendorAndProject = String.format(VENDOR_AND_PROJECT, vendor, project);
+    for (ComposerPackage composerPackage : readPackageJson(null, payload)) {
+      if (vendorAndProject.equals(composerPackage.getName())) {
+        return composerPackage.getVersions();
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Obtains the packages a packages.json payload states the repository serves through its "available-packages" and
+   * "available-package-patterns", as a predicate on lowercase package names. Returns {@code null} if the repository
+   * does not restrict the packages it serves.
+   */
+  @Nullable
+  public Predicate<String> getAvailablePackages(final Payload payload) throws IOException {
+    Map<String, Object> json = parseJson(payload);
+    Object names = json.get(AVAILABLE_PACKAGES_KEY);
+    Object patterns = json.get(AVAILABLE_PACKAGE_PATTERNS_KEY);
+    if (!(names instanceof Collection) && !(patterns instanceof Collection)) {
+      return null;
+    }
+
+    Set<String> available = new HashSet<>();
+    if (names instanceof Collection) {
+      for (Object name : (Collection<?>) names) {
+        if (name instanceof String) {
+          available.add(((String) name).toLowerCase(Locale.ENGLISH));
+        }
+      }
+    }
+    StringBuilder regex = new StringBuilder();
+    if (patterns instanceof Collection) {
+      for (Object pattern : (Collection<?>) patterns) {
+        if (pattern instanceof String) {
+          regex.append(regex.length() > 0 ? "|" : "")
+              .append(ComposerGlob.toRegex(((String) pattern).toLowerCase(Locale.ENGLISH)));
+        }
+      }
+    }
+    Pattern availablePatterns = regex.length() > 0 ? Pattern.compile(regex.toString()) : null;
+    return name -> available.contains(name)
+        || (availablePatterns != null && availablePatterns.matcher(name).matches());
+  }
+
+  /**
+   * Obtains the package names listed in a list JSON payload, in document order.
+   */
+  public List<String> getPackageNames(final Payload payload) throws IOException {
+    Object packageNames = parseJson(payload).get(PACKAGE_NAMES_KEY);
+    List<String> names = new ArrayList<>();
+    if (packageNames instanceof Collection) {
+      for (Object name : (Collection<Object>) packageNames) {
+        if (name instanceof String) {
+          names.add((String) name);
+        }
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Reads the packages of a package JSON, expanding their versions if the document is minified. Top level fields other
+   * than the packages and the minified marker are skipped.
+   */
+  private List<ComposerPackage> readPackageJson(@Nullable final Repository repository, final Payload payload)
+      throws IOException
+  {
+    List<ComposerPackage> packages = new ArrayList<>();
+    boolean minified = readPackages(payload, (name, parser) -> {
+      if (parser.currentToken() != JsonToken.START_ARRAY) {
+        parser.skipChildren();
+        return;
+      }
+      List<ComposerVersion> versions = new ArrayList<>();
+      for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+        if (token == JsonToken.START_OBJECT) {
+          versions.add(codec.readVersion(parser));
+        }
+        else {
+          parser.skipChildren();
+        }
+      }
+      packages.add(new ComposerPackage(name, versions));
+    });
+
+    if (!minified) {
+      return packages;
+    }
+    try (Timer.Context timer = repository != null ? metrics.time(Stage.EXPAND, repository, AssetKind.PACKAGE) : null) {
+      List<ComposerPackage> expanded = new ArrayList<>(packages.size());
+      for (ComposerPackage composerPackage : packages) {
+        expanded.add(composerJsonMinifier.expand(composerPackage));
+      }
+      return expanded;
+    }
+  }
+
+  /**
+   * Reads the packages of a provider JSON, with their versions keyed by version. Top level fields other than the
+   * packages are skipped.
+   */
+  private Map<String, Map<String, ComposerVersion>> readProviderJson(final Payload payload) throws IOException {
+    Map<String, Map<String, ComposerVersion>> packages = new LinkedHashMap<>();
+    readPackages(payload, (name, parser) -> {
+      if (parser.currentToken() != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        return;
+      }
+      Map<String, ComposerVersion> versions = new LinkedHashMap<>();
+      for (String version = parser.nextFieldName(); version != null; version = parser.nextFieldName()) {
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+          versions.put(version, codec.readVersion(parser));
+        }
+        else {
+          parser.skipChildren();
+        }
+      }
+      packages.put(name, versions);
+    });
+    return packages;
+  }
+
+  /**
+   * Streams through the {@code packages} of a package or provider JSON, handing each package to the reader with the
+   * parser at the start of its versions. Returns whether the document is marked as minified.
+   */
+  private boolean readPackages(final Payload payload, final PackageReader reader) throws IOException {
+    boolean minified = false;
+    try (InputStream in = payload.openInputStream(); JsonParser parser = codec.createParser(in)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected a JSON object");
+      }
+      for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+        JsonToken token = parser.nextToken();
+        if (PACKAGES_KEY.equals(field) && token == JsonToken.START_OBJECT) {
+          for (String name = parser.nextFieldName(); name != null; name = parser.nextFieldName()) {
+            parser.nextToken();
+            reader.read(name, parser);
+          }
+        }
+        else if (MINIFIED_KEY.equals(field) && token == JsonToken.VALUE_STRING) {
+          minified = V2_FORMAT.equals(parser.getText());
+        }
+        else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return minified;
+  }
+
+  /**
+   * Writes a minified package JSON.
+   */
+  private Payload writePackageJson(final Repository repository,
+                                   final List<ComposerPackage> packages,
+                                   final String contentType) throws IOException
+  {
+    Map<String, List<ComposerVersion>> minified = new LinkedHashMap<>();
+    try (Timer.Context timer = metrics.time(Stage.MINIFY, repository, AssetKind.PACKAGE)) {
+      for (ComposerPackage composerPackage : packages) {
+        minified.put(composerPackage.getName(), composerJsonMinifier.minify(composerPackage).getVersions());
+      }
+    }
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put(PACKAGES_KEY, minified);
+    json.put(MINIFIED_KEY, V2_FORMAT);
+    return new StringPayload(codec.writeValueAsString(json), contentType);
+  }
+
+  /**
+   * Groups the versions into packages, ordering each package's versions newest first so that consecutive versions
+   * share as many fields as possible and minify to smaller deltas.
+   */
+  private static List<ComposerPackage> toPackages(final Map<String, List<ComposerVersion>> packages) {
+    List<ComposerPackage> composerPackages = new ArrayList<>(packages.size());
+    for (Map.Entry<String, List<ComposerVersion>> entry : packages.entrySet()) {
+      entry.getValue().sort(VERSION_ORDER);
+      composerPackages.add(new ComposerPackage(entry.getKey(), entry.getValue()));
+    }
+    return composerPackages;
+  }
+
+  private Map<String, Object> extractFromZip(final Repository repository, final Blob blob) throws IOException {
+    try (Timer.Context timer = metrics.time(Stage.EXTRACT, repository, AssetKind.ZIPBALL)) {
+      return composerJsonExtractor.extractFromZip(blob);
+    }
+  }
+
+  private static int countVersions(final List<ComposerPackage> packages) {
+    int count = 0;
+    for (ComposerPackage composerPackage : packages) {
+      count += composerPackage.getVersions().size();
+    }
+    return count;
+  }
+
+  private static int countVersions(final Map<String, Map<String, ComposerVersion>> packages) {
+    int count = 0;
+    for (Map<String, ComposerVersion> versions : packages.values()) {
+      count += versions.size();
+    }
+    return count;
+  }
+
+  /**
+   * Reads the versions of one package of a package or provider JSON.
+   */
+  private interface PackageReader
+  {
+    void read(String name, JsonParser parser) throws IOException;
   }
 
   private Map<String, Object> parseJson(final Payload payload) throws IOException {
     try (InputStream in = payload.openInputStream()) {
-      TypeReference<Map<String, Object>> typeReference = new TypeReference<Map<String, Object>>()
-      {
-      };
-      return mapper.readValue(in, typeReference);
+      return codec.readMap(in);
     }
   }
 
@@ -16,21 +16,32 @@ import com.google.common.collect.ImmutableSet;
 import org.sonatype.nexus.repository.Facet;
 import org.sonatype.nexus.repository.composer.ComposerHostedFacet;
 import org.sonatype.nexus.repository.content.Component;
+import org.sonatype.nexus.repository.content.fluent.FluentComponent;
 import org.sonatype.nexus.repository.content.maintenance.LastAssetMaintenanceFacet;
 
 import javax.inject.Named;
 import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.DEV_VERSIONS_SUFFIX;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.isDevVersion;
 
 /**
- * Facet for maintenance of Composer artifacts.
+ * Facet for maintenance of Composer artifacts. Deleting a component of a hosted repository rebuilds the metadata of its
+ * package; components deleted in bulk, such as by a cleanup policy, have the metadata of each affected package rebuilt
+ * once at the end of the batch instead of once per component.
  */
 @Facet.Exposed
 @Named
 public class ComposerMaintenanceFacet
     extends LastAssetMaintenanceFacet
 {
+  private final ThreadLocal<Set<String>> batch = new ThreadLocal<>();
+
   @Override
   public Set<String> deleteComponent(final Component component) {
     ImmutableSet.Builder<String> deletedPaths = ImmutableSet.builder();
@@ -38,26 +49,85 @@ public class ComposerMaintenanceFacet
 
     String vendor = component.namespace();
     String project = component.name();
+    boolean devVersion = isDevVersion(component.version());
+
+    Set<String> affected = batch.get();
+    if (affected != null) {
+      affected.add(packageName(component));
+      return deletedPaths.build();
+    }
 
     Optional<ComposerHostedFacet> hostedFacet = composerHosted();
     if (hostedFacet.isPresent()) {
       try {
-        if (!hostedFacet.get().rebuildPackageJson(vendor, project).isPresent()) {
-          deletedPaths.add(ComposerPathUtils.buildPackagePath(vendor, project));
+        if (!hostedFacet.get().rebuildPackageJson(vendor, project, devVersion).isPresent()) {
+          deletedPaths.add(devVersion
+              ? ComposerPathUtils.buildPackagePathForDevVersions(vendor, project)
+              : ComposerPathUtils.buildPackagePath(vendor, project));
+          deletedPaths.add(ComposerPathUtils.buildProviderPath(vendor, project));
         }
       } catch (IOException e) {
         // update failed
       }
+    }
+
+    return deletedPaths.build();
+  }
+
+  @Override
+  public int deleteComponents(final Stream<FluentComponent> components) {
+    return batched(affected -> super.deleteComponents(
+        components.peek(component -> affected.add(packageName(component)))));
+  }
+
+  /**
+   * Runs the work as one batch, collecting the package JSON documents ({@code vendor/project} or
+   * {@code vendor/project~dev}) of the components it deletes and rebuilding the metadata of
+   * each of them once when the work is done. Nested batches join the outer one.
+   */
+  public <T> T batched(final Function<Set<String>, T> work) {
+    Set<String> outer = batch.get();
+    if (outer != null) {
+      return work.apply(outer);
+    }
+    Set<String> affected = new LinkedHashSet<>();
+    batch.set(affected);
+    try {
+      return work.apply(affected);
+    }
+    finally {
+      batch.remove();
+      rebuild(affected);
+    }
+  }
+
+  private void rebuild(final Set<String> packages) {
+    Optional<ComposerHostedFacet> hostedFacet = composerHosted();
+    if (!hostedFacet.isPresent() || packages.isEmpty()) {
+      return;
+    }
+    log.debug("Rebuilding metadata of {} packages of {} after deleting their components", packages.size(),
+        getRepository().getName());
+    for (String name : packages) {
+      String[] parts = name.split("/", 2);
+      boolean devVersions = parts[1].endsWith(DEV_VERSIONS_SUFFIX);
+      String project = devVersions
+          ? parts[1].substring(0, parts[1].length() - DEV_VERSIONS_SUFFIX.length())
+          : parts[1];
       try {
-        if (!hostedFacet.get().rebuildProviderJson(vendor, project).isPresent()) {
-          deletedPaths.add(ComposerPathUtils.buildProviderPath(vendor, project));
-        }
+        hostedFacet.get().rebuildPackageJson(parts[0], project, devVersions);
       } catch (IOException e) {
-        // update failed
+        log.warn("Unable to rebuild metadata of {} in {}", name, getRepository().getName(), e);
       }
     }
+  }
 
-    return deletedPaths.build();
+  /**
+   * The name of the package JSON listing the version of the component, as in {@code vendor/project~dev}.
+   */
+  private static String packageName(final Component component) {
+    return component.namespace() + "/" + component.name()
+        + (isDevVersion(component.version()) ? DEV_VERSIONS_SUFFIX : "");
   }
 
   private Optional<ComposerHostedFacet> composerHosted() {
@@ -0,0 +1,116 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.common.event.EventAware;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.AssetKind;
+import org.sonatype.nexus.repository.manager.RepositoryDeletedEvent;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Metrics of the processing of Composer metadata, named by repository and {@link AssetKind} (for example
+ * {@code ...ComposerMetrics.composer-proxy.package.rewrite}), so the time spent processing JSON can be told apart from
+ * the time spent waiting on upstream or on blob I/O. Besides a timer per {@link Stage}, the size of the processed
+ * documents and the number of package versions they contain are recorded as histograms. The metrics of a repository
+ * are removed when it is deleted.
+ */
+@Named
+@Singleton
+public class ComposerMetrics
+    implements EventAware
+{
+  /**
+   * The stages of metadata processing that are timed.
+   */
+  public enum Stage
+  {
+    REWRITE,
+    MERGE,
+    BUILD,
+    MINIFY,
+    EXPAND,
+    EXTRACT,
+    ZIPBALL_URL;
+
+    private final String metricName = name().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static final String PAYLOAD_SIZE = "payloadSize";
+
+  private static final String VERSION_COUNT = "versionCount";
+
+  private final MetricRegistry metricRegistry;
+
+  @Inject
+  public ComposerMetrics(final MetricRegistry metricRegistry) {
+    this.metricRegistry = checkNotNull(metricRegistry);
+  }
+
+  /**
+   * Starts timing a stage, which is recorded when the returned context is closed.
+   */
+  public Timer.Context time(final Stage stage, final Repository repository, final AssetKind assetKind) {
+    return metricRegistry.timer(name(prefix(repository, assetKind), stage.metricName)).time();
+  }
+
+  /**
+   * Records the size in bytes of a processed document, unless it is unknown.
+   */
+  public void payloadSize(final Repository repository, final AssetKind assetKind, final long size) {
+    if (size >= 0L) {
+      metricRegistry.histogram(name(prefix(repository, assetKind), PAYLOAD_SIZE)).update(size);
+    }
+  }
+
+  /**
+   * Records the number of package versions in a processed document.
+   */
+  public void versionCount(final Repository repository, final AssetKind assetKind, final int count) {
+    metricRegistry.histogram(name(prefix(repository, assetKind), VERSION_COUNT)).update(count);
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryDeletedEvent event) {
+    remove(event.getRepository());
+  }
+
+  private void remove(final Repository repository) {
+    for (AssetKind assetKind : AssetKind.values()) {
+      String prefix = prefix(repository, assetKind);
+      for (Stage stage : Stage.values()) {
+        metricRegistry.remove(name(prefix, stage.metricName));
+      }
+      metricRegistry.remove(name(prefix, PAYLOAD_SIZE));
+      metricRegistry.remove(name(prefix, VERSION_COUNT));
+    }
+  }
+
+  private static String prefix(final Repository repository, final AssetKind assetKind) {
+    return name(ComposerMetrics.class, repository.getName(), assetKind.name().toLowerCase(Locale.ENGLISH));
+  }
+}
@@ -32,6 +32,11 @@ import static org.sonatype.nexus.repository.composer.internal.recipe.ComposerRec
  */
 public final class ComposerPathUtils
 {
+  /**
+   * Suffix of the project name in the path of the package JSON listing only the dev versions of a package.
+   */
+  public static final String DEV_VERSIONS_SUFFIX = "~dev";
+
   private static final String ZIPBALL_PATH = "/%s/%s/%s/%s.zip";
 
   private static final String PROVIDER_JSON_PATH = "/p/%s/%s.json";
@@ -0,0 +1,226 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Runs the upstream work of Composer proxy and group repositories. If enabled, the members of a group are asked
+ * concurrently, on virtual threads when the JVM supports them (Java 21 and later) and on a cached pool of daemon
+ * threads otherwise, so that a group request waits for its slowest member rather than for all of them in turn. As the
+ * threads then no longer bound the load on upstream hosts, requests to each host are limited with fair semaphores in
+ * that mode; otherwise upstream requests are not limited here.
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+public class ComposerUpstreamExecutor
+    extends LifecycleSupport
+{
+  private final boolean concurrent;
+
+  private final int maxConcurrentPerHost;
+
+  private final Time permitTimeout;
+
+  private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+  private ExecutorService executor;
+
+  @Inject
+  public ComposerUpstreamExecutor(
+      @Named("${nexus.composer.upstream.concurrent:-false}") final boolean concurrent,
+      @Named("${nexus.composer.upstream.maxConcurrentPerHost:-32}") final int maxConcurrentPerHost,
+      @Named("${nexus.composer.upstream.permitTimeout:-60s}") final Time permitTimeout)
+  {
+    checkArgument(maxConcurrentPerHost >= 0, "maxConcurrentPerHost must not be negative");
+    this.concurrent = concurrent;
+    this.maxConcurrentPerHost = concurrent ? maxConcurrentPerHost : 0;
+    this.permitTimeout = checkNotNull(permitTimeout);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    if (concurrent) {
+      executor = newVirtualThreadExecutor();
+      if (executor == null) {
+        log.info("Virtual threads are not available, running Composer upstream work on platform threads");
+        executor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("composer-upstream-%d").setDaemon(true).build());
+      }
+    }
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    hostPermits.clear();
+  }
+
+  /**
+   * Whether work may be run concurrently with {@link #invokeAll}.
+   */
+  public boolean isConcurrent() {
+    return executor != null;
+  }
+
+  /**
+   * Runs the given call while holding one of the permits of the given upstream host, waiting in line for a permit if
+   * the host already has the maximum number of requests in flight. Runs it right away if hosts are not limited.
+   */
+  public <T> T withHostPermit(@Nullable final String host, final Callable<T> call) throws IOException {
+    try (HostPermit permit = acquireHostPermit(host)) {
+      return call.call();
+    }
+    catch (Exception e) {
+      Throwables.throwIfInstanceOf(e, IOException.class);
+      Throwables.throwIfUnchecked(e);
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Takes one of the permits of the given upstream host, waiting in line for a permit if the host already has the
+   * maximum number of requests in flight. The permit is held until it is closed, so it can outlive the call that took
+   * it, for instance until the body of an upstream response has been read. The permit limits nothing if hosts are not
+   * limited.
+   */
+  public HostPermit acquireHostPermit(@Nullable final String host) throws IOException {
+    Semaphore permits = host == null || maxConcurrentPerHost == 0 ? null
+        : hostPermits.computeIfAbsent(host, key -> new Semaphore(maxConcurrentPerHost, true));
+    try {
+      if (permits != null && !permits.tryAcquire(permitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        throw new IOException("Timed out waiting for a connection permit for " + host);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for a connection permit for " + host);
+    }
+    return new HostPermit(permits);
+  }
+
+  /**
+   * Runs the given calls concurrently as the current user and returns their results in order, or rethrows the first
+   * failure in order. Runs them in turn on the calling thread if concurrent execution is not enabled.
+   */
+  public <T> List<T> invokeAll(final List<Callable<T>> calls) throws Exception {
+    List<T> results = new ArrayList<>(calls.size());
+    ExecutorService current = executor;
+    if (current == null || calls.size() < 2) {
+      for (Callable<T> call : calls) {
+        results.add(call.call());
+      }
+      return results;
+    }
+
+    Subject subject = SecurityUtils.getSubject();
+    List<Future<T>> futures = new ArrayList<>(calls.size());
+    try {
+      for (Callable<T> call : calls) {
+        futures.add(current.submit(subject.associateWith(call)));
+      }
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    }
+    catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+    finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  @VisibleForTesting
+  int availablePermits(final String host) {
+    Semaphore permits = hostPermits.get(host);
+    return permits == null ? maxConcurrentPerHost : permits.availablePermits();
+  }
+
+  /**
+   * A permit of an upstream host, given back when closed. Closing it more than once gives it back once.
+   */
+  public static final class HostPermit
+      implements AutoCloseable
+  {
+    @Nullable
+    private final Semaphore permits;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private HostPermit(@Nullable final Semaphore permits) {
+      this.permits = permits;
+    }
+
+    @Override
+    public void close() {
+      if (permits != null && closed.compareAndSet(false, true)) {
+        permits.release();
+      }
+    }
+  }
+
+  /**
+   * Creates a virtual thread per task executor if the JVM provides one, looked up reflectively as the plugin is built
+   * for older Java versions.
+   */
+  @Nullable
+  private ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("Virtual thread executor not available", e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Orders Composer versions by precedence, newest first as Packagist lists them. Releases come first, ordered by their
+ * numeric parts and then by stability ({@code patch} above stable above {@code RC} above {@code beta} above
+ * {@code alpha}), followed by development versions ({@code dev-branch}, {@code 1.x-dev}) in name order and finally by
+ * anything that could not be parsed, in string order. The same precedence is available to the database as the
+ * {@link #sortKey(String) sort key} stored in the {@code sort_key} column of Composer components.
+ */
+public final class ComposerVersionComparator
+    implements Comparator<String>
+{
+  public static final ComposerVersionComparator NEWEST_FIRST = new ComposerVersionComparator();
+
+  private static final Pattern RELEASE = Pattern.compile(
+      "v?(\\d+(?:\\.\\d+)*)(?:[._-]?(stable|beta|b|rc|alpha|a|patch|pl|p)(?:[._-]?(\\d+))?)?",
+      Pattern.CASE_INSENSITIVE);
+
+  private static final int RELEASE_ORDER = 0;
+
+  private static final int DEV_ORDER = 1;
+
+  private static final int UNPARSED_ORDER = 2;
+
+  private static final int ALPHA = 0;
+
+  private static final int BETA = 1;
+
+  private static final int RC = 2;
+
+  private static final int STABLE = 3;
+
+  private static final int PATCH = 4;
+
+  private static final int NUMBER_PARTS = 4;
+
+  private static final int NUMBER_DIGITS = 20;
+
+  private static final int STABILITY_POSITION = 2 + NUMBER_PARTS * NUMBER_DIGITS;
+
+  /**
+   * Condition on the {@code version} column of a component query matching the same versions as
+   * {@link #isDevVersion(String)}.
+   */
+  public static final String DEV_VERSION_SQL = "(LOWER(version) LIKE 'dev-%' OR LOWER(version) LIKE '%-dev')";
+
+  /**
+   * Condition on the {@code sort_key} column of a component query matching the same versions as
+   * {@link #isStableVersion(String)}, by the stability recorded in their {@link #sortKey(String) sort key}.
+   */
+  public static final String STABLE_VERSION_SQL = "(sort_key LIKE '2%' AND SUBSTRING(sort_key, " + STABILITY_POSITION +
+      ", 1) IN ('" + STABLE + "', '" + PATCH + "'))";
+
+  private ComposerVersionComparator() {
+    // singleton
+  }
+
+  @Override
+  public int compare(final String left, final String right) {
+    Key leftKey = Key.of(left);
+    Key rightKey = Key.of(right);
+    if (leftKey.order != rightKey.order) {
+      return Integer.compare(leftKey.order, rightKey.order);
+    }
+    if (leftKey.order != RELEASE_ORDER) {
+      return left.compareTo(right);
+    }
+    int result = compareNumbers(rightKey.numbers, leftKey.numbers);
+    if (result == 0) {
+      result = Integer.compare(rightKey.stability, leftKey.stability);
+    }
+    if (result == 0) {
+      result = rightKey.stabilityNumber.compareTo(leftKey.stabilityNumber);
+    }
+    return result != 0 ? result : left.compareTo(right);
+  }
+
+  /**
+   * Whether the version is a development version, a {@code dev-} branch or a {@code -dev} branch alias, which
+   * Packagist lists in the separate {@code ~dev} package JSON.
+   */
+  public static boolean isDevVersion(final String version) {
+    String lower = version.trim().toLowerCase(Locale.ENGLISH);
+    return lower.startsWith("dev-") || lower.endsWith("-dev");
+  }
+
+  /**
+   * Whether the version is a stable release, a release that is neither an alpha, beta nor release candidate, patch
+   * releases such as {@code 1.0.0-p1} included.
+   */
+  public static boolean isStableVersion(final String version) {
+    Key key = Key.of(version);
+    return key.order == RELEASE_ORDER && key.stability >= STABLE;
+  }
+
+  /**
+   * Returns a key of the version whose descending string order ranks releases as {@link #NEWEST_FIRST} does, apart
+   * from releases only written differently, such as {@code 1.2} and {@code 1.2.0}, which get the same key. Release keys
+   * are {@code 2} followed by four numeric parts and the stability number, each zero padded to twenty digits, with the
+   * stability ({@code 0} alpha to {@code 4} patch) in between. Being digits of one length they order the same under
+   * any collation. Development versions are keyed {@code 1}, and unparsed versions, as well as releases with more
+   * numeric parts or longer numbers than the key holds, {@code 0}, so that they rank below all releases.
+   */
+  public static String sortKey(final String version) {
+    Key key = Key.of(version);
+    if (key.order == DEV_ORDER) {
+      return "1";
+    }
+    List<BigInteger> numbers = new ArrayList<>(key.numbers);
+    while (!numbers.isEmpty() && numbers.get(numbers.size() - 1).signum() == 0) {
+      numbers.remove(numbers.size() - 1);
+    }
+    if (key.order != RELEASE_ORDER || numbers.size() > NUMBER_PARTS) {
+      return "0";
+    }
+    StringBuilder sortKey = new StringBuilder("2");
+    for (int i = 0; i < NUMBER_PARTS; i++) {
+      if (!appendPadded(sortKey, i < numbers.size() ? numbers.get(i) : BigInteger.ZERO)) {
+        return "0";
+      }
+    }
+    sortKey.append(key.stability);
+    return appendPadded(sortKey, key.stabilityNumber) ? sortKey.toString() : "0";
+  }
+
+  private static boolean appendPadded(final StringBuilder sortKey, final BigInteger number) {
+    String digits = number.toString();
+    if (digits.length() > NUMBER_DIGITS) {
+      return false;
+    }
+    for (int i = digits.length(); i < NUMBER_DIGITS; i++) {
+      sortKey.append('0');
+    }
+    sortKey.append(digits);
+    return true;
+  }
+
+  private static int compareNumbers(final List<BigInteger> left, final List<BigInteger> right) {
+    for (int i = 0; i < Math.max(left.size(), right.size()); i++) {
+      BigInteger l = i < left.size() ? left.get(i) : BigInteger.ZERO;
+      BigInteger r = i < right.size() ? right.get(i) : BigInteger.ZERO;
+      int result = l.compareTo(r);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * The parsed form of a version that is compared.
+   */
+  private static final class Key
+  {
+    final int order;
+
+    final List<BigInteger> numbers = new ArrayList<>();
+
+    final int stability;
+
+    final BigInteger stabilityNumber;
+
+    private Key(final int order, final int stability, final BigInteger stabilityNumber) {
+      this.order = order;
+      this.stability = stability;
+      this.stabilityNumber = stabilityNumber;
+    }
+
+    static Key of(final String version) {
+      if (isDevVersion(version)) {
+        return new Key(DEV_ORDER, 0, BigInteger.ZERO);
+      }
+      Matcher matcher = RELEASE.matcher(version.trim().toLowerCase(Locale.ENGLISH));
+      if (!matcher.matches()) {
+        return new Key(UNPARSED_ORDER, 0, BigInteger.ZERO);
+      }
+      Key key = new Key(RELEASE_ORDER, stability(matcher.group(2)),
+          matcher.group(3) == null ? BigInteger.ZERO : new BigInteger(matcher.group(3)));
+      for (String number : matcher.group(1).split("\\.")) {
+        key.numbers.add(new BigInteger(number));
+      }
+      return key;
+    }
+
+    private static int stability(@Nullable final String modifier) {
+      if (modifier == null || "stable".equals(modifier)) {
+        return STABLE;
+      }
+      switch (modifier) {
+        case "alpha":
+        case "a":
+          return ALPHA;
+        case "beta":
+        case "b":
+          return BETA;
+        case "rc":
+          return RC;
+        default:
+          // patch, pl, p
+          return PATCH;
+      }
+    }
+  }
+}
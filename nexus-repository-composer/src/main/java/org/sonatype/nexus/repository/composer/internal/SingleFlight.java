@@ -0,0 +1,102 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.goodies.common.Time;
+
+import com.google.common.base.Throwables;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Coalesces concurrent work for the same key so that only one caller (the leader) performs it while the other callers
+ * (followers) wait for it and share its outcome: they return the leader's result, or throw its failure. A follower
+ * that gives up waiting runs its own fallback work instead.
+ */
+public class SingleFlight<K>
+    extends ComponentSupport
+{
+  private final ConcurrentMap<K, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Work performed by the leader, or by a follower that gave up waiting for it.
+   */
+  @FunctionalInterface
+  public interface Work<V>
+  {
+    V call() throws IOException;
+  }
+
+  /**
+   * Runs the leader work if no other caller is currently in flight for the key, otherwise waits up to the given timeout
+   * for the in-flight caller and returns its outcome, or runs the fallback work if the wait times out.
+   */
+  @SuppressWarnings("unchecked")
+  public <V> V execute(final K key, final Time timeout, final Work<V> leader, final Work<V> fallback)
+      throws IOException
+  {
+    checkNotNull(key);
+    checkNotNull(timeout);
+
+    CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+    if (existing == null) {
+      V result;
+      try {
+        result = leader.call();
+      }
+      catch (IOException | RuntimeException | Error e) {
+        inFlight.remove(key, flight);
+        flight.completeExceptionally(e);
+        throw e;
+      }
+      inFlight.remove(key, flight);
+      flight.complete(result);
+      return result;
+    }
+
+    try {
+      return (V) existing.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    catch (TimeoutException e) {
+      log.debug("Timed out after {} waiting for in-flight work on {}", timeout, key);
+      return fallback.call();
+    }
+    catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for in-flight work on " + key);
+    }
+  }
+
+  /**
+   * Returns {@code true} if some caller is currently performing work for the given key.
+   */
+  public boolean isInFlight(final K key) {
+    return inFlight.containsKey(key);
+  }
+}
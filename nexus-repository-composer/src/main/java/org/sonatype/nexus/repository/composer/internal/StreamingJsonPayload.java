@@ -0,0 +1,128 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.repository.view.ContentTypes;
+import org.sonatype.nexus.repository.view.Payload;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * JSON payload that is generated while it is sent rather than built up front. When the payload is copied to a
+ * response the document is written straight to the response stream, so the first bytes reach the client while the
+ * content is still being generated and nothing but the generator's buffer is held in memory. Consumers that read the
+ * payload as a stream instead get the document generated on their first read.
+ */
+public class StreamingJsonPayload
+    implements Payload
+{
+  /**
+   * Writes the JSON document of a payload.
+   */
+  @FunctionalInterface
+  public interface Writer
+  {
+    void write(JsonGenerator generator) throws IOException;
+  }
+
+  private final JsonFactory jsonFactory;
+
+  private final Writer writer;
+
+  public StreamingJsonPayload(final JsonFactory jsonFactory, final Writer writer) {
+    this.jsonFactory = checkNotNull(jsonFactory);
+    this.writer = checkNotNull(writer);
+  }
+
+  @Override
+  public InputStream openInputStream() {
+    return new GeneratingInputStream();
+  }
+
+  @Override
+  public long getSize() {
+    return UNKNOWN_SIZE;
+  }
+
+  @Nullable
+  @Override
+  public String getContentType() {
+    return ContentTypes.APPLICATION_JSON;
+  }
+
+  @Override
+  public void copy(final InputStream input, final OutputStream output) throws IOException {
+    if (input instanceof GeneratingInputStream && !((GeneratingInputStream) input).started()) {
+      generate(output);
+    }
+    else {
+      Payload.super.copy(input, output);
+    }
+  }
+
+  private void generate(final OutputStream output) throws IOException {
+    try (JsonGenerator generator = jsonFactory.createGenerator(output, JsonEncoding.UTF8)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+      writer.write(generator);
+    }
+  }
+
+  /**
+   * Stream generating the document on its first read, for consumers which read the payload rather than copy it.
+   */
+  private class GeneratingInputStream
+      extends InputStream
+  {
+    private InputStream delegate;
+
+    boolean started() {
+      return delegate != null;
+    }
+
+    private InputStream delegate() throws IOException {
+      if (delegate == null) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        generate(output);
+        delegate = new ByteArrayInputStream(output.toByteArray());
+      }
+      return delegate;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return delegate().read();
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      return delegate().read(b, off, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+      return delegate == null ? 0 : delegate.available();
+    }
+  }
+}
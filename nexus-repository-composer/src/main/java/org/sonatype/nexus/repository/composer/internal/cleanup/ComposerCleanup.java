@@ -0,0 +1,115 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.cleanup;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.common.entity.Continuation;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.composer.internal.ComposerMaintenanceFacet;
+import org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator;
+import org.sonatype.nexus.repository.content.facet.ContentFacet;
+import org.sonatype.nexus.repository.content.fluent.FluentComponent;
+import org.sonatype.nexus.repository.content.fluent.FluentQuery;
+import org.sonatype.nexus.scheduling.CancelableHelper;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.DEV_VERSION_SQL;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.STABLE_VERSION_SQL;
+
+/**
+ * Composer specific cleanup of hosted repositories: retaining only the latest stable versions of each package, and
+ * pruning development versions (branches) that were not updated for a while. Candidates are selected by the database
+ * in set based queries, ranking the versions of each package by their
+ * {@link ComposerVersionComparator#sortKey(String) sort key} so that stability and precedence are the same as in the
+ * package JSON, and are deleted a page at a time; the metadata of each affected package is rebuilt once at the end.
+ * Components stored without a sort key get theirs before the versions are ranked.
+ */
+@Named
+@Singleton
+public class ComposerCleanup
+    extends ComponentSupport
+{
+  private static final int PAGE_SIZE = 100;
+
+  private static final String COMPONENT_TABLE = ComposerFormat.NAME + "_component";
+
+  @VisibleForTesting
+  static final String UNRETAINED_STABLE_FILTER = "component_id IN (SELECT ranked.component_id FROM (" +
+      "SELECT component_id," +
+      " ROW_NUMBER() OVER (PARTITION BY namespace, name ORDER BY sort_key DESC, version)" +
+      " AS version_rank FROM " + COMPONENT_TABLE + " WHERE repository_id = #{filterParams.repositoryId} AND " +
+      STABLE_VERSION_SQL +
+      ") ranked WHERE ranked.version_rank > #{filterParams.retain})";
+
+  @VisibleForTesting
+  static final String STALE_DEV_FILTER = DEV_VERSION_SQL + " AND last_updated < #{filterParams.updatedBefore}";
+
+  /**
+   * Deletes all but the {@code retain} latest stable versions of every package, returning the number of components
+   * deleted.
+   */
+  public int retainLatestStable(final Repository repository, final int retain) {
+    checkArgument(retain >= 0, "retain must not be negative");
+    ComposerContentFacet content = repository.facet(ComposerContentFacet.class);
+    int updated = content.updateMissingSortKeys();
+    if (updated > 0) {
+      log.info("Recorded the version sort key of {} components of {}", updated, repository.getName());
+    }
+    Integer repositoryId = content.contentRepositoryId();
+    return delete(repository, "stable versions beyond the latest " + retain, UNRETAINED_STABLE_FILTER,
+        ImmutableMap.of("repositoryId", repositoryId, "retain", retain));
+  }
+
+  /**
+   * Deletes the development versions last updated before the given time, returning the number of components deleted.
+   */
+  public int pruneDevVersions(final Repository repository, final OffsetDateTime updatedBefore) {
+    return delete(repository, "development versions not updated since " + updatedBefore, STALE_DEV_FILTER,
+        ImmutableMap.of("updatedBefore", updatedBefore));
+  }
+
+  private int delete(final Repository repository,
+                     final String description,
+                     final String filter,
+                     final Map<String, Object> params)
+  {
+    FluentQuery<FluentComponent> query = repository.facet(ContentFacet.class).components().byFilter(filter, params);
+    ComposerMaintenanceFacet maintenance = repository.facet(ComposerMaintenanceFacet.class);
+    int deleted = maintenance.batched(affected -> {
+      int count = 0;
+      Continuation<FluentComponent> page = query.browse(PAGE_SIZE, null);
+      while (!page.isEmpty()) {
+        CancelableHelper.checkCancellation();
+        for (FluentComponent component : page) {
+          maintenance.deleteComponent(component);
+          count++;
+        }
+        page = query.browse(PAGE_SIZE, page.nextContinuationToken());
+      }
+      return count;
+    });
+    log.info("Deleted {} {} of {}", deleted, description, repository.getName());
+    return deleted;
+  }
+}
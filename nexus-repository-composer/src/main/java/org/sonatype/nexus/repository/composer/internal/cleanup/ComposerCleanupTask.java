@@ -0,0 +1,76 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.cleanup;
+
+import java.time.OffsetDateTime;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.sonatype.nexus.repository.Format;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.RepositoryTaskSupport;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.types.HostedType;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.composer.internal.cleanup.ComposerCleanupTaskDescriptor.DEV_UPDATED_DAYS_FIELD_ID;
+import static org.sonatype.nexus.repository.composer.internal.cleanup.ComposerCleanupTaskDescriptor.RETAIN_STABLE_FIELD_ID;
+
+/**
+ * Task applying the Composer specific cleanup criteria to Composer hosted repositories, see {@link ComposerCleanup}.
+ * Criteria left empty are not applied.
+ */
+@Named
+public class ComposerCleanupTask
+    extends RepositoryTaskSupport
+{
+  private final ComposerCleanup composerCleanup;
+
+  private final Type hostedType;
+
+  private final Format composerFormat;
+
+  @Inject
+  public ComposerCleanupTask(final ComposerCleanup composerCleanup,
+                             @Named(HostedType.NAME) final Type hostedType,
+                             @Named(ComposerFormat.NAME) final Format composerFormat)
+  {
+    this.composerCleanup = checkNotNull(composerCleanup);
+    this.hostedType = checkNotNull(hostedType);
+    this.composerFormat = checkNotNull(composerFormat);
+  }
+
+  @Override
+  protected void execute(final Repository repository) {
+    Integer retain = getConfiguration().getInteger(RETAIN_STABLE_FIELD_ID, -1);
+    if (retain >= 0) {
+      composerCleanup.retainLatestStable(repository, retain);
+    }
+    Integer days = getConfiguration().getInteger(DEV_UPDATED_DAYS_FIELD_ID, -1);
+    if (days >= 0) {
+      composerCleanup.pruneDevVersions(repository, OffsetDateTime.now().minusDays(days));
+    }
+  }
+
+  @Override
+  protected boolean appliesTo(final Repository repository) {
+    return composerFormat.equals(repository.getFormat()) && hostedType.equals(repository.getType());
+  }
+
+  @Override
+  public String getMessage() {
+    return "Cleaning up old versions of " + getRepositoryField();
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.cleanup;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.NumberTextFormField;
+import org.sonatype.nexus.formfields.RepositoryCombobox;
+import org.sonatype.nexus.repository.RepositoryTaskSupport;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.types.HostedType;
+import org.sonatype.nexus.scheduling.TaskDescriptorSupport;
+
+/**
+ * Task descriptor for {@link ComposerCleanupTask}.
+ */
+@Named
+@Singleton
+public class ComposerCleanupTaskDescriptor
+    extends TaskDescriptorSupport
+{
+  public static final String TYPE_ID = "repository.composer.cleanup";
+
+  public static final String RETAIN_STABLE_FIELD_ID = "retainStable";
+
+  public static final String DEV_UPDATED_DAYS_FIELD_ID = "devUpdatedDays";
+
+  public ComposerCleanupTaskDescriptor() {
+    super(TYPE_ID,
+        ComposerCleanupTask.class,
+        "Composer - Clean up old versions",
+        VISIBLE,
+        EXPOSED,
+        new RepositoryCombobox(
+            RepositoryTaskSupport.REPOSITORY_NAME_FIELD_ID,
+            "Repository",
+            "Select the Composer hosted repository to clean up",
+            FormField.MANDATORY
+        ).includingAnyOfFormats(ComposerFormat.NAME).includingAnyOfTypes(HostedType.NAME)
+            .includeAnEntryForAllRepositories(),
+        new NumberTextFormField(
+            RETAIN_STABLE_FIELD_ID,
+            "Retain stable versions",
+            "Number of latest stable versions of each package to keep, older stable versions are deleted. Leave " +
+                "empty to keep all stable versions",
+            FormField.OPTIONAL
+        ).withMinimumValue(0),
+        new NumberTextFormField(
+            DEV_UPDATED_DAYS_FIELD_ID,
+            "Development versions not updated for (days)",
+            "Delete development versions (dev-* branches) that were not updated for this many days. Leave empty to " +
+                "keep all development versions",
+            FormField.OPTIONAL
+        ).withMinimumValue(0)
+    );
+  }
+}
@@ -12,32 +12,81 @@
  */
 package org.sonatype.nexus.repository.composer.internal.group;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.function.ObjIntConsumer;
 
 import javax.annotation.Nonnull;
+import javax.inject.Inject;
 
+import org.sonatype.nexus.common.collect.AttributesMap;
 import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.AssetKind;
+import org.sonatype.nexus.repository.composer.internal.ComposerUpstreamExecutor;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Span;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Trace;
 import org.sonatype.nexus.repository.group.GroupFacet;
 import org.sonatype.nexus.repository.group.GroupHandler;
 import org.sonatype.nexus.repository.http.HttpResponses;
 import org.sonatype.nexus.repository.http.HttpStatus;
+import org.sonatype.nexus.repository.types.GroupType;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.repository.view.Context;
 import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
 import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.ViewFacet;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.DEV_VERSIONS_SUFFIX;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.getProjectToken;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.getVendorToken;
 import static org.sonatype.nexus.repository.http.HttpConditions.makeConditional;
 import static org.sonatype.nexus.repository.http.HttpConditions.makeUnconditional;
 
 /**
  * Abstract handler for merging in the context of a Composer group repository, with merging left to concrete
- * implementations of the class.
+ * implementations of the class. Members are asked concurrently when the {@link ComposerUpstreamExecutor} allows it.
+ * Package and provider JSON requests only go to the members that may serve the package, see
+ * {@link ComposerMemberPackages}, and the member each merged version came from is recorded in the
+ * {@link ComposerZipballOrigins}.
  */
 public abstract class ComposerGroupMergingHandler
     extends GroupHandler
 {
+  private ComposerUpstreamExecutor upstreamExecutor;
+
+  private ComposerTracer tracer = ComposerTracer.DISABLED;
+
+  private ComposerZipballOrigins zipballOrigins;
+
+  private ComposerMemberPackages memberPackages;
+
+  @Inject
+  public void setUpstreamExecutor(final ComposerUpstreamExecutor upstreamExecutor) {
+    this.upstreamExecutor = checkNotNull(upstreamExecutor);
+  }
+
+  @Inject
+  public void setTracer(final ComposerTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
+  @Inject
+  public void setZipballOrigins(final ComposerZipballOrigins zipballOrigins) {
+    this.zipballOrigins = checkNotNull(zipballOrigins);
+  }
+
+  @Inject
+  public void setMemberPackages(final ComposerMemberPackages memberPackages) {
+    this.memberPackages = checkNotNull(memberPackages);
+  }
+
   @Override
   protected final Response doGet(@Nonnull final Context context,
                                  @Nonnull final GroupHandler.DispatchedRepositories dispatched)
@@ -49,21 +98,121 @@ public abstract class ComposerGroupMergingHandler
     makeUnconditional(context.getRequest());
     Map<Repository, Response> responses;
     try {
-      responses = getAll(context, groupFacet.members(), dispatched);
+      responses = getAllConcurrently(context, candidates(context, groupFacet.members()), dispatched);
     }
     finally {
       makeConditional(context.getRequest());
     }
 
-    List<Payload> payloads = responses.values().stream()
-        .filter(response -> response.getStatus().getCode() == HttpStatus.OK && response.getPayload() != null)
-        .map(Response::getPayload)
-        .collect(Collectors.toList());
+    List<Repository> origins = new ArrayList<>();
+    List<Payload> payloads = new ArrayList<>();
+    for (Map.Entry<Repository, Response> entry : responses.entrySet()) {
+      Response response = entry.getValue();
+      if (response.getStatus().getCode() == HttpStatus.OK && response.getPayload() != null) {
+        origins.add(entry.getKey());
+        payloads.add(response.getPayload());
+      }
+    }
     if (payloads.isEmpty()) {
       return notFoundResponse(context);
     }
-    return HttpResponses.ok(merge(repository, payloads));
+    try (Span span = tracer.span("merge", payloads.size() + " payloads")) {
+      return HttpResponses.ok(merge(repository, payloads, recordOrigins(repository, origins)));
+    }
+  }
+
+  /**
+   * Leaves out the members that state they do not serve the package of a package or provider JSON request.
+   */
+  private List<Repository> candidates(final Context context, final List<Repository> members) {
+    if (memberPackages == null) {
+      return members;
+    }
+    AssetKind assetKind = context.getAttributes().get(AssetKind.class);
+    if (assetKind != AssetKind.PACKAGE && assetKind != AssetKind.PROVIDER) {
+      return members;
+    }
+    String project = getProjectToken(context);
+    if (project.endsWith(DEV_VERSIONS_SUFFIX)) {
+      project = project.substring(0, project.length() - DEV_VERSIONS_SUFFIX.length());
+    }
+    return memberPackages.mayServe(context, members,
+        (getVendorToken(context) + "/" + project).toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Returns where the merge records the member each merged version was taken from, given the members the payloads
+   * came from.
+   */
+  private ObjIntConsumer<String> recordOrigins(final Repository group, final List<Repository> members) {
+    ComposerZipballOrigins origins = zipballOrigins;
+    if (origins == null) {
+      return (zipballPath, index) -> { };
+    }
+    return (zipballPath, index) -> origins.record(group, zipballPath, members.get(index));
+  }
+
+  /**
+   * Dispatches the request to all members at once, each with its own copy of the request and context, keeping the
+   * members' order in the result. Falls back to asking them in turn if concurrent execution is not enabled, or if a
+   * member is a group itself since nested groups track the repositories they dispatched to in state that is not safe
+   * to share between threads.
+   */
+  private Map<Repository, Response> getAllConcurrently(final Context context,
+                                                       final List<Repository> members,
+                                                       final DispatchedRepositories dispatched)
+      throws Exception
+  {
+    if (upstreamExecutor == null || !upstreamExecutor.isConcurrent()
+        || members.stream().anyMatch(member -> member.getType() instanceof GroupType)) {
+      return getAll(context, members, dispatched);
+    }
+
+    Trace trace = tracer.currentTrace();
+    List<Repository> pending = new ArrayList<>();
+    List<Callable<Response>> calls = new ArrayList<>();
+    for (Repository member : members) {
+      if (dispatched.contains(member)) {
+        continue;
+      }
+      dispatched.add(member);
+      pending.add(member);
+      Context memberContext = copyOf(context);
+      calls.add(() -> {
+        try (Span span = tracer.continueTrace(trace, "member", member.getName())) {
+          return member.facet(ViewFacet.class).dispatch(memberContext.getRequest(), memberContext);
+        }
+      });
+    }
+
+    List<Response> results = upstreamExecutor.invokeAll(calls);
+    Map<Repository, Response> responses = new LinkedHashMap<>();
+    for (int i = 0; i < pending.size(); i++) {
+      responses.put(pending.get(i), results.get(i));
+    }
+    return responses;
+  }
+
+  /**
+   * Returns a child of the given context with its own copy of the request and of the attributes, so that members asked
+   * concurrently do not change each other's request headers or context attributes.
+   */
+  private static Context copyOf(final Context context) {
+    Request request = new Request.Builder().copy(context.getRequest()).build();
+    Context copy = new Context(context.getRepository(), request);
+    AttributesMap attributes = context.getAttributes();
+    for (String key : attributes.keys()) {
+      copy.getAttributes().set(key, attributes.get(key));
+    }
+    return copy;
   }
 
-  protected abstract Content merge(final Repository repository, final List<Payload> payloads) throws Exception;
+  /**
+   * Merges the payloads of the members. Implementations that merge package versions pass the zipball path of each
+   * version to {@code origins}, with the index of the payload it was taken from, so zipball requests can be routed to
+   * that member.
+   */
+  protected abstract Content merge(final Repository repository,
+                                   final List<Payload> payloads,
+                                   final ObjIntConsumer<String> origins) throws Exception;
 }
@@ -23,6 +23,7 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -42,7 +43,10 @@ public class ComposerGroupPackageJsonHandler
   }
 
   @Override
-  protected Content merge(final Repository repository, final List<Payload> payloads) throws IOException {
-    return composerJsonProcessor.mergePackageJson(repository, payloads, OffsetDateTime.now());
+  protected Content merge(final Repository repository,
+                          final List<Payload> payloads,
+                          final ObjIntConsumer<String> origins) throws IOException
+  {
+    return composerJsonProcessor.mergePackageJson(repository, payloads, OffsetDateTime.now(), origins);
   }
 }
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.repository.composer.internal.group;
 
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -41,7 +42,10 @@ public class ComposerGroupPackagesJsonHandler
   }
 
   @Override
-  protected Content merge(final Repository repository, final List<Payload> payloads) throws Exception {
+  protected Content merge(final Repository repository,
+                          final List<Payload> payloads,
+                          final ObjIntConsumer<String> origins) throws Exception
+  {
     return composerJsonProcessor.mergePackagesJson(repository, payloads);
   }
 }
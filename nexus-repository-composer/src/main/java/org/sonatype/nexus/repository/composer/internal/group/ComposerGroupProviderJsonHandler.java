@@ -15,6 +15,7 @@ package org.sonatype.nexus.repository.composer.internal.group;
 import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -43,7 +44,10 @@ public class ComposerGroupProviderJsonHandler
   }
 
   @Override
-  protected Content merge(final Repository repository, final List<Payload> payloads) throws IOException {
-    return composerJsonProcessor.mergeProviderJson(repository, payloads, OffsetDateTime.now());
+  protected Content merge(final Repository repository,
+                          final List<Payload> payloads,
+                          final ObjIntConsumer<String> origins) throws IOException
+  {
+    return composerJsonProcessor.mergeProviderJson(repository, payloads, OffsetDateTime.now(), origins);
   }
 }
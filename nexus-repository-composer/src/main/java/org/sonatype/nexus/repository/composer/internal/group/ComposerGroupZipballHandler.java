@@ -0,0 +1,72 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.group;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.group.GroupFacet;
+import org.sonatype.nexus.repository.group.GroupHandler;
+import org.sonatype.nexus.repository.http.HttpStatus;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.ViewFacet;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildZipballPath;
+
+/**
+ * Handler for zipball requests to a Composer group repository. A zipball whose version was taken from a known member
+ * when the group merged its package or provider JSON is fetched from that member directly; otherwise, or if that
+ * member does not serve it, the members are asked in turn.
+ */
+@Named
+@Singleton
+public class ComposerGroupZipballHandler
+    extends GroupHandler
+{
+  private final ComposerZipballOrigins zipballOrigins;
+
+  @Inject
+  public ComposerGroupZipballHandler(final ComposerZipballOrigins zipballOrigins) {
+    this.zipballOrigins = checkNotNull(zipballOrigins);
+  }
+
+  @Override
+  protected Response doGet(@Nonnull final Context context,
+                           @Nonnull final GroupHandler.DispatchedRepositories dispatched)
+      throws Exception
+  {
+    Repository repository = context.getRepository();
+    List<Repository> members = repository.facet(GroupFacet.class).members();
+    String path = buildZipballPath(context);
+
+    Repository origin = zipballOrigins.lookup(repository, path, members);
+    if (origin != null && !dispatched.contains(origin)) {
+      dispatched.add(origin);
+      Response response = origin.facet(ViewFacet.class).dispatch(context.getRequest(), context);
+      if (response.getStatus().isSuccessful() || response.getStatus().getCode() == HttpStatus.NOT_MODIFIED) {
+        return response;
+      }
+      log.debug("{} of {} is not served by {} anymore, asking all members", path, repository.getName(),
+          origin.getName());
+      zipballOrigins.forget(repository, path);
+    }
+    return getFirst(context, members, dispatched);
+  }
+}
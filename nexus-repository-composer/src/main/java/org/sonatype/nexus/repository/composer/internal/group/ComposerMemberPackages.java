@@ -0,0 +1,120 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.group;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.goodies.common.Time;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.types.ProxyType;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.Status;
+import org.sonatype.nexus.repository.view.ViewFacet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+
+/**
+ * Keeps the packages the proxy members of Composer groups state they serve in the "available-packages" and
+ * "available-package-patterns" of their packages.json, so that package and provider JSON requests are only sent to
+ * the members that can have the package. Hosted and group members are always asked, as what they serve changes with
+ * every upload. A member whose packages.json cannot be read is asked for every package, and reading it is only tried
+ * again once a shorter failure TTL has passed, so an unreachable member is not asked for it on every request.
+ */
+@Named
+@Singleton
+public class ComposerMemberPackages
+    extends ComponentSupport
+{
+  private static final String PACKAGES_JSON = "/packages.json";
+
+  private static final Predicate<String> ALL = name -> true;
+
+  private final ComposerJsonProcessor composerJsonProcessor;
+
+  private final Cache<String, Predicate<String>> advertised;
+
+  private final Cache<String, Predicate<String>> unreadable;
+
+  @Inject
+  public ComposerMemberPackages(final ComposerJsonProcessor composerJsonProcessor,
+                                @Named("${nexus.composer.group.memberPackages.ttl:-5m}") final Time ttl,
+                                @Named("${nexus.composer.group.memberPackages.failureTtl:-30s}") final Time failureTtl)
+  {
+    this.composerJsonProcessor = checkNotNull(composerJsonProcessor);
+    this.advertised = CacheBuilder.newBuilder()
+        .expireAfterWrite(checkNotNull(ttl).toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+    this.unreadable = CacheBuilder.newBuilder()
+        .expireAfterWrite(checkNotNull(failureTtl).toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the members that may serve the package with the given lowercase {@code vendor/project} name, in order.
+   */
+  public List<Repository> mayServe(final Context context, final List<Repository> members, final String packageName) {
+    List<Repository> candidates = new ArrayList<>(members.size());
+    for (Repository member : members) {
+      if (!(member.getType() instanceof ProxyType) || advertised(context, member).test(packageName)) {
+        candidates.add(member);
+      }
+      else {
+        log.trace("Not asking {} for {}, it does not serve it", member.getName(), packageName);
+      }
+    }
+    return candidates;
+  }
+
+  private Predicate<String> advertised(final Context context, final Repository member) {
+    if (unreadable.getIfPresent(member.getName()) != null) {
+      return ALL;
+    }
+    try {
+      return advertised.get(member.getName(), () -> load(context, member));
+    }
+    catch (ExecutionException | UncheckedExecutionException e) {
+      log.debug("Unable to read the packages served by {}, asking it for every package", member.getName(), e);
+      unreadable.put(member.getName(), ALL);
+      return ALL;
+    }
+  }
+
+  private Predicate<String> load(final Context context, final Repository member) throws Exception {
+    Request request = new Request.Builder().action(GET).path(PACKAGES_JSON).build();
+    Response response = member.facet(ViewFacet.class).dispatch(request, context);
+    Status status = response.getStatus();
+    if (!status.isSuccessful() || response.getPayload() == null) {
+      throw new IOException("Unable to fetch " + PACKAGES_JSON + ": " + status);
+    }
+    Predicate<String> available = composerJsonProcessor.getAvailablePackages(response.getPayload());
+    return available != null ? available : ALL;
+  }
+}
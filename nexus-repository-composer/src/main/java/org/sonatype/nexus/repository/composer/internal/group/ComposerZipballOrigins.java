@@ -0,0 +1,90 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.group;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.nexus.repository.Repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Remembers which member of a Composer group supplied each version of the package and provider JSON the group merged,
+ * keyed by the path of the version's zipball in the group, so that zipball requests can be sent straight to that
+ * member instead of asking the members in turn.
+ */
+@Named
+@Singleton
+public class ComposerZipballOrigins
+{
+  private final Cache<String, String> origins;
+
+  @Inject
+  public ComposerZipballOrigins(
+      @Named("${nexus.composer.group.zipballOrigins.maxSize:-100000}") final int maxSize,
+      @Named("${nexus.composer.group.zipballOrigins.expireAfter:-24h}") final Time expireAfter)
+  {
+    checkArgument(maxSize >= 0, "maxSize must not be negative");
+    this.origins = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(checkNotNull(expireAfter).toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Records the member of the group that supplied the version whose zipball is at the given path.
+   */
+  public void record(final Repository group, final String zipballPath, final Repository member) {
+    origins.put(key(group, zipballPath), member.getName());
+  }
+
+  /**
+   * Returns the member of the group that supplied the version whose zipball is at the given path, if it is known and
+   * still a member of the group.
+   */
+  @Nullable
+  public Repository lookup(final Repository group, final String zipballPath, final List<Repository> members) {
+    String name = origins.getIfPresent(key(group, zipballPath));
+    if (name == null) {
+      return null;
+    }
+    for (Repository member : members) {
+      if (member.getName().equals(name)) {
+        return member;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Forgets the member recorded for the zipball at the given path, such as when it no longer serves it.
+   */
+  public void forget(final Repository group, final String zipballPath) {
+    origins.invalidate(key(group, zipballPath));
+  }
+
+  private static String key(final Repository group, final String zipballPath) {
+    return group.getName() + ':' + zipballPath;
+  }
+}
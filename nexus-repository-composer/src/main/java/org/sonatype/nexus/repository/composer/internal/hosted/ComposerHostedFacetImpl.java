@@ -12,30 +12,59 @@
  */
 package org.sonatype.nexus.repository.composer.internal.hosted;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Striped;
+import org.sonatype.goodies.common.Time;
 import org.sonatype.nexus.repository.FacetSupport;
 import org.sonatype.nexus.repository.composer.AssetKind;
 import org.sonatype.nexus.repository.composer.ComposerContentFacet;
 import org.sonatype.nexus.repository.composer.ComposerHostedFacet;
+import org.sonatype.nexus.repository.composer.internal.ComposerGlob;
 import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
 import org.sonatype.nexus.repository.composer.internal.ComposerPathUtils;
+import org.sonatype.nexus.repository.composer.internal.SingleFlight;
 import org.sonatype.nexus.repository.content.fluent.FluentAsset;
 import org.sonatype.nexus.repository.content.fluent.FluentComponent;
+import org.sonatype.nexus.repository.content.fluent.FluentComponents;
 import org.sonatype.nexus.repository.content.fluent.FluentQuery;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.scheduling.CancelableHelper;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.regex.Pattern;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.emptyIterator;
+import static java.util.Collections.emptyList;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.DEV_VERSIONS_SUFFIX;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.DEV_VERSION_SQL;
 
 /**
- * Default implementation of a Composer hosted facet.
+ * Default implementation of a Composer hosted facet. Metadata rebuilds of the same package are serialized, and
+ * rebuilds requested while one is running are coalesced into a single follow-up rebuild. Missing metadata documents
+ * are built on first read, once however many clients ask for them at the same time. Like on Packagist, the dev
+ * versions of a package are listed in a separate {@code ~dev} package JSON, so clients that only need releases do not
+ * download every branch. Only the package JSON is built from the components; the provider JSON is derived from it.
+ * Package JSON documents without versions are not stored; that they are empty is remembered for a while instead.
  */
 @Named
 public class ComposerHostedFacetImpl
@@ -44,13 +73,56 @@ public class ComposerHostedFacetImpl
 {
   private static final Pattern FILTER_PATTERN = Pattern.compile("\\s*(?<vendor>[*a-zA-Z0-9_.-]+)/(?<project>[*a-zA-Z0-9_.-]+)\\s*");
 
+  private static final String STABLE_VERSIONS_FILTER = "NOT " + DEV_VERSION_SQL;
+
+  @VisibleForTesting
+  static final int LIST_PAGE_SIZE = 1000;
+
+  private static final int LOCK_STRIPES = 64;
+
   private final ComposerJsonProcessor composerJsonProcessor;
 
+  private final Striped<Lock> locks = Striped.lazyWeakLock(LOCK_STRIPES);
+
+  private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+  private final SingleFlight<String> materializations = new SingleFlight<>();
+
+  private Time materializeWaitTimeout = Time.seconds(60);
+
+  @VisibleForTesting
+  Cache<String, Boolean> emptyMetadata = buildEmptyMetadataCache(Time.minutes(10), 10_000);
+
   @Inject
   public ComposerHostedFacetImpl(final ComposerJsonProcessor composerJsonProcessor) {
     this.composerJsonProcessor = checkNotNull(composerJsonProcessor);
   }
 
+  /**
+   * Configures how long concurrent requests for a missing metadata document wait on the request already building it
+   * before building it themselves.
+   */
+  @Inject
+  protected void configureMaterializeWaitTimeout(
+      @Named("${nexus.composer.hosted.materializeWaitTimeout:-60s}") final Time materializeWaitTimeout)
+  {
+    this.materializeWaitTimeout = checkNotNull(materializeWaitTimeout);
+  }
+
+  /**
+   * Configures for how long, and for how many paths at most, package JSON documents found to have no versions are
+   * remembered, so that reading them (typically the {@code ~dev} package JSON of a package without dev versions) does
+   * not query the components again. Rebuilds after uploads and deletions update the record.
+   */
+  @Inject
+  protected void configureEmptyMetadataCache(
+      @Named("${nexus.composer.hosted.emptyMetadataTtl:-10m}") final Time ttl,
+      @Named("${nexus.composer.hosted.emptyMetadataCacheSize:-10000}") final int size)
+  {
+    checkArgument(size > 0, "size must be positive");
+    this.emptyMetadata = buildEmptyMetadataCache(checkNotNull(ttl), size);
+  }
+
   @Override
   public FluentAsset upload(final String vendor, final String project, final String version, final String sourceType,
                             final String sourceUrl, final String sourceReference, final Payload payload)
@@ -75,93 +147,265 @@ public class ComposerHostedFacetImpl
     return composerJsonProcessor.generatePackagesFromComponents(getRepository(), content().components());
   }
 
+  /**
+   * Lists the packages matching the filter, a {@code vendor/project} glob, reading them a page at a time as the list
+   * is sent, see {@link #packageNames}.
+   */
   @Override
   public Content getListJson(String filter) throws IOException {
-    FluentQuery<FluentComponent> components;
     if (filter == null || filter.isEmpty()) {
-      components = content().components();
+      return composerJsonProcessor.generateList(packageNames(null));
+    }
+
+    if (FILTER_PATTERN.matcher(filter).matches()) {
+      return composerJsonProcessor.generateList(packageNames(ComposerGlob.toPattern(filter.trim())));
     } else {
-      components = queryComponents(filter);
+      // invalid filter pattern
+      return composerJsonProcessor.generateList(emptyList());
     }
+  }
+
+  /**
+   * Returns the names of the packages in the repository that match the pattern, if any, in namespace and name order.
+   * The names are read as they are iterated, one page of {@link #LIST_PAGE_SIZE} packages per query, each page
+   * continuing after the last package of the one before, so at most one page is held in memory.
+   */
+  private Iterable<String> packageNames(@Nullable final Pattern pattern) {
+    ComposerContentFacet content = content();
+    Iterable<String> packageNames = () -> new AbstractIterator<String>()
+    {
+      private Iterator<String> page = emptyIterator();
 
-    return composerJsonProcessor.generateListFromComponents(components);
+      private String lastPackageName;
+
+      private boolean lastPage;
+
+      @Override
+      protected String computeNext() {
+        while (!page.hasNext()) {
+          if (lastPage) {
+            return endOfData();
+          }
+          List<String> names = content.browsePackageNames(LIST_PAGE_SIZE, lastPackageName);
+          lastPage = names.size() < LIST_PAGE_SIZE;
+          if (!names.isEmpty()) {
+            lastPackageName = names.get(names.size() - 1);
+          }
+          page = names.iterator();
+        }
+        return page.next();
+      }
+    };
+    return pattern == null ? packageNames : Iterables.filter(packageNames, name -> pattern.matcher(name).matches());
   }
 
   @Override
   public Content getProviderJson(final String vendor, final String project) throws IOException {
-    Optional<Content> content = content().get(ComposerPathUtils.buildProviderPath(vendor, project));
+    String path = ComposerPathUtils.buildProviderPath(vendor, project);
+    Optional<Content> content = content().get(path);
     if (content.isPresent()) {
       return content.get();
     } else {
-      return rebuildProviderJson(vendor, project).orElse(null);
+      return materialize(path, () -> rebuildProviderJson(vendor, project));
     }
   }
 
+  /**
+   * Serves the stable package JSON of a package, or its dev package JSON if the project ends with {@code ~dev}.
+   */
   @Override
   public Content getPackageJson(final String vendor, final String project) throws IOException {
-    Optional<Content> content = content().get(ComposerPathUtils.buildPackagePath(vendor, project));
+    boolean devVersions = project.endsWith(DEV_VERSIONS_SUFFIX);
+    String name = devVersions ? project.substring(0, project.length() - DEV_VERSIONS_SUFFIX.length()) : project;
+    String path = packagePath(vendor, name, devVersions);
+    Optional<Content> content = content().get(path);
     //Create v2 Package if it´s not existing
     if (content.isPresent()) {
       return content.get();
+    } else if (isKnownEmpty(path)) {
+      return null;
     } else {
-      return rebuildPackageJson(vendor, project).orElse(null);
+      return materialize(path, () -> rebuildPackageJson(vendor, name, devVersions));
     }
   }
 
   @Override
-  public Optional<Content> rebuildProviderJson(final String vendor, final String project) throws IOException {
-    Optional<Content> content = composerJsonProcessor.buildProviderJson(getRepository(), content(), queryComponents(vendor, project));
-    if (content.isPresent()) {
-      content().put(ComposerPathUtils.buildProviderPath(vendor, project), content.get(), AssetKind.PROVIDER);
-    } else {
-      content()
-          .getAsset(ComposerPathUtils.buildProviderPath(vendor, project))
-          .ifPresent(FluentAsset::delete);
+  public int materializeMissingMetadata() throws IOException {
+    FluentComponents components = content().components();
+    int built = 0;
+    int split = 0;
+    for (String vendor : components.namespaces()) {
+      for (String project : components.names(vendor)) {
+        CancelableHelper.checkCancellation();
+        String stablePath = packagePath(vendor, project, false);
+        String devPath = packagePath(vendor, project, true);
+        boolean stableStored = content().getAsset(stablePath).isPresent();
+        if (!content().getAsset(devPath).isPresent() && !isKnownEmpty(devPath)
+            && materialize(devPath, () -> rebuildPackageJson(vendor, project, true)) != null) {
+          built++;
+          if (stableStored) {
+            // stored before dev versions were split off into the ~dev package JSON, so it still lists them
+            rebuildPackageJson(vendor, project, false);
+            split++;
+          }
+        }
+        if (!stableStored && !isKnownEmpty(stablePath)
+            && materialize(stablePath, () -> rebuildPackageJson(vendor, project, false)) != null) {
+          built++;
+        }
+      }
     }
-    return content;
+    log.info("Built {} missing metadata documents of {}, rebuilt {} package JSON documents still listing dev versions",
+        built, getRepository().getName(), split);
+    return built + split;
   }
 
+  /**
+   * Rebuilds the provider JSON of a package from its stored stable and dev package JSON, building those first if they
+   * are missing.
+   */
   @Override
-  public Optional<Content>  rebuildPackageJson(final String vendor, final String project) throws IOException {
-    Optional<Content>  content = composerJsonProcessor.buildPackageJson(getRepository(), content(), queryComponents(vendor, project));
-    if (content.isPresent()) {
-      content().put(ComposerPathUtils.buildPackagePath(vendor, project), content.get(), AssetKind.PACKAGE);
-    } else {
-      content()
-          .getAsset(ComposerPathUtils.buildPackagePath(vendor, project))
-          .ifPresent(FluentAsset::delete);
+  public Optional<Content> rebuildProviderJson(final String vendor, final String project) throws IOException {
+    String path = ComposerPathUtils.buildProviderPath(vendor, project);
+    // built outside of the lock of the package, so concurrent reads of the missing package JSON can join the build
+    getPackageJson(vendor, project);
+    getPackageJson(vendor, project + DEV_VERSIONS_SUFFIX);
+    return rebuild(vendor, project, path, () -> {
+      List<Payload> packageJsons = new ArrayList<>();
+      content().get(packagePath(vendor, project, false)).ifPresent(packageJsons::add);
+      content().get(packagePath(vendor, project, true)).ifPresent(packageJsons::add);
+      Optional<Content> content = composerJsonProcessor.buildProviderJson(getRepository(), packageJsons);
+      if (content.isPresent()) {
+        content().put(path, content.get(), AssetKind.PROVIDER);
+      } else {
+        content()
+            .getAsset(path)
+            .ifPresent(FluentAsset::delete);
+      }
+      return content;
+    });
+  }
+
+  /**
+   * Rebuilds the stable or the dev package JSON of a package from its components. The stored provider JSON is derived
+   * from the package JSON, so if the package JSON was written or removed the provider JSON is removed too, and derived
+   * again when a v1 client next asks for it.
+   */
+  @Override
+  public Optional<Content> rebuildPackageJson(final String vendor, final String project, final boolean devVersions)
+      throws IOException
+  {
+    String path = packagePath(vendor, project, devVersions);
+    return rebuild(vendor, project, path, () -> {
+      Optional<Content> content = composerJsonProcessor.buildPackageJson(getRepository(), content(),
+          queryComponents(vendor, project, devVersions));
+      boolean changed;
+      if (content.isPresent()) {
+        content().put(path, content.get(), AssetKind.PACKAGE);
+        emptyMetadata.invalidate(path);
+        changed = true;
+      } else {
+        emptyMetadata.put(path, Boolean.TRUE);
+        Optional<FluentAsset> removed = content().getAsset(path);
+        removed.ifPresent(FluentAsset::delete);
+        changed = removed.isPresent();
+      }
+      if (changed) {
+        content()
+            .getAsset(ComposerPathUtils.buildProviderPath(vendor, project))
+            .ifPresent(FluentAsset::delete);
+      }
+      return content;
+    });
+  }
+
+  /**
+   * Builds a missing metadata document. Concurrent requests for the same missing document wait for the one build in
+   * flight and then return what it built, rather than each opening every zipball of the package again. Should the
+   * wait time out, they return what is stored by then, or build the document themselves.
+   */
+  @Nullable
+  private Content materialize(final String path, final Rebuild rebuild) throws IOException {
+    return materializations.execute(path, materializeWaitTimeout,
+        () -> rebuild.call().orElse(null),
+        () -> {
+          Optional<Content> stored = content().get(path);
+          return stored.isPresent() ? stored.get() : rebuild.call().orElse(null);
+        });
+  }
+
+  /**
+   * Rebuilds the metadata document at the given path while holding the lock of its package, so rebuilds of the same
+   * package never overlap. The document is marked dirty before waiting for the lock; a rebuild that starts after the
+   * mark clears it, so of all the callers that queued up behind a running rebuild only the first rebuilds again and the
+   * others return what it stored, which already includes their changes.
+   */
+  private Optional<Content> rebuild(final String vendor,
+                                    final String project,
+                                    final String path,
+                                    final Rebuild rebuild) throws IOException
+  {
+    dirty.add(path);
+    Lock lock = locks.get(vendor + "/" + project);
+    try {
+      lock.lockInterruptibly();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting to rebuild " + path);
+    }
+    try {
+      if (!dirty.remove(path)) {
+        log.debug("Skipping rebuild of {}, it was rebuilt after it was requested", path);
+        return content().get(path);
+      }
+      return rebuild.call();
+    }
+    finally {
+      lock.unlock();
     }
-    return content;
   }
 
-  private FluentQuery<FluentComponent> queryComponents(final String vendor, final String project) {
+  private FluentQuery<FluentComponent> queryComponents(final String vendor,
+                                                       final String project,
+                                                       final boolean devVersions)
+  {
     return content()
         .components()
         .byFilter(
-            "namespace = #{filterParams.vendor} AND name = #{filterParams.project}",
+            "namespace = #{filterParams.vendor} AND name = #{filterParams.project} AND "
+                + (devVersions ? DEV_VERSION_SQL : STABLE_VERSIONS_FILTER),
             ImmutableMap.of("vendor", vendor, "project", project)
         );
   }
 
-  private FluentQuery<FluentComponent> queryComponents(final String filter) {
-    Matcher m = FILTER_PATTERN.matcher(filter);
-    if (m.matches()) {
-      String vendor = m.group("vendor").replaceAll("\\*+", "%");
-      String project = m.group("project").replaceAll("\\*+", "%");
+  private boolean isKnownEmpty(final String path) {
+    return emptyMetadata.getIfPresent(path) != null;
+  }
 
-      return content()
-          .components()
-          .byFilter(
-              "namespace LIKE #{filterParams.vendor} AND name LIKE #{filterParams.project}",
-              ImmutableMap.of("vendor", vendor, "project", project)
-          );
-    } else {
-      // invalid filter pattern
-      return null;
-    }
+  private static Cache<String, Boolean> buildEmptyMetadataCache(final Time ttl, final int size) {
+    return CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  private static String packagePath(final String vendor, final String project, final boolean devVersions) {
+    return devVersions
+        ? ComposerPathUtils.buildPackagePathForDevVersions(vendor, project)
+        : ComposerPathUtils.buildPackagePath(vendor, project);
   }
 
   private ComposerContentFacet content() {
     return getRepository().facet(ComposerContentFacet.class);
   }
+
+  /**
+   * Rebuild of one metadata document.
+   */
+  @FunctionalInterface
+  private interface Rebuild
+  {
+    Optional<Content> call() throws IOException;
+  }
 }
@@ -53,6 +53,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.*;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.isDevVersion;
 import static org.sonatype.nexus.repository.composer.internal.recipe.ComposerRecipeSupport.*;
 
 /**
@@ -134,8 +135,7 @@ public class ComposerHostedUploadHandler
 
     hostedFacet.upload(vendor, project, version, sourceType, sourceUrl, sourceRef, payload);
 
-    hostedFacet.rebuildProviderJson(vendor, project);
-    hostedFacet.rebuildPackageJson(vendor, project);
+    hostedFacet.rebuildPackageJson(vendor, project, isDevVersion(version));
 
     return HttpResponses.ok();
   }
@@ -157,8 +157,7 @@ public class ComposerHostedUploadHandler
 
     FluentAsset asset = hostedFacet.upload(vendor, project, version, null, null, null, payload);
 
-    hostedFacet.rebuildProviderJson(vendor, project);
-    hostedFacet.rebuildPackageJson(vendor, project);
+    hostedFacet.rebuildPackageJson(vendor, project, isDevVersion(version));
 
     return new UploadResponse(singletonList(asset.path()));
   }
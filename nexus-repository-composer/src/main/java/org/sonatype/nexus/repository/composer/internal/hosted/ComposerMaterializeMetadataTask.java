@@ -0,0 +1,70 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.hosted;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.sonatype.nexus.repository.Format;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.RepositoryTaskSupport;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.composer.ComposerHostedFacet;
+import org.sonatype.nexus.repository.types.HostedType;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Task building the missing package JSON of Composer hosted repositories ahead of the first client requests, see
+ * {@link ComposerHostedFacet#materializeMissingMetadata()}.
+ */
+@Named
+public class ComposerMaterializeMetadataTask
+    extends RepositoryTaskSupport
+{
+  private final Type hostedType;
+
+  private final Format composerFormat;
+
+  @Inject
+  public ComposerMaterializeMetadataTask(@Named(HostedType.NAME) final Type hostedType,
+                                         @Named(ComposerFormat.NAME) final Format composerFormat)
+  {
+    this.hostedType = checkNotNull(hostedType);
+    this.composerFormat = checkNotNull(composerFormat);
+  }
+
+  @Override
+  protected void execute(final Repository repository) {
+    try {
+      repository.facet(ComposerHostedFacet.class).materializeMissingMetadata();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  protected boolean appliesTo(final Repository repository) {
+    return composerFormat.equals(repository.getFormat()) && hostedType.equals(repository.getType());
+  }
+
+  @Override
+  public String getMessage() {
+    return "Building missing metadata of " + getRepositoryField();
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A Composer package with its versions, as listed in a package JSON, in document order.
+ */
+public final class ComposerPackage
+{
+  private final String name;
+
+  private final List<ComposerVersion> versions;
+
+  public ComposerPackage(final String name, final List<ComposerVersion> versions) {
+    this.name = checkNotNull(name);
+    this.versions = Collections.unmodifiableList(new ArrayList<>(versions));
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<ComposerVersion> getVersions() {
+    return versions;
+  }
+
+  @Override
+  public String toString() {
+    return "ComposerPackage{name=" + name + ", versions=" + versions.size() + "}";
+  }
+}
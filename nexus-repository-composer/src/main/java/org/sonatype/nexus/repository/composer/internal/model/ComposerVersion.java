@@ -0,0 +1,492 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A version of a Composer package as listed in package and provider JSON. The fields the repository works with are
+ * typed, all others are kept as read in document order so they pass through unchanged. Instances are immutable and
+ * can be shared between rewrites, merges and builds.
+ *
+ * A version read from a minified package JSON may only hold the changes to the previous version of the package,
+ * including the names of the fields it no longer has, see {@link #getUnset()}.
+ */
+@JsonSerialize(using = ComposerVersion.Serializer.class)
+@JsonDeserialize(using = ComposerVersion.Deserializer.class)
+public final class ComposerVersion
+{
+  public static final String NAME_KEY = "name";
+
+  public static final String VERSION_KEY = "version";
+
+  public static final String DIST_KEY = "dist";
+
+  public static final String SOURCE_KEY = "source";
+
+  public static final String TIME_KEY = "time";
+
+  public static final String TYPE_KEY = "type";
+
+  /**
+   * The value of fields a minified version no longer has compared to the previous version.
+   */
+  public static final String UNSET_VALUE = "__unset";
+
+  private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+  @Nullable
+  private final String name;
+
+  @Nullable
+  private final String version;
+
+  @Nullable
+  private final Dist dist;
+
+  @Nullable
+  private final Source source;
+
+  @Nullable
+  private final String time;
+
+  private final Map<String, Object> attributes;
+
+  private final Set<String> unset;
+
+  private ComposerVersion(final Builder builder) {
+    this.name = builder.name;
+    this.version = builder.version;
+    this.dist = builder.dist;
+    this.source = builder.source;
+    this.time = builder.time;
+    this.attributes = builder.attributes.isEmpty() ? Collections.emptyMap()
+        : Collections.unmodifiableMap(new LinkedHashMap<>(builder.attributes));
+    this.unset = builder.unset.isEmpty() ? Collections.emptySet()
+        : Collections.unmodifiableSet(new LinkedHashSet<>(builder.unset));
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.name = name;
+    builder.version = version;
+    builder.dist = dist;
+    builder.source = source;
+    builder.time = time;
+    builder.attributes.putAll(attributes);
+    builder.unset.addAll(unset);
+    return builder;
+  }
+
+  @Nullable
+  public String getName() {
+    return name;
+  }
+
+  @Nullable
+  public String getVersion() {
+    return version;
+  }
+
+  @Nullable
+  public Dist getDist() {
+    return dist;
+  }
+
+  @Nullable
+  public Source getSource() {
+    return source;
+  }
+
+  @Nullable
+  public String getTime() {
+    return time;
+  }
+
+  /**
+   * Returns the fields other than the typed ones, in document order.
+   */
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Returns the names of the fields this minified version no longer has compared to the previous version.
+   */
+  public Set<String> getUnset() {
+    return unset;
+  }
+
+  /**
+   * Returns the names of the fields this version has, typed fields first.
+   */
+  public List<String> keys() {
+    List<String> keys = new ArrayList<>(5 + attributes.size());
+    if (name != null) {
+      keys.add(NAME_KEY);
+    }
+    if (version != null) {
+      keys.add(VERSION_KEY);
+    }
+    if (dist != null) {
+      keys.add(DIST_KEY);
+    }
+    if (source != null) {
+      keys.add(SOURCE_KEY);
+    }
+    if (time != null) {
+      keys.add(TIME_KEY);
+    }
+    keys.addAll(attributes.keySet());
+    return keys;
+  }
+
+  /**
+   * Returns the value of the named field, typed or not.
+   */
+  @Nullable
+  public Object get(final String key) {
+    switch (key) {
+      case NAME_KEY:
+        return name != null ? name : attributes.get(key);
+      case VERSION_KEY:
+        return version != null ? version : attributes.get(key);
+      case DIST_KEY:
+        return dist != null ? dist : attributes.get(key);
+      case SOURCE_KEY:
+        return source != null ? source : attributes.get(key);
+      case TIME_KEY:
+        return time != null ? time : attributes.get(key);
+      default:
+        return attributes.get(key);
+    }
+  }
+
+  public boolean has(final String key) {
+    return get(key) != null || attributes.containsKey(key);
+  }
+
+  public ComposerVersion withDist(@Nullable final Dist dist) {
+    return toBuilder().dist(dist).build();
+  }
+
+  public ComposerVersion withoutSource() {
+    return source == null && !attributes.containsKey(SOURCE_KEY) ? this : toBuilder().remove(SOURCE_KEY).build();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ComposerVersion)) {
+      return false;
+    }
+    ComposerVersion that = (ComposerVersion) o;
+    return Objects.equals(name, that.name) && Objects.equals(version, that.version)
+        && Objects.equals(dist, that.dist) && Objects.equals(source, that.source) && Objects.equals(time, that.time)
+        && attributes.equals(that.attributes) && unset.equals(that.unset);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(name, version, dist, source, time, attributes, unset);
+  }
+
+  @Override
+  public String toString() {
+    return "ComposerVersion{name=" + name + ", version=" + version + "}";
+  }
+
+  /**
+   * Interns strings repeated across many versions, such as package names and types.
+   */
+  @Nullable
+  static String intern(@Nullable final String value) {
+    return value == null ? null : STRINGS.intern(value);
+  }
+
+  /**
+   * Returns the name of the first field of the object the parser is at, or {@code null} if it is empty.
+   */
+  @Nullable
+  static String firstFieldName(final JsonParser parser,
+                               final DeserializationContext context,
+                               final Class<?> type) throws IOException
+  {
+    JsonToken token = parser.currentToken();
+    if (token == JsonToken.START_OBJECT) {
+      return parser.nextFieldName();
+    }
+    if (token == JsonToken.FIELD_NAME) {
+      return parser.getCurrentName();
+    }
+    if (token == JsonToken.END_OBJECT) {
+      return null;
+    }
+    throw context.wrongTokenException(parser, type, JsonToken.START_OBJECT, null);
+  }
+
+  /**
+   * Builds {@link ComposerVersion} instances.
+   */
+  public static final class Builder
+  {
+    private String name;
+
+    private String version;
+
+    private Dist dist;
+
+    private Source source;
+
+    private String time;
+
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    private final Set<String> unset = new LinkedHashSet<>();
+
+    private Builder() {
+    }
+
+    public Builder name(@Nullable final String name) {
+      this.name = intern(name);
+      attributes.remove(NAME_KEY);
+      return this;
+    }
+
+    public Builder version(@Nullable final String version) {
+      this.version = version;
+      attributes.remove(VERSION_KEY);
+      return this;
+    }
+
+    public Builder dist(@Nullable final Dist dist) {
+      this.dist = dist;
+      attributes.remove(DIST_KEY);
+      return this;
+    }
+
+    public Builder source(@Nullable final Source source) {
+      this.source = source;
+      attributes.remove(SOURCE_KEY);
+      return this;
+    }
+
+    public Builder time(@Nullable final String time) {
+      this.time = time;
+      attributes.remove(TIME_KEY);
+      return this;
+    }
+
+    /**
+     * Sets the named field, typed if the value has the type of the field.
+     */
+    public Builder set(final String key, @Nullable final Object value) {
+      checkNotNull(key);
+      unset.remove(key);
+      switch (key) {
+        case NAME_KEY:
+          if (value instanceof String) {
+            return name((String) value);
+          }
+          break;
+        case VERSION_KEY:
+          if (value instanceof String) {
+            return version((String) value);
+          }
+          break;
+        case DIST_KEY:
+          if (value instanceof Dist) {
+            return dist((Dist) value);
+          }
+          break;
+        case SOURCE_KEY:
+          if (value instanceof Source) {
+            return source((Source) value);
+          }
+          break;
+        case TIME_KEY:
+          if (value instanceof String) {
+            return time((String) value);
+          }
+          break;
+        case TYPE_KEY:
+          if (value instanceof String) {
+            attributes.put(key, intern((String) value));
+            return this;
+          }
+          break;
+        default:
+          break;
+      }
+      clearTyped(key);
+      attributes.put(key, value);
+      return this;
+    }
+
+    /**
+     * Copies the given fields of a map read from JSON, such as a {@code composer.json}, where present.
+     */
+    public Builder setAll(final Map<String, Object> values, final Collection<String> keys) {
+      for (String key : keys) {
+        if (values.containsKey(key)) {
+          set(key, values.get(key));
+        }
+      }
+      return this;
+    }
+
+    public Builder remove(final String key) {
+      clearTyped(key);
+      attributes.remove(key);
+      unset.remove(key);
+      return this;
+    }
+
+    /**
+     * Marks the named field as no longer present compared to the previous version of a minified package.
+     */
+    public Builder unset(final String key) {
+      remove(key);
+      unset.add(key);
+      return this;
+    }
+
+    public ComposerVersion build() {
+      return new ComposerVersion(this);
+    }
+
+    private void clearTyped(final String key) {
+      switch (key) {
+        case NAME_KEY:
+          name = null;
+          break;
+        case VERSION_KEY:
+          version = null;
+          break;
+        case DIST_KEY:
+          dist = null;
+          break;
+        case SOURCE_KEY:
+          source = null;
+          break;
+        case TIME_KEY:
+          time = null;
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  static class Serializer
+      extends JsonSerializer<ComposerVersion>
+  {
+    @Override
+    public void serialize(final ComposerVersion version,
+                          final JsonGenerator generator,
+                          final SerializerProvider provider) throws IOException
+    {
+      generator.writeStartObject();
+      if (version.name != null) {
+        generator.writeStringField(NAME_KEY, version.name);
+      }
+      if (version.version != null) {
+        generator.writeStringField(VERSION_KEY, version.version);
+      }
+      if (version.dist != null) {
+        generator.writeFieldName(DIST_KEY);
+        provider.defaultSerializeValue(version.dist, generator);
+      }
+      if (version.source != null) {
+        generator.writeFieldName(SOURCE_KEY);
+        provider.defaultSerializeValue(version.source, generator);
+      }
+      if (version.time != null) {
+        generator.writeStringField(TIME_KEY, version.time);
+      }
+      for (Map.Entry<String, Object> attribute : version.attributes.entrySet()) {
+        provider.defaultSerializeField(attribute.getKey(), attribute.getValue(), generator);
+      }
+      for (String key : version.unset) {
+        generator.writeStringField(key, UNSET_VALUE);
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * Reads a version field by field. Dist and source entries are read into their typed form, other fields are kept
+   * as read, and {@link #UNSET_VALUE} marks a field as unset.
+   */
+  static class Deserializer
+      extends JsonDeserializer<ComposerVersion>
+  {
+    @Override
+    public ComposerVersion deserialize(final JsonParser parser, final DeserializationContext context)
+        throws IOException
+    {
+      Builder builder = builder();
+      for (String key = firstFieldName(parser, context, ComposerVersion.class); key != null;
+           key = parser.nextFieldName()) {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_STRING && UNSET_VALUE.equals(parser.getText())) {
+          builder.unset(key);
+        }
+        else if (token == JsonToken.START_OBJECT && DIST_KEY.equals(key)) {
+          builder.dist(context.readValue(parser, Dist.class));
+        }
+        else if (token == JsonToken.START_OBJECT && SOURCE_KEY.equals(key)) {
+          builder.source(context.readValue(parser, Source.class));
+        }
+        else if (token == JsonToken.VALUE_STRING) {
+          builder.set(key, parser.getText());
+        }
+        else {
+          builder.set(key, context.readValue(parser, Object.class));
+        }
+      }
+      return builder.build();
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.model;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import static org.sonatype.nexus.repository.composer.internal.model.ComposerVersion.intern;
+
+/**
+ * The {@code dist} entry of a Composer package version, where the archive of the version can be downloaded.
+ */
+@JsonSerialize(using = Dist.Serializer.class)
+@JsonDeserialize(using = Dist.Deserializer.class)
+public final class Dist
+{
+  private static final String TYPE_KEY = "type";
+
+  private static final String URL_KEY = "url";
+
+  private static final String REFERENCE_KEY = "reference";
+
+  private static final String SHASUM_KEY = "shasum";
+
+  @Nullable
+  private final String type;
+
+  @Nullable
+  private final String url;
+
+  @Nullable
+  private final String reference;
+
+  @Nullable
+  private final String shasum;
+
+  public Dist(@Nullable final String type,
+              @Nullable final String url,
+              @Nullable final String reference,
+              @Nullable final String shasum)
+  {
+    this.type = type;
+    this.url = url;
+    this.reference = reference;
+    this.shasum = shasum;
+  }
+
+  @Nullable
+  public String getType() {
+    return type;
+  }
+
+  @Nullable
+  public String getUrl() {
+    return url;
+  }
+
+  @Nullable
+  public String getReference() {
+    return reference;
+  }
+
+  @Nullable
+  public String getShasum() {
+    return shasum;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Dist)) {
+      return false;
+    }
+    Dist that = (Dist) o;
+    return Objects.equals(type, that.type) && Objects.equals(url, that.url)
+        && Objects.equals(reference, that.reference) && Objects.equals(shasum, that.shasum);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, url, reference, shasum);
+  }
+
+  @Override
+  public String toString() {
+    return "Dist{type=" + type + ", url=" + url + ", reference=" + reference + ", shasum=" + shasum + "}";
+  }
+
+  static class Serializer
+      extends JsonSerializer<Dist>
+  {
+    @Override
+    public void serialize(final Dist dist, final JsonGenerator generator, final SerializerProvider provider)
+        throws IOException
+    {
+      generator.writeStartObject();
+      generator.writeStringField(TYPE_KEY, dist.type);
+      generator.writeStringField(URL_KEY, dist.url);
+      generator.writeStringField(REFERENCE_KEY, dist.reference);
+      generator.writeStringField(SHASUM_KEY, dist.shasum);
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * Reads a dist entry, skipping fields other than the ones of {@link Dist}.
+   */
+  static class Deserializer
+      extends JsonDeserializer<Dist>
+  {
+    @Override
+    public Dist deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+      String type = null;
+      String url = null;
+      String reference = null;
+      String shasum = null;
+      for (String key = ComposerVersion.firstFieldName(parser, context, Dist.class); key != null;
+           key = parser.nextFieldName()) {
+        JsonToken token = parser.nextToken();
+        String value = token.isScalarValue() ? parser.getValueAsString() : null;
+        parser.skipChildren();
+        switch (key) {
+          case TYPE_KEY:
+            type = intern(value);
+            break;
+          case URL_KEY:
+            url = value;
+            break;
+          case REFERENCE_KEY:
+            reference = value;
+            break;
+          case SHASUM_KEY:
+            shasum = value;
+            break;
+          default:
+            break;
+        }
+      }
+      return new Dist(type, url, reference, shasum);
+    }
+  }
+}
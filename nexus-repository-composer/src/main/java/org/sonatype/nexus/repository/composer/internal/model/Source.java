@@ -0,0 +1,146 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.model;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import static org.sonatype.nexus.repository.composer.internal.model.ComposerVersion.intern;
+
+/**
+ * The {@code source} entry of a Composer package version, the VCS repository and revision it was built from.
+ */
+@JsonSerialize(using = Source.Serializer.class)
+@JsonDeserialize(using = Source.Deserializer.class)
+public final class Source
+{
+  private static final String TYPE_KEY = "type";
+
+  private static final String URL_KEY = "url";
+
+  private static final String REFERENCE_KEY = "reference";
+
+  @Nullable
+  private final String type;
+
+  @Nullable
+  private final String url;
+
+  @Nullable
+  private final String reference;
+
+  public Source(@Nullable final String type, @Nullable final String url, @Nullable final String reference) {
+    this.type = type;
+    this.url = url;
+    this.reference = reference;
+  }
+
+  @Nullable
+  public String getType() {
+    return type;
+  }
+
+  @Nullable
+  public String getUrl() {
+    return url;
+  }
+
+  @Nullable
+  public String getReference() {
+    return reference;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Source)) {
+      return false;
+    }
+    Source that = (Source) o;
+    return Objects.equals(type, that.type) && Objects.equals(url, that.url)
+        && Objects.equals(reference, that.reference);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, url, reference);
+  }
+
+  @Override
+  public String toString() {
+    return "Source{type=" + type + ", url=" + url + ", reference=" + reference + "}";
+  }
+
+  static class Serializer
+      extends JsonSerializer<Source>
+  {
+    @Override
+    public void serialize(final Source source, final JsonGenerator generator, final SerializerProvider provider)
+        throws IOException
+    {
+      generator.writeStartObject();
+      generator.writeStringField(TYPE_KEY, source.type);
+      generator.writeStringField(URL_KEY, source.url);
+      generator.writeStringField(REFERENCE_KEY, source.reference);
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * Reads a source entry, skipping fields other than the ones of {@link Source}.
+   */
+  static class Deserializer
+      extends JsonDeserializer<Source>
+  {
+    @Override
+    public Source deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+      String type = null;
+      String url = null;
+      String reference = null;
+      for (String key = ComposerVersion.firstFieldName(parser, context, Source.class); key != null;
+           key = parser.nextFieldName()) {
+        JsonToken token = parser.nextToken();
+        String value = token.isScalarValue() ? parser.getValueAsString() : null;
+        parser.skipChildren();
+        switch (key) {
+          case TYPE_KEY:
+            type = intern(value);
+            break;
+          case URL_KEY:
+            url = intern(value);
+            break;
+          case REFERENCE_KEY:
+            reference = value;
+            break;
+          default:
+            break;
+        }
+      }
+      return new Source(type, url, reference);
+    }
+  }
+}
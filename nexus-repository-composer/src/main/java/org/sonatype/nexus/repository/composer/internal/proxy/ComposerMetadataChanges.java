@@ -0,0 +1,228 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.cache.CacheInfo;
+import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.composer.internal.ComposerJsonCodec;
+import org.sonatype.nexus.repository.content.fluent.FluentAsset;
+import org.sonatype.nexus.repository.proxy.ProxyFacet;
+import org.sonatype.nexus.repository.view.Content;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.util.EntityUtils;
+import org.joda.time.DateTime;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_CHANGES_SINCE;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildPackagePath;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildPackagePathForDevVersions;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.DEV_VERSIONS_SUFFIX;
+
+/**
+ * Consumes a Packagist style metadata changes feed ({@code /metadata/changes.json?since=...}) for a Composer proxy
+ * repository, invalidating the cached p2 package JSON of every package the feed reports as updated or deleted. The
+ * feed cursor is kept in the attributes of the repository's {@code packages.json} asset, so polling only starts once
+ * that has been cached.
+ */
+@Named
+@Singleton
+public class ComposerMetadataChanges
+    extends ComponentSupport
+{
+  @VisibleForTesting
+  static final String SINCE_PARAMETER = "since";
+
+  @VisibleForTesting
+  static final String INVALIDATED = "invalidated";
+
+  private static final String ACTIONS_KEY = "actions";
+
+  private static final String TYPE_KEY = "type";
+
+  private static final String PACKAGE_KEY = "package";
+
+  private static final String TIMESTAMP_KEY = "timestamp";
+
+  private static final String RESYNC_TYPE = "resync";
+
+  private final ComposerJsonCodec codec;
+
+  @Inject
+  public ComposerMetadataChanges(final ComposerJsonCodec codec) {
+    this.codec = checkNotNull(codec);
+  }
+
+  /**
+   * Polls the changes feed at the given URL once and invalidates the changed packages cached in the repository,
+   * returning how many cached package JSON documents were invalidated. The first poll only records the cursor; a
+   * resync requested by the feed invalidates all cached content of the repository.
+   */
+  public int poll(final Repository repository, final HttpClient httpClient, final String changesUrl)
+      throws IOException
+  {
+    ComposerContentFacet content = repository.facet(ComposerContentFacet.class);
+    Optional<FluentAsset> packagesJson = content.getAsset(ComposerProxyFacet.PACKAGES_JSON);
+    if (!packagesJson.isPresent()) {
+      log.debug("Not polling {} for {}, its packages.json is not cached yet", changesUrl, repository.getName());
+      return 0;
+    }
+
+    Number since = packagesJson.get().attributes().get(P_CHANGES_SINCE, Number.class);
+    Changes changes = fetch(httpClient, changesUrl, since == null ? null : since.longValue());
+
+    int invalidated = 0;
+    if (since == null) {
+      log.info("Started following {} for {}", changesUrl, repository.getName());
+    }
+    else if (changes.resync) {
+      log.info("{} requested a resync, invalidating all cached content of {}", changesUrl, repository.getName());
+      repository.facet(ProxyFacet.class).invalidateProxyCaches();
+    }
+    else {
+      for (String name : changes.packages) {
+        invalidated += invalidate(content, name);
+      }
+      log.debug("Invalidated {} package JSON documents of {} changed since {}", invalidated, repository.getName(),
+          since);
+    }
+
+    packagesJson.get().withAttribute(P_CHANGES_SINCE, changes.timestamp);
+    return invalidated;
+  }
+
+  /**
+   * Fetches the changes since the given cursor. Without a cursor Packagist answers with an error and the current
+   * timestamp, which is accepted as the starting point.
+   */
+  @VisibleForTesting
+  Changes fetch(final HttpClient httpClient, final String changesUrl, @Nullable final Long since) throws IOException {
+    HttpGet request;
+    try {
+      URIBuilder uri = new URIBuilder(changesUrl);
+      if (since != null) {
+        uri.setParameter(SINCE_PARAMETER, since.toString());
+      }
+      request = new HttpGet(uri.build());
+    }
+    catch (URISyntaxException e) {
+      throw new IOException("Invalid changes URL " + changesUrl, e);
+    }
+
+    HttpResponse response = httpClient.execute(request);
+    HttpEntity entity = response.getEntity();
+    try {
+      int status = response.getStatusLine().getStatusCode();
+      if (entity == null || (status != 200 && since != null)) {
+        throw new IOException("Unexpected response " + response.getStatusLine() + " from " + request.getURI());
+      }
+      Map<String, Object> json;
+      try (InputStream in = entity.getContent()) {
+        json = codec.readMap(in);
+      }
+      return parse(json, request.getURI().toString());
+    }
+    finally {
+      EntityUtils.consumeQuietly(entity);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Changes parse(final Map<String, Object> json, final String uri) throws IOException {
+    Object timestamp = json.get(TIMESTAMP_KEY);
+    if (!(timestamp instanceof Number)) {
+      throw new IOException("Missing timestamp in changes from " + uri);
+    }
+    Changes changes = new Changes(((Number) timestamp).longValue());
+    Object actions = json.get(ACTIONS_KEY);
+    if (actions instanceof List) {
+      for (Object action : (List<Object>) actions) {
+        if (!(action instanceof Map)) {
+          continue;
+        }
+        Map<String, Object> entry = (Map<String, Object>) action;
+        if (RESYNC_TYPE.equals(entry.get(TYPE_KEY))) {
+          changes.resync = true;
+        }
+        else if (entry.get(PACKAGE_KEY) instanceof String) {
+          changes.packages.add((String) entry.get(PACKAGE_KEY));
+        }
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * Invalidates the cached package JSON of the named package ({@code vendor/project} or {@code vendor/project~dev}),
+   * returning the number of cached documents invalidated. Names without the {@code ~dev} suffix invalidate both
+   * documents, as deleted packages are reported that way.
+   */
+  private int invalidate(final ComposerContentFacet content, final String name) throws IOException {
+    String[] parts = name.split("/", 2);
+    if (parts.length != 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+      return 0;
+    }
+    if (parts[1].endsWith(DEV_VERSIONS_SUFFIX)) {
+      return invalidate(content, buildPackagePath(parts[0], parts[1]));
+    }
+    return invalidate(content, buildPackagePath(parts[0], parts[1])) +
+        invalidate(content, buildPackagePathForDevVersions(parts[0], parts[1]));
+  }
+
+  private int invalidate(final ComposerContentFacet content, final String path) throws IOException {
+    Optional<Content> cached = content.get(path);
+    if (!cached.isPresent()) {
+      return 0;
+    }
+    content.setCacheInfo(path, cached.get(), new CacheInfo(new DateTime(0L), INVALIDATED));
+    return 1;
+  }
+
+  /**
+   * The changes reported by one poll of the feed.
+   */
+  @VisibleForTesting
+  static class Changes
+  {
+    final long timestamp;
+
+    final Set<String> packages = new LinkedHashSet<>();
+
+    boolean resync;
+
+    Changes(final long timestamp) {
+      this.timestamp = timestamp;
+    }
+  }
+}
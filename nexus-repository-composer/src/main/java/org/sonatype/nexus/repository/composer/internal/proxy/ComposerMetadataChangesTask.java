@@ -0,0 +1,79 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.sonatype.nexus.repository.Format;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.RepositoryTaskSupport;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.httpclient.HttpClientFacet;
+import org.sonatype.nexus.repository.types.ProxyType;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerMetadataChangesTaskDescriptor.CHANGES_URL_FIELD_ID;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerMetadataChangesTaskDescriptor.DEFAULT_CHANGES_URL;
+
+/**
+ * Task polling a metadata changes feed to invalidate the changed packages cached by Composer proxy repositories, see
+ * {@link ComposerMetadataChanges}.
+ */
+@Named
+public class ComposerMetadataChangesTask
+    extends RepositoryTaskSupport
+{
+  private final ComposerMetadataChanges composerMetadataChanges;
+
+  private final Type proxyType;
+
+  private final Format composerFormat;
+
+  @Inject
+  public ComposerMetadataChangesTask(final ComposerMetadataChanges composerMetadataChanges,
+                                     @Named(ProxyType.NAME) final Type proxyType,
+                                     @Named(ComposerFormat.NAME) final Format composerFormat)
+  {
+    this.composerMetadataChanges = checkNotNull(composerMetadataChanges);
+    this.proxyType = checkNotNull(proxyType);
+    this.composerFormat = checkNotNull(composerFormat);
+  }
+
+  @Override
+  protected void execute(final Repository repository) {
+    String changesUrl = getConfiguration().getString(CHANGES_URL_FIELD_ID, DEFAULT_CHANGES_URL);
+    try {
+      int invalidated = composerMetadataChanges.poll(repository,
+          repository.facet(HttpClientFacet.class).getHttpClient(), changesUrl);
+      log.info("Invalidated {} changed packages in {}", invalidated, repository.getName());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  protected boolean appliesTo(final Repository repository) {
+    return composerFormat.equals(repository.getFormat()) && proxyType.equals(repository.getType());
+  }
+
+  @Override
+  public String getMessage() {
+    return "Polling metadata changes of " + getRepositoryField();
+  }
+}
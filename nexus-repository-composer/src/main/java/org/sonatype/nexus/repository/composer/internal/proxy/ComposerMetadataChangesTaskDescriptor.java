@@ -0,0 +1,61 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.RepositoryCombobox;
+import org.sonatype.nexus.formfields.StringTextFormField;
+import org.sonatype.nexus.repository.RepositoryTaskSupport;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.types.ProxyType;
+import org.sonatype.nexus.scheduling.TaskDescriptorSupport;
+
+/**
+ * Task descriptor for {@link ComposerMetadataChangesTask}.
+ */
+@Named
+@Singleton
+public class ComposerMetadataChangesTaskDescriptor
+    extends TaskDescriptorSupport
+{
+  public static final String TYPE_ID = "repository.composer.metadata-changes";
+
+  public static final String CHANGES_URL_FIELD_ID = "changesUrl";
+
+  public static final String DEFAULT_CHANGES_URL = "https://packagist.org/metadata/changes.json";
+
+  public ComposerMetadataChangesTaskDescriptor() {
+    super(TYPE_ID,
+        ComposerMetadataChangesTask.class,
+        "Composer - Invalidate packages changed upstream",
+        VISIBLE,
+        EXPOSED,
+        new RepositoryCombobox(
+            RepositoryTaskSupport.REPOSITORY_NAME_FIELD_ID,
+            "Repository",
+            "Select the Composer proxy repository whose cached packages to keep fresh",
+            FormField.MANDATORY
+        ).includingAnyOfFormats(ComposerFormat.NAME).includingAnyOfTypes(ProxyType.NAME)
+            .includeAnEntryForAllRepositories(),
+        new StringTextFormField(
+            CHANGES_URL_FIELD_ID,
+            "Changes URL",
+            "URL of the Packagist style metadata changes feed of the proxied repository",
+            FormField.MANDATORY
+        ).withInitialValue(DEFAULT_CHANGES_URL)
+    );
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.ViewFacet;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildPackagePath;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildZipballPath;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+
+/**
+ * Prefetches the zipballs of the latest versions of a package, and the package JSON of the packages those versions
+ * require, whenever a Composer proxy repository stores the package JSON of a package for the first time (or after it
+ * expired). Prefetching happens on a bounded background executor, limited to a fixed number of upstream requests per
+ * second, and requests which do not fit into the queue are dropped rather than queued without bound. Package JSON
+ * stored by a prefetch do not trigger further prefetches, see {@link #PREFETCH}.
+ */
+@Named
+@Singleton
+@ManagedLifecycle(phase = SERVICES)
+public class ComposerPrefetcher
+    extends LifecycleSupport
+{
+  /**
+   * Request attribute marking the requests of a prefetch, whose package JSON are not prefetched from in turn so only
+   * one level of dependencies is prefetched.
+   */
+  public static final String PREFETCH = "ComposerPrefetcher.prefetch";
+
+  private final ComposerJsonProcessor composerJsonProcessor;
+
+  private final int threads;
+
+  private final int queueSize;
+
+  private final RateLimiter rateLimiter;
+
+  private final Cache<String, Boolean> recentlyQueued;
+
+  private final Meter queued;
+
+  private final Meter dropped;
+
+  private final Counter completed;
+
+  private final Counter failed;
+
+  private ThreadPoolExecutor executor;
+
+  @Inject
+  public ComposerPrefetcher(final ComposerJsonProcessor composerJsonProcessor,
+                            final MetricRegistry metricRegistry,
+                            @Named("${nexus.composer.prefetch.threads:-4}") final int threads,
+                            @Named("${nexus.composer.prefetch.queueSize:-1000}") final int queueSize,
+                            @Named("${nexus.composer.prefetch.requestsPerSecond:-10}") final int requestsPerSecond)
+  {
+    checkArgument(threads > 0, "threads must be positive");
+    checkArgument(queueSize > 0, "queueSize must be positive");
+    checkArgument(requestsPerSecond > 0, "requestsPerSecond must be positive");
+    this.composerJsonProcessor = checkNotNull(composerJsonProcessor);
+    this.threads = threads;
+    this.queueSize = queueSize;
+    this.rateLimiter = RateLimiter.create(requestsPerSecond);
+    this.recentlyQueued = CacheBuilder.newBuilder()
+        .maximumSize(queueSize * 10L)
+        .expireAfterWrite(10, TimeUnit.MINUTES)
+        .build();
+
+    this.queued = metricRegistry.meter(name(ComposerPrefetcher.class, "queued"));
+    this.dropped = metricRegistry.meter(name(ComposerPrefetcher.class, "dropped"));
+    this.completed = metricRegistry.counter(name(ComposerPrefetcher.class, "completed"));
+    this.failed = metricRegistry.counter(name(ComposerPrefetcher.class, "failed"));
+    metricRegistry.gauge(name(ComposerPrefetcher.class, "queueDepth"), () -> (Gauge<Integer>) this::getQueueDepth);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("composer-prefetch-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    executor.shutdownNow();
+    executor = null;
+    recentlyQueued.invalidateAll();
+  }
+
+  /**
+   * Queues the prefetch of the zipballs for the first {@code versions} versions listed in the given package JSON and,
+   * if requested, the package JSON of every package those versions require. Prefetch requests are dispatched through
+   * the repository's view as the current user, so they populate the cache exactly like client requests would.
+   */
+  public void prefetch(final Repository repository,
+                       final String vendor,
+                       final String project,
+                       final Payload packageJson,
+                       final int versions,
+                       final boolean dependencies)
+  {
+    if (!isStarted() || versions <= 0) {
+      return;
+    }
+    Subject subject = SecurityUtils.getSubject();
+    submit(repository.getName() + buildPackagePath(vendor, project) + "#prefetch", subject.associateWith(() -> {
+      try {
+        Map<String, Set<String>> requiredByVersion =
+            composerJsonProcessor.getRequiredPackagesByVersion(vendor, project, packageJson);
+        int count = 0;
+        for (Map.Entry<String, Set<String>> entry : requiredByVersion.entrySet()) {
+          if (count++ >= versions) {
+            break;
+          }
+          queueFetch(repository, subject, buildZipballPath(vendor, project, entry.getKey()));
+          if (dependencies) {
+            for (String name : entry.getValue()) {
+              String[] parts = name.split("/", 2);
+              queueFetch(repository, subject, buildPackagePath(parts[0], parts[1]));
+            }
+          }
+        }
+      }
+      catch (Exception e) {
+        failed.inc();
+        log.debug("Unable to determine prefetch targets for {}/{} in {}", vendor, project, repository.getName(), e);
+      }
+    }));
+  }
+
+  private void queueFetch(final Repository repository, final Subject subject, final String path) {
+    submit(repository.getName() + path, subject.associateWith(() -> {
+      rateLimiter.acquire();
+      try {
+        Request request = new Request.Builder().action(GET).path(path)
+            .attribute(ComposerProviderHandler.DO_NOT_REWRITE, "true")
+            .attribute(PREFETCH, "true").build();
+        Response response = repository.facet(ViewFacet.class).dispatch(request);
+        if (response.getStatus().isSuccessful()) {
+          completed.inc();
+        }
+        else {
+          failed.inc();
+          log.debug("Prefetch of {} in {} returned {}", path, repository.getName(), response.getStatus());
+        }
+      }
+      catch (Exception e) {
+        failed.inc();
+        log.debug("Prefetch of {} in {} failed", path, repository.getName(), e);
+      }
+    }));
+  }
+
+  private void submit(final String key, final Runnable task) {
+    ThreadPoolExecutor current = executor;
+    if (current == null || recentlyQueued.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+      return;
+    }
+    try {
+      current.execute(task);
+      queued.mark();
+    }
+    catch (RejectedExecutionException e) {
+      recentlyQueued.invalidate(key);
+      dropped.mark();
+      log.trace("Prefetch queue full, dropping {}", key);
+    }
+  }
+
+  @VisibleForTesting
+  int getQueueDepth() {
+    ThreadPoolExecutor current = executor;
+    return current == null ? 0 : current.getQueue().size();
+  }
+}
@@ -16,6 +16,8 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 
 import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Span;
 import org.sonatype.nexus.repository.http.HttpResponses;
 import org.sonatype.nexus.repository.http.HttpStatus;
 import org.sonatype.nexus.repository.view.Context;
@@ -35,19 +37,28 @@ public class ComposerProviderHandler
 
   private final ComposerJsonProcessor composerJsonProcessor;
 
+  private ComposerTracer tracer = ComposerTracer.DISABLED;
+
   @Inject
   public ComposerProviderHandler(final ComposerJsonProcessor composerJsonProcessor) {
     this.composerJsonProcessor = checkNotNull(composerJsonProcessor);
   }
 
+  @Inject
+  public void setTracer(final ComposerTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
   @Nonnull
   @Override
   public Response handle(@Nonnull final Context context) throws Exception {
     Response response = context.proceed();
     if (!Boolean.parseBoolean(context.getRequest().getAttributes().get(DO_NOT_REWRITE, String.class))) {
       if (response.getStatus().getCode() == HttpStatus.OK && response.getPayload() != null) {
-        response = HttpResponses
-            .ok(composerJsonProcessor.rewriteProviderJson(context.getRepository(), response.getPayload()));
+        try (Span span = tracer.span("rewrite", context.getRequest().getPath())) {
+          response = HttpResponses
+              .ok(composerJsonProcessor.rewriteProviderJson(context.getRepository(), response.getPayload()));
+        }
       }
     }
     return response;
@@ -12,15 +12,37 @@
  */
 package org.sonatype.nexus.repository.composer.internal.proxy;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.shiro.SecurityUtils;
+import org.joda.time.DateTime;
+import org.sonatype.goodies.common.Time;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
 import org.sonatype.nexus.repository.cache.CacheController;
 import org.sonatype.nexus.repository.cache.CacheInfo;
 import org.sonatype.nexus.repository.composer.AssetKind;
 import org.sonatype.nexus.repository.composer.ComposerContentFacet;
 import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.composer.internal.ComposerMetrics;
+import org.sonatype.nexus.repository.composer.internal.ComposerMetrics.Stage;
+import org.sonatype.nexus.repository.composer.internal.ComposerUpstreamExecutor;
+import org.sonatype.nexus.repository.composer.internal.ComposerUpstreamExecutor.HostPermit;
+import org.sonatype.nexus.repository.composer.internal.SingleFlight;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Span;
 import org.sonatype.nexus.repository.config.Configuration;
+import org.sonatype.nexus.repository.config.ConfigurationFacet;
 import org.sonatype.nexus.repository.content.facet.ContentProxyFacetSupport;
+import org.sonatype.nexus.repository.content.fluent.FluentAsset;
 import org.sonatype.nexus.repository.view.*;
 import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher;
 
@@ -28,12 +50,30 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.groups.Default;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpHeaders.IF_MODIFIED_SINCE;
+import static org.apache.http.HttpHeaders.IF_NONE_MATCH;
+import static org.apache.http.HttpHeaders.LAST_MODIFIED;
+import static org.apache.http.HttpHeaders.RETRY_AFTER;
+import static org.apache.http.HttpStatus.SC_NOT_FOUND;
+import static org.apache.http.HttpStatus.SC_OK;
+import static org.sonatype.nexus.repository.cache.CacheControllerHolder.METADATA;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_ETAG;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_LAST_MODIFIED;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_UPSTREAM;
 import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.*;
 import static org.sonatype.nexus.repository.composer.internal.recipe.ComposerRecipeSupport.*;
 import static org.sonatype.nexus.repository.http.HttpMethods.GET;
@@ -45,15 +85,245 @@ import static org.sonatype.nexus.repository.http.HttpMethods.GET;
 public class ComposerProxyFacet
     extends ContentProxyFacetSupport
 {
-  private static final String PACKAGES_JSON = "/packages.json";
+  static final String PACKAGES_JSON = "/packages.json";
+
+  /**
+   * Request attribute marking the requests that refresh expired metadata in the background, which must not be served
+   * the stale metadata themselves.
+   */
+  @VisibleForTesting
+  static final String REFRESH = "ComposerProxyFacet.refresh";
 
   private static final String LIST_JSON = "/packages/list.json";
 
+  @VisibleForTesting
+  static final String COMPOSER_CONFIG_KEY = "composer";
+
+  /**
+   * Composer specific proxy settings, stored in the {@code composer} section of the repository configuration.
+   */
+  @VisibleForTesting
+  static class ComposerConfig
+  {
+    /**
+     * Whether zipballs and required packages are prefetched when a package JSON is stored.
+     */
+    @NotNull
+    public Boolean prefetchEnabled = Boolean.FALSE;
+
+    /**
+     * How many of the versions listed first (newest) in a package JSON have their zipballs prefetched.
+     */
+    @NotNull
+    @Min(0L)
+    public Integer prefetchVersions = 3;
+
+    /**
+     * Whether the package JSON of packages required by the prefetched versions is prefetched too.
+     */
+    @NotNull
+    public Boolean prefetchDependencies = Boolean.TRUE;
+
+    /**
+     * Whether expired metadata is served immediately while it is refreshed from upstream in the background.
+     */
+    @NotNull
+    public Boolean staleWhileRevalidate = Boolean.FALSE;
+
+    /**
+     * How long (in minutes) after it was last verified expired metadata may still be served while revalidating.
+     */
+    @NotNull
+    @Min(0L)
+    public Integer maxStaleness = 1440;
+  }
+
   private final ComposerJsonProcessor composerJsonProcessor;
 
+  private final ComposerPrefetcher composerPrefetcher;
+
+  private final ComposerUpstreamExecutor upstreamExecutor;
+
+  private final MetricRegistry metricRegistry;
+
+  private final ComposerMetrics composerMetrics;
+
+  @VisibleForTesting
+  ComposerConfig composerConfig = new ComposerConfig();
+
+  private final SingleFlight<String> fetches = new SingleFlight<>();
+
+  private Time fetchWaitTimeout = Time.seconds(60);
+
+  private int refreshThreads = 2;
+
+  @VisibleForTesting
+  ThreadPoolExecutor refreshExecutor;
+
+  @VisibleForTesting
+  Cache<String, Boolean> missingMetadata = buildMissingMetadataCache(Time.minutes(10), 10_000);
+
+  private int maxUpstreamFetches = 16;
+
+  private Time upstreamQueueTimeout = Time.seconds(60);
+
+  private Time maxRetryAfter = Time.minutes(5);
+
+  @VisibleForTesting
+  ComposerUpstreamLimiter upstreamLimiter;
+
+  private ComposerTracer tracer = ComposerTracer.DISABLED;
+
   @Inject
-  public ComposerProxyFacet(final ComposerJsonProcessor composerJsonProcessor) {
+  public ComposerProxyFacet(final ComposerJsonProcessor composerJsonProcessor,
+                            final ComposerPrefetcher composerPrefetcher,
+                            final ComposerUpstreamExecutor upstreamExecutor,
+                            final MetricRegistry metricRegistry,
+                            final ComposerMetrics composerMetrics)
+  {
     this.composerJsonProcessor = checkNotNull(composerJsonProcessor);
+    this.composerPrefetcher = checkNotNull(composerPrefetcher);
+    this.upstreamExecutor = checkNotNull(upstreamExecutor);
+    this.metricRegistry = checkNotNull(metricRegistry);
+    this.composerMetrics = checkNotNull(composerMetrics);
+  }
+
+  @Inject
+  public void setTracer(final ComposerTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
+  /**
+   * Configures how long concurrent requests for a path wait on the request already fetching that path from upstream
+   * before falling back to the stale cached content.
+   */
+  @Inject
+  protected void configureFetchWaitTimeout(
+      @Named("${nexus.composer.proxy.fetchWaitTimeout:-60s}") final Time fetchWaitTimeout)
+  {
+    this.fetchWaitTimeout = checkNotNull(fetchWaitTimeout);
+  }
+
+  /**
+   * Configures how many threads per repository refresh expired metadata in the background when stale-while-revalidate
+   * is enabled.
+   */
+  @Inject
+  protected void configureRefreshThreads(@Named("${nexus.composer.proxy.refreshThreads:-2}") final int refreshThreads) {
+    checkArgument(refreshThreads > 0, "refreshThreads must be positive");
+    this.refreshThreads = refreshThreads;
+  }
+
+  /**
+   * Configures for how long, and for how many paths at most, upstream 404s for package and provider JSON are remembered
+   * so that resolving the URL of a zipball of an unknown package does not go upstream again.
+   */
+  @Inject
+  protected void configureMissingMetadataCache(
+      @Named("${nexus.composer.proxy.missingMetadataTtl:-10m}") final Time ttl,
+      @Named("${nexus.composer.proxy.missingMetadataCacheSize:-10000}") final int size)
+  {
+    checkArgument(size > 0, "size must be positive");
+    this.missingMetadata = buildMissingMetadataCache(checkNotNull(ttl), size);
+  }
+
+  /**
+   * Configures how many zipballs a repository fetches from upstream at once before further fetches are queued, how long
+   * a fetch waits in that queue, and for how long at most fetches are paused when the remote asks for it with a
+   * {@code Retry-After} header.
+   */
+  @Inject
+  protected void configureUpstreamLimits(
+      @Named("${nexus.composer.proxy.maxUpstreamFetches:-16}") final int maxUpstreamFetches,
+      @Named("${nexus.composer.proxy.upstreamQueueTimeout:-60s}") final Time upstreamQueueTimeout,
+      @Named("${nexus.composer.proxy.maxRetryAfter:-5m}") final Time maxRetryAfter)
+  {
+    checkArgument(maxUpstreamFetches > 0, "maxUpstreamFetches must be positive");
+    this.maxUpstreamFetches = maxUpstreamFetches;
+    this.upstreamQueueTimeout = checkNotNull(upstreamQueueTimeout);
+    this.maxRetryAfter = checkNotNull(maxRetryAfter);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    super.doStart();
+    upstreamLimiter = new ComposerUpstreamLimiter(getRepository().getName(), maxUpstreamFetches,
+        maxRetryAfter.toMillis(), metricRegistry);
+    refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(100),
+        new ThreadFactoryBuilder().setNameFormat("composer-refresh-" + getRepository().getName() + "-%d")
+            .setDaemon(true).build());
+    refreshExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    refreshExecutor.shutdownNow();
+    refreshExecutor = null;
+    upstreamLimiter.close();
+    upstreamLimiter = null;
+    super.doStop();
+  }
+
+  /**
+   * Serves fresh content straight from the cache. Expired metadata is served from the cache as well while it is
+   * refreshed in the background, if stale-while-revalidate is enabled and the metadata has not been expired for longer
+   * than the configured maximum staleness. Otherwise the request goes upstream, coalesced with concurrent requests for
+   * the same path, see {@link #getCoalesced}.
+   */
+  @Nullable
+  @Override
+  public Content get(final Context context) throws IOException {
+    String path = getAssetPath(context);
+    Content cached = getCachedContent(context);
+    if (cached != null && !isExpired(context, cached)) {
+      return cached;
+    }
+    AssetKind assetKind = context.getAttributes().require(AssetKind.class);
+    ComposerConfig config = composerConfig;
+    if (cached != null && config.staleWhileRevalidate && assetKind.getCacheType() == METADATA
+        && !Boolean.parseBoolean(context.getRequest().getAttributes().get(REFRESH, String.class))
+        && isServableWhileRevalidating(context, cached, config.maxStaleness)) {
+      refreshInBackground(context, path);
+      return cached;
+    }
+    try {
+      return getCoalesced(context, path, cached);
+    }
+    finally {
+      finishUpstreamTransfer(context);
+    }
+  }
+
+  /**
+   * Gives back the upstream slots of a fetch whose response body was neither read nor discarded, for instance because
+   * storing it failed before it was opened.
+   */
+  private static void finishUpstreamTransfer(final Context context) {
+    ComposerUpstreamTransfer transfer = context.getAttributes().get(ComposerUpstreamTransfer.class);
+    if (transfer != null) {
+      transfer.close();
+    }
+  }
+
+  /**
+   * Coalesces concurrent requests for the same expired or missing asset path, so that only one of them goes upstream
+   * and stores the result while the others wait for it and share its outcome, the stored content or the failure.
+   * Should the wait time out, the waiting requests serve the stale cached content (or go upstream themselves if nothing
+   * is cached).
+   */
+  @Nullable
+  private Content getCoalesced(final Context context, final String path, @Nullable final Content stale)
+      throws IOException
+  {
+    return fetches.execute(path, fetchWaitTimeout,
+        () -> super.get(context),
+        () -> stale != null ? stale : super.get(context));
+  }
+
+  private boolean isExpired(final Context context, final Content cached) {
+    CacheInfo cacheInfo = cached.getAttributes().get(CacheInfo.class);
+    return cacheInfo == null || getCacheController(context).isStale(cacheInfo);
   }
 
   @Nullable
@@ -67,38 +337,97 @@ public class ComposerProxyFacet
     }
   }
 
+  /**
+   * Revalidates expired metadata with the {@code Last-Modified} and {@code ETag} values the remote sent when the
+   * metadata was stored (rather than the ones of the locally stored, possibly rewritten, copy), so the remote can
+   * answer with a 304. Also captures those values from successful responses, see {@link #store}. Requests are limited
+   * per upstream host, see {@link ComposerUpstreamExecutor#acquireHostPermit}, and zipball fetches per repository, see
+   * {@link ComposerUpstreamLimiter}. Both are held until the body of the response has been read, see
+   * {@link ComposerUpstreamTransfer}.
+   */
+  @Override
+  protected HttpResponse execute(final Context context, final HttpClient client, final HttpRequestBase request)
+      throws IOException
+  {
+    AssetKind assetKind = context.getAttributes().require(AssetKind.class);
+    boolean metadata = assetKind.getCacheType() == METADATA;
+    if (metadata) {
+      applyUpstreamValidators(context, request);
+    }
+    ComposerUpstreamLimiter limiter = assetKind == AssetKind.ZIPBALL ? upstreamLimiter : null;
+    if (limiter != null) {
+      try (Span span = tracer.span("queue", null)) {
+        limiter.acquire(clientKey(), upstreamQueueTimeout.toMillis());
+      }
+    }
+    HttpResponse response;
+    HostPermit permit = null;
+    try (Span span = tracer.span("upstream", request.getURI().toString())) {
+      permit = upstreamExecutor.acquireHostPermit(request.getURI().getHost());
+      response = super.execute(context, client, request);
+    }
+    catch (IOException | RuntimeException e) {
+      if (permit != null) {
+        permit.close();
+      }
+      if (limiter != null) {
+        limiter.release(-1, null);
+      }
+      throw e;
+    }
+    ComposerUpstreamTransfer transfer = new ComposerUpstreamTransfer();
+    transfer.onClose(permit::close);
+    if (limiter != null) {
+      int statusCode = response.getStatusLine().getStatusCode();
+      String retryAfter = headerValue(response, RETRY_AFTER);
+      transfer.onClose(() -> limiter.release(statusCode, retryAfter));
+    }
+    context.getAttributes().set(ComposerUpstreamTransfer.class, transfer);
+    transfer.attach(response);
+    if (metadata && response.getStatusLine().getStatusCode() == SC_OK) {
+      context.getAttributes().set(UpstreamValidators.class,
+          new UpstreamValidators(headerValue(response, LAST_MODIFIED), headerValue(response, ETAG)));
+    }
+    else if (metadata && response.getStatusLine().getStatusCode() == SC_NOT_FOUND) {
+      rememberMissing(context);
+    }
+    return response;
+  }
+
+  @Override
+  public void invalidateProxyCaches() {
+    missingMetadata.invalidateAll();
+    super.invalidateProxyCaches();
+  }
+
   // HACK: Workaround for known CGLIB issue, forces an Import-Package for org.sonatype.nexus.repository.config
   @Override
   protected void doValidate(final Configuration configuration) throws Exception {
     super.doValidate(configuration);
+    facet(ConfigurationFacet.class).validateSection(configuration, COMPOSER_CONFIG_KEY, ComposerConfig.class,
+        Default.class, getRepository().getType().getValidationGroup());
+  }
+
+  @Override
+  protected void doConfigure(final Configuration configuration) throws Exception {
+    super.doConfigure(configuration);
+    composerConfig = facet(ConfigurationFacet.class)
+        .readSection(configuration, COMPOSER_CONFIG_KEY, ComposerConfig.class);
+  }
+
+  @Override
+  protected void doDestroy() throws Exception {
+    composerConfig = new ComposerConfig();
+    super.doDestroy();
   }
 
   @Nullable
   @Override
   protected Content getCachedContent(final Context context) throws IOException {
-    AssetKind assetKind = context.getAttributes().require(AssetKind.class);
-    Optional<Content> content;
-    switch (assetKind) {
-      case PACKAGES:
-        content = content().get(PACKAGES_JSON);
-        break;
-      case LIST:
-        content = content().get(LIST_JSON);
-        break;
-      case PROVIDER:
-        content = content().get(buildProviderPath(context));
-        break;
-      case PACKAGE:
-        content = content().get(buildPackagePath(context));
-        break;
-      case ZIPBALL:
-        content = content().get(buildZipballPath(context));
-        break;
-      default:
-        throw new IllegalStateException();
+    String path = getAssetPath(context);
+    try (Span span = tracer.span("cache", path)) {
+      return content().get(path).orElse(null);
     }
-
-    return content.orElse(null);
   }
 
   @Override
@@ -117,6 +446,7 @@ public class ComposerProxyFacet
         break;
       case PACKAGE:
         res = content().put(buildPackagePath(context), content, assetKind);
+        maybePrefetch(context, res);
         break;
       case ZIPBALL:
         res = content().put(buildZipballPath(context), content, assetKind);
@@ -125,6 +455,13 @@ public class ComposerProxyFacet
         throw new IllegalStateException();
     }
 
+    missingMetadata.invalidate(getAssetPath(context));
+
+    UpstreamValidators validators = context.getAttributes().get(UpstreamValidators.class);
+    if (validators != null) {
+      content().setUpstreamValidators(getAssetPath(context), res, validators.lastModified, validators.etag);
+    }
+
     return res;
   }
 
@@ -132,26 +469,7 @@ public class ComposerProxyFacet
   protected void indicateVerified(final Context context, final Content content, final CacheInfo cacheInfo)
       throws IOException
   {
-    AssetKind assetKind = context.getAttributes().require(AssetKind.class);
-    switch (assetKind) {
-      case PACKAGES:
-        content().setCacheInfo(PACKAGES_JSON, content, cacheInfo);
-        break;
-      case LIST:
-        content().setCacheInfo(LIST_JSON, content, cacheInfo);
-        break;
-      case PROVIDER:
-        content().setCacheInfo(buildProviderPath(context), content, cacheInfo);
-        break;
-      case PACKAGE:
-        content().setCacheInfo(buildPackagePath(context), content, cacheInfo);
-        break;
-      case ZIPBALL:
-        content().setCacheInfo(buildZipballPath(context), content, cacheInfo);
-        break;
-      default:
-        throw new IllegalStateException();
-    }
+    content().setCacheInfo(getAssetPath(context), content, cacheInfo);
   }
 
   @Override
@@ -159,7 +477,9 @@ public class ComposerProxyFacet
     AssetKind assetKind = context.getAttributes().require(AssetKind.class);
     switch (assetKind) {
       case ZIPBALL:
-        return getZipballUrl(context);
+        try (Timer.Context timer = composerMetrics.time(Stage.ZIPBALL_URL, getRepository(), assetKind)) {
+          return getZipballUrl(context);
+        }
       default:
         return context.getRequest().getPath().substring(1);
     }
@@ -172,6 +492,149 @@ public class ComposerProxyFacet
     return cacheControllerHolder.require(assetKind.getCacheType());
   }
 
+  /**
+   * Returns {@code true} if the cached content is stale, but was last verified no longer than {@code maxStaleness}
+   * minutes ago.
+   */
+  @VisibleForTesting
+  boolean isServableWhileRevalidating(final Context context, final Content cached, final int maxStaleness) {
+    CacheInfo cacheInfo = cached.getAttributes().get(CacheInfo.class);
+    if (cacheInfo == null || !getCacheController(context).isStale(cacheInfo)) {
+      return false;
+    }
+    return cacheInfo.getLastVerified().isAfter(DateTime.now().minusMinutes(maxStaleness));
+  }
+
+  /**
+   * Refreshes the asset at the given path on a background thread, unless a refresh (or any other upstream fetch) of
+   * that path is already in flight. The refresh is dispatched as a new request through the repository's view, as the
+   * current user, so it does not share the request or context of the client request it was started for.
+   */
+  private void refreshInBackground(final Context context, final String path) {
+    ThreadPoolExecutor executor = refreshExecutor;
+    if (executor == null || fetches.isInFlight(path)) {
+      return;
+    }
+    Request request = new Request.Builder().action(GET).path(context.getRequest().getPath())
+        .attribute(ComposerProviderHandler.DO_NOT_REWRITE, "true")
+        .attribute(REFRESH, "true").build();
+    try {
+      executor.execute(SecurityUtils.getSubject().associateWith(() -> {
+        try {
+          getRepository().facet(ViewFacet.class).dispatch(request);
+        }
+        catch (Exception e) {
+          log.debug("Background refresh of {} in {} failed", path, getRepository().getName(), e);
+        }
+      }));
+    }
+    catch (RejectedExecutionException e) {
+      log.debug("Background refresh queue of {} is full, skipping refresh of {}", getRepository().getName(), path);
+    }
+  }
+
+  /**
+   * Replaces the conditional headers of a revalidation request with the values the remote sent for the stale asset,
+   * if any were recorded. Requests without conditional headers are not revalidations and are left alone.
+   */
+  private void applyUpstreamValidators(final Context context, final HttpRequestBase request) {
+    if (!request.containsHeader(IF_MODIFIED_SINCE) && !request.containsHeader(IF_NONE_MATCH)) {
+      return;
+    }
+    NestedAttributesMap attributes = content().getAsset(getAssetPath(context))
+        .map(FluentAsset::attributes)
+        .orElse(null);
+    if (attributes == null || !attributes.contains(P_UPSTREAM)) {
+      return;
+    }
+    NestedAttributesMap upstream = attributes.child(P_UPSTREAM);
+    String lastModified = upstream.get(P_LAST_MODIFIED, String.class);
+    String etag = upstream.get(P_ETAG, String.class);
+    request.removeHeaders(IF_MODIFIED_SINCE);
+    request.removeHeaders(IF_NONE_MATCH);
+    if (lastModified != null) {
+      request.setHeader(IF_MODIFIED_SINCE, lastModified);
+    }
+    if (etag != null) {
+      request.setHeader(IF_NONE_MATCH, etag);
+    }
+  }
+
+  /**
+   * Remembers that the package or provider JSON requested in the given context does not exist upstream.
+   */
+  private void rememberMissing(final Context context) {
+    AssetKind assetKind = context.getAttributes().require(AssetKind.class);
+    if (assetKind == AssetKind.PACKAGE || assetKind == AssetKind.PROVIDER) {
+      missingMetadata.put(getAssetPath(context), Boolean.TRUE);
+    }
+  }
+
+  private boolean isKnownMissing(final String path) {
+    return missingMetadata.getIfPresent(path) != null;
+  }
+
+  private static Cache<String, Boolean> buildMissingMetadataCache(final Time ttl, final int size) {
+    return CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the key zipball fetches of the current user are queued under, see {@link ComposerUpstreamLimiter}.
+   */
+  private static String clientKey() {
+    Object principal = SecurityUtils.getSubject().getPrincipal();
+    return principal != null ? principal.toString() : "anonymous";
+  }
+
+  @Nullable
+  private static String headerValue(final HttpResponse response, final String name) {
+    Header header = response.getLastHeader(name);
+    return header != null ? header.getValue() : null;
+  }
+
+  /**
+   * Returns the path of the asset the request in the given context is for.
+   */
+  private String getAssetPath(final Context context) {
+    AssetKind assetKind = context.getAttributes().require(AssetKind.class);
+    switch (assetKind) {
+      case PACKAGES:
+        return PACKAGES_JSON;
+      case LIST:
+        return LIST_JSON;
+      case PROVIDER:
+        return buildProviderPath(context);
+      case PACKAGE:
+        return buildPackagePath(context);
+      case ZIPBALL:
+        return buildZipballPath(context);
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Hands a freshly stored package JSON to the prefetcher, if prefetching is enabled for this repository. The package
+   * JSON of dev versions is skipped, as it only lists branches which are rarely installed by version, and so is the
+   * package JSON stored by a prefetch itself, so only one level of dependencies is prefetched.
+   */
+  private void maybePrefetch(final Context context, final Content packageJson) {
+    ComposerConfig config = composerConfig;
+    if (!config.prefetchEnabled
+        || Boolean.parseBoolean(context.getRequest().getAttributes().get(ComposerPrefetcher.PREFETCH, String.class))) {
+      return;
+    }
+    String project = getProjectToken(context);
+    if (project.endsWith(DEV_VERSIONS_SUFFIX)) {
+      return;
+    }
+    composerPrefetcher.prefetch(getRepository(), getVendorToken(context), project, packageJson,
+        config.prefetchVersions, config.prefetchDependencies);
+  }
+
   private Content generatePackagesJson(final Content original) {
     try {
       Payload rewritten = composerJsonProcessor.rewritePackagesJson(getRepository(), original.getPayload());
@@ -189,10 +652,10 @@ public class ComposerProxyFacet
       String project = tokens.get(PROJECT_TOKEN);
       String version = tokens.get(VERSION_TOKEN);
 
-      // try v2 package
+      // try v2 package, unless known to be missing upstream
       try {
         String path = buildPackagePath(vendor, project);
-        Payload payload = getPackagePayload(context, path);
+        Payload payload = isKnownMissing(path) ? null : getPackagePayload(context, path);
         if (payload != null) {
           return composerJsonProcessor.getDistUrlFromPackage(vendor, project, version, payload);
         }
@@ -203,7 +666,7 @@ public class ComposerProxyFacet
       // try v2 package (dev versions)
       try {
         String path = buildPackagePathForDevVersions(vendor, project);
-        Payload payload = getPackagePayload(context, path);
+        Payload payload = isKnownMissing(path) ? null : getPackagePayload(context, path);
         if (payload != null) {
           return composerJsonProcessor.getDistUrlFromPackage(vendor, project, version, payload);
         }
@@ -213,7 +676,7 @@ public class ComposerProxyFacet
 
       // try v1 provider
       String path = buildProviderPath(vendor, project);
-      Payload payload = getProviderPayload(context, path);
+      Payload payload = isKnownMissing(path) ? null : getProviderPayload(context, path);
       if (payload == null) {
         throw new NonResolvableProviderJsonException(
             String.format("No provider found for vendor %s, project %s, version %s", vendor, project, version));
@@ -243,6 +706,24 @@ public class ComposerProxyFacet
     return getPackagePayload(context, path);
   }
 
+  /**
+   * The {@code Last-Modified} and {@code ETag} header values of a successful upstream response, kept verbatim.
+   */
+  @VisibleForTesting
+  static class UpstreamValidators
+  {
+    @Nullable
+    final String lastModified;
+
+    @Nullable
+    final String etag;
+
+    UpstreamValidators(@Nullable final String lastModified, @Nullable final String etag) {
+      this.lastModified = lastModified;
+      this.etag = etag;
+    }
+  }
+
   @VisibleForTesting
   static class NonResolvableProviderJsonException
       extends RuntimeException
@@ -0,0 +1,275 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.goodies.common.ComponentSupport;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.http.client.utils.DateUtils;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Limits how many upstream fetches a Composer proxy repository runs at once. Fetches over the limit wait in a queue
+ * per client, and free slots go to the clients in turn, so one client installing a large project cannot starve the
+ * others. The limit adapts to the remote: it is halved whenever the remote answers with a 429, which may also pause all
+ * fetches for the time given in its {@code Retry-After} header, and grows back by one for every limit's worth of
+ * successful fetches.
+ */
+public class ComposerUpstreamLimiter
+    extends ComponentSupport
+{
+  @VisibleForTesting
+  static final int SC_TOO_MANY_REQUESTS = 429;
+
+  private final int maxLimit;
+
+  private final long maxPauseMillis;
+
+  private final MetricRegistry metricRegistry;
+
+  private final String metricsPrefix;
+
+  private final Meter throttled;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition changed = lock.newCondition();
+
+  private final Map<String, Deque<Waiter>> queues = new LinkedHashMap<>();
+
+  private int limit;
+
+  private int inFlight;
+
+  private int queued;
+
+  private int successes;
+
+  private long pausedUntil;
+
+  public ComposerUpstreamLimiter(final String repositoryName,
+                                 final int maxLimit,
+                                 final long maxPauseMillis,
+                                 final MetricRegistry metricRegistry)
+  {
+    checkArgument(maxLimit > 0, "maxLimit must be positive");
+    this.maxLimit = maxLimit;
+    this.maxPauseMillis = maxPauseMillis;
+    this.limit = maxLimit;
+    this.metricRegistry = checkNotNull(metricRegistry);
+    this.metricsPrefix = name(ComposerUpstreamLimiter.class, repositoryName);
+    this.throttled = metricRegistry.meter(name(metricsPrefix, "throttled"));
+    metricRegistry.gauge(name(metricsPrefix, "queueDepth"), () -> (Gauge<Integer>) this::getQueueDepth);
+    metricRegistry.gauge(name(metricsPrefix, "inFlight"), () -> (Gauge<Integer>) this::getInFlight);
+    metricRegistry.gauge(name(metricsPrefix, "limit"), () -> (Gauge<Integer>) this::getLimit);
+  }
+
+  /**
+   * Removes the metrics of this limiter.
+   */
+  public void close() {
+    metricRegistry.removeMatching((metricName, metric) -> metricName.startsWith(metricsPrefix + "."));
+  }
+
+  /**
+   * Waits for a slot to fetch from upstream on behalf of the given client, for at most the given time. Every slot
+   * acquired must be given back with {@link #release}.
+   */
+  public void acquire(final String client, final long timeoutMillis) throws IOException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    lock.lock();
+    try {
+      if (queued == 0 && inFlight < limit && !isPaused()) {
+        inFlight++;
+        return;
+      }
+
+      Waiter waiter = new Waiter(client);
+      queues.computeIfAbsent(client, key -> new ArrayDeque<>()).addLast(waiter);
+      queued++;
+      try {
+        while (!waiter.granted) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0L) {
+            throw new IOException("Timed out after " + timeoutMillis + "ms waiting to fetch from upstream");
+          }
+          long pause = pausedUntil - System.currentTimeMillis();
+          changed.awaitNanos(pause > 0L ? Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(pause)) : remaining);
+          dispatch();
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (waiter.granted) {
+          // granted while being interrupted, hand the slot on
+          inFlight--;
+          dispatch();
+        }
+        throw new InterruptedIOException("Interrupted waiting to fetch from upstream");
+      }
+      finally {
+        if (!waiter.granted) {
+          dequeue(waiter);
+        }
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gives back a slot, adapting the limit to the status code of the upstream response and its {@code Retry-After}
+   * header, if any. A status code of {@code -1} means the fetch failed without a response.
+   */
+  public void release(final int statusCode, @Nullable final String retryAfter) {
+    lock.lock();
+    try {
+      inFlight--;
+      if (statusCode == SC_TOO_MANY_REQUESTS) {
+        throttled.mark();
+        successes = 0;
+        limit = Math.max(1, limit / 2);
+        long pause = parseRetryAfter(retryAfter);
+        if (pause > 0L) {
+          pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + Math.min(pause, maxPauseMillis));
+        }
+        log.debug("Upstream throttled, limit lowered to {}, paused for {}ms", limit, pause);
+      }
+      else if (statusCode > 0 && statusCode < 500 && limit < maxLimit && ++successes >= limit) {
+        successes = 0;
+        limit++;
+      }
+      dispatch();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return queued;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  public int getLimit() {
+    lock.lock();
+    try {
+      return limit;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isPaused() {
+    return System.currentTimeMillis() < pausedUntil;
+  }
+
+  /**
+   * Hands free slots to the waiting clients in turn, moving a client to the back of the line after each slot.
+   */
+  private void dispatch() {
+    boolean granted = false;
+    while (inFlight < limit && queued > 0 && !isPaused()) {
+      Iterator<Entry<String, Deque<Waiter>>> iterator = queues.entrySet().iterator();
+      Entry<String, Deque<Waiter>> next = iterator.next();
+      iterator.remove();
+      Waiter waiter = next.getValue().pollFirst();
+      if (!next.getValue().isEmpty()) {
+        queues.put(next.getKey(), next.getValue());
+      }
+      queued--;
+      inFlight++;
+      waiter.granted = true;
+      granted = true;
+    }
+    if (granted) {
+      changed.signalAll();
+    }
+  }
+
+  private void dequeue(final Waiter waiter) {
+    Deque<Waiter> queue = queues.get(waiter.client);
+    if (queue != null && queue.remove(waiter)) {
+      queued--;
+      if (queue.isEmpty()) {
+        queues.remove(waiter.client);
+      }
+    }
+  }
+
+  /**
+   * Parses a {@code Retry-After} value, either in seconds or as an HTTP date, into milliseconds from now.
+   */
+  @VisibleForTesting
+  static long parseRetryAfter(@Nullable final String retryAfter) {
+    if (retryAfter == null || retryAfter.trim().isEmpty()) {
+      return 0L;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+    }
+    catch (NumberFormatException e) {
+      Date date = DateUtils.parseDate(retryAfter.trim());
+      return date == null ? 0L : Math.max(0L, date.getTime() - System.currentTimeMillis());
+    }
+  }
+
+  private static class Waiter
+  {
+    private final String client;
+
+    private boolean granted;
+
+    private Waiter(final String client) {
+      this.client = client;
+    }
+  }
+}
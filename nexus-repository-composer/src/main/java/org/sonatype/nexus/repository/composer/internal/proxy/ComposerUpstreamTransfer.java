@@ -0,0 +1,105 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The upstream slots held by one request of a Composer proxy repository to its remote. The slots are given back once
+ * the body of the response has been read or discarded, rather than once its headers arrived, so that they bound the
+ * actual transfers from upstream. Closing gives them back at once; it is safe to close more than once.
+ */
+class ComposerUpstreamTransfer
+    implements AutoCloseable
+{
+  private final List<Runnable> releases = new ArrayList<>();
+
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /**
+   * Adds a slot to give back when the transfer is done.
+   */
+  void onClose(final Runnable release) {
+    releases.add(checkNotNull(release));
+  }
+
+  /**
+   * Makes closing the body of the given response, or writing it out, finish the transfer. Finishes it at once if the
+   * response has no body.
+   */
+  HttpResponse attach(final HttpResponse response) {
+    HttpEntity entity = response.getEntity();
+    if (entity == null) {
+      close();
+    }
+    else {
+      response.setEntity(new ReleasingEntity(entity));
+    }
+    return response;
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      for (Runnable release : releases) {
+        release.run();
+      }
+    }
+  }
+
+  private class ReleasingEntity
+      extends HttpEntityWrapper
+  {
+    private ReleasingEntity(final HttpEntity entity) {
+      super(entity);
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      return new FilterInputStream(super.getContent())
+      {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          }
+          finally {
+            ComposerUpstreamTransfer.this.close();
+          }
+        }
+      };
+    }
+
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+      try {
+        super.writeTo(out);
+      }
+      finally {
+        ComposerUpstreamTransfer.this.close();
+      }
+    }
+  }
+}
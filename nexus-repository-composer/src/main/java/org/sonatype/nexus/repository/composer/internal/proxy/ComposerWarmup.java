@@ -0,0 +1,279 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.composer.internal.ComposerGlob;
+import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.ViewFacet;
+import org.sonatype.nexus.scheduling.CancelableHelper;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildPackagePath;
+import static org.sonatype.nexus.repository.composer.internal.ComposerPathUtils.buildZipballPath;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+
+/**
+ * Warms up the cache of a Composer proxy repository by fetching the p2 package JSON and the zipballs of the newest
+ * versions of a set of packages through the repository's view, with a bounded number of packages in flight at once.
+ * Optionally, package JSON and zipballs that are already cached are not fetched again. A rerun of an interrupted
+ * warm-up then still goes through every package, reading the cached package JSON, but only goes upstream for what is
+ * missing; no position in the package list is kept.
+ */
+@Named
+@Singleton
+public class ComposerWarmup
+    extends ComponentSupport
+{
+  private static final String LIST_JSON = "/packages/list.json";
+
+  private final ComposerJsonProcessor composerJsonProcessor;
+
+  private final Meter packagesWarmed;
+
+  private final Meter packagesSkipped;
+
+  private final Meter zipballsFetched;
+
+  private final Meter failures;
+
+  @Inject
+  public ComposerWarmup(final ComposerJsonProcessor composerJsonProcessor, final MetricRegistry metricRegistry) {
+    this.composerJsonProcessor = checkNotNull(composerJsonProcessor);
+    this.packagesWarmed = metricRegistry.meter(name(ComposerWarmup.class, "packagesWarmed"));
+    this.packagesSkipped = metricRegistry.meter(name(ComposerWarmup.class, "packagesSkipped"));
+    this.zipballsFetched = metricRegistry.meter(name(ComposerWarmup.class, "zipballsFetched"));
+    this.failures = metricRegistry.meter(name(ComposerWarmup.class, "failures"));
+  }
+
+  /**
+   * Resolves the names of the packages to warm up: the given whitespace or comma separated {@code vendor/project}
+   * names, or all packages in the upstream list JSON if none are given, reduced to those matching the optional filter
+   * (where {@code *} matches any sequence of characters).
+   */
+  public List<String> resolvePackages(final Repository repository,
+                                      @Nullable final String packages,
+                                      @Nullable final String filter) throws IOException
+  {
+    List<String> names;
+    if (packages != null && !packages.trim().isEmpty()) {
+      names = Splitter.onPattern("[\\s,]+").omitEmptyStrings().splitToList(packages);
+    }
+    else {
+      Response response = dispatch(repository, LIST_JSON);
+      if (!response.getStatus().isSuccessful() || response.getPayload() == null) {
+        throw new IOException("Unable to fetch " + LIST_JSON + " of " + repository.getName() + ": " +
+            response.getStatus());
+      }
+      names = composerJsonProcessor.getPackageNames(response.getPayload());
+    }
+
+    Pattern pattern = Strings.isNullOrEmpty(filter) ? null : ComposerGlob.toPattern(filter.trim());
+    Set<String> resolved = new LinkedHashSet<>();
+    for (String name : names) {
+      if (name.indexOf('/') > 0 && (pattern == null || pattern.matcher(name).matches())) {
+        resolved.add(name);
+      }
+    }
+    return new ArrayList<>(resolved);
+  }
+
+  /**
+   * Warms up the given packages, fetching the zipballs of their {@code versions} newest versions, with at most
+   * {@code concurrency} packages in flight. Requests run as the current user. Returns once all packages are done, or
+   * throws if the current task is cancelled.
+   */
+  public Result warm(final Repository repository,
+                     final List<String> names,
+                     final int versions,
+                     final int concurrency,
+                     final boolean skipCached)
+  {
+    checkArgument(versions >= 0, "versions must not be negative");
+    checkArgument(concurrency > 0, "concurrency must be positive");
+
+    Result result = new Result();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Subject subject = SecurityUtils.getSubject();
+    Semaphore inFlight = new Semaphore(concurrency);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+        new ThreadFactoryBuilder().setNameFormat("composer-warmup-" + repository.getName() + "-%d").setDaemon(true)
+            .build());
+    try {
+      for (String name : names) {
+        CancelableHelper.checkCancellation();
+        inFlight.acquireUninterruptibly();
+        executor.execute(subject.associateWith(() -> {
+          try {
+            warmPackage(repository, name, versions, skipCached, result);
+          }
+          finally {
+            inFlight.release();
+          }
+        }));
+      }
+      inFlight.acquireUninterruptibly(concurrency);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    long seconds = Math.max(1L, stopwatch.elapsed(TimeUnit.SECONDS));
+    log.info("Warmed up {} packages ({} zipballs) of {} in {}s ({} packages/s), skipped {} already cached, {} failed",
+        result.warmed.get(), result.zipballs.get(), repository.getName(), seconds, result.warmed.get() / seconds,
+        result.skipped.get(), result.failed.get());
+    return result;
+  }
+
+  private void warmPackage(final Repository repository,
+                           final String name,
+                           final int versions,
+                           final boolean skipCached,
+                           final Result result)
+  {
+    String[] parts = name.split("/", 2);
+    String vendor = parts[0];
+    String project = parts[1];
+    try {
+      ComposerContentFacet content = repository.facet(ComposerContentFacet.class);
+      Optional<Content> cached = skipCached ? content.get(buildPackagePath(vendor, project)) : Optional.empty();
+      boolean fetched = !cached.isPresent();
+      Payload packageJson;
+      if (cached.isPresent()) {
+        packageJson = cached.get();
+      }
+      else {
+        Response response = dispatch(repository, buildPackagePath(vendor, project));
+        if (!response.getStatus().isSuccessful() || response.getPayload() == null) {
+          fail(result, name, response.getStatus());
+          return;
+        }
+        packageJson = response.getPayload();
+      }
+
+      Set<String> available = composerJsonProcessor.getRequiredPackagesByVersion(vendor, project, packageJson).keySet();
+      int count = 0;
+      for (String version : available) {
+        if (count++ >= versions) {
+          break;
+        }
+        String path = buildZipballPath(vendor, project, version);
+        if (skipCached && content.getAsset(path).isPresent()) {
+          continue;
+        }
+        Response response = dispatch(repository, path);
+        if (!response.getStatus().isSuccessful()) {
+          fail(result, path, response.getStatus());
+          return;
+        }
+        fetched = true;
+        result.zipballs.incrementAndGet();
+        zipballsFetched.mark();
+      }
+
+      if (fetched) {
+        result.warmed.incrementAndGet();
+        packagesWarmed.mark();
+      }
+      else {
+        result.skipped.incrementAndGet();
+        packagesSkipped.mark();
+      }
+    }
+    catch (Exception e) {
+      fail(result, name, e);
+    }
+  }
+
+  private void fail(final Result result, final String what, final Object reason) {
+    result.failed.incrementAndGet();
+    failures.mark();
+    if (reason instanceof Exception) {
+      log.debug("Warm-up of {} failed", what, reason);
+    }
+    else {
+      log.debug("Warm-up of {} returned {}", what, reason);
+    }
+  }
+
+  private static Response dispatch(final Repository repository, final String path) throws Exception {
+    Request request = new Request.Builder().action(GET).path(path)
+        .attribute(ComposerProviderHandler.DO_NOT_REWRITE, "true").build();
+    return repository.facet(ViewFacet.class).dispatch(request);
+  }
+
+  /**
+   * Counts of a warm-up run.
+   */
+  public static class Result
+  {
+    final AtomicLong warmed = new AtomicLong();
+
+    final AtomicLong skipped = new AtomicLong();
+
+    final AtomicLong zipballs = new AtomicLong();
+
+    final AtomicLong failed = new AtomicLong();
+
+    public long getWarmed() {
+      return warmed.get();
+    }
+
+    public long getSkipped() {
+      return skipped.get();
+    }
+
+    public long getZipballs() {
+      return zipballs.get();
+    }
+
+    public long getFailed() {
+      return failed.get();
+    }
+  }
+}
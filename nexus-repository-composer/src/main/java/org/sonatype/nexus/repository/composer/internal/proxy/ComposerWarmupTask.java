@@ -0,0 +1,84 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.sonatype.nexus.repository.Format;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.RepositoryTaskSupport;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.types.ProxyType;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerWarmupTaskDescriptor.CONCURRENCY_FIELD_ID;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerWarmupTaskDescriptor.FILTER_FIELD_ID;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerWarmupTaskDescriptor.PACKAGES_FIELD_ID;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerWarmupTaskDescriptor.SKIP_CACHED_FIELD_ID;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerWarmupTaskDescriptor.VERSIONS_FIELD_ID;
+
+/**
+ * Task warming up the cache of Composer proxy repositories with a set of packages, see {@link ComposerWarmup}.
+ */
+@Named
+public class ComposerWarmupTask
+    extends RepositoryTaskSupport
+{
+  private final ComposerWarmup composerWarmup;
+
+  private final Type proxyType;
+
+  private final Format composerFormat;
+
+  @Inject
+  public ComposerWarmupTask(final ComposerWarmup composerWarmup,
+                            @Named(ProxyType.NAME) final Type proxyType,
+                            @Named(ComposerFormat.NAME) final Format composerFormat)
+  {
+    this.composerWarmup = checkNotNull(composerWarmup);
+    this.proxyType = checkNotNull(proxyType);
+    this.composerFormat = checkNotNull(composerFormat);
+  }
+
+  @Override
+  protected void execute(final Repository repository) {
+    try {
+      List<String> names = composerWarmup.resolvePackages(repository,
+          getConfiguration().getString(PACKAGES_FIELD_ID), getConfiguration().getString(FILTER_FIELD_ID));
+      log.info("Warming up {} packages of {}", names.size(), repository.getName());
+      composerWarmup.warm(repository, names,
+          getConfiguration().getInteger(VERSIONS_FIELD_ID, 1),
+          getConfiguration().getInteger(CONCURRENCY_FIELD_ID, 4),
+          getConfiguration().getBoolean(SKIP_CACHED_FIELD_ID, true));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  protected boolean appliesTo(final Repository repository) {
+    return composerFormat.equals(repository.getFormat()) && proxyType.equals(repository.getType());
+  }
+
+  @Override
+  public String getMessage() {
+    return "Warming up the cache of " + getRepositoryField();
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.formfields.CheckboxFormField;
+import org.sonatype.nexus.formfields.FormField;
+import org.sonatype.nexus.formfields.NumberTextFormField;
+import org.sonatype.nexus.formfields.RepositoryCombobox;
+import org.sonatype.nexus.formfields.StringTextFormField;
+import org.sonatype.nexus.formfields.TextAreaFormField;
+import org.sonatype.nexus.repository.RepositoryTaskSupport;
+import org.sonatype.nexus.repository.composer.ComposerFormat;
+import org.sonatype.nexus.repository.types.ProxyType;
+import org.sonatype.nexus.scheduling.TaskDescriptorSupport;
+
+/**
+ * Task descriptor for {@link ComposerWarmupTask}.
+ */
+@Named
+@Singleton
+public class ComposerWarmupTaskDescriptor
+    extends TaskDescriptorSupport
+{
+  public static final String TYPE_ID = "repository.composer.warmup";
+
+  public static final String PACKAGES_FIELD_ID = "packages";
+
+  public static final String FILTER_FIELD_ID = "filter";
+
+  public static final String VERSIONS_FIELD_ID = "versions";
+
+  public static final String CONCURRENCY_FIELD_ID = "concurrency";
+
+  public static final String SKIP_CACHED_FIELD_ID = "skipCached";
+
+  public ComposerWarmupTaskDescriptor() {
+    super(TYPE_ID,
+        ComposerWarmupTask.class,
+        "Composer - Warm up proxy cache",
+        VISIBLE,
+        EXPOSED,
+        new RepositoryCombobox(
+            RepositoryTaskSupport.REPOSITORY_NAME_FIELD_ID,
+            "Repository",
+            "Select the Composer proxy repository to warm up",
+            FormField.MANDATORY
+        ).includingAnyOfFormats(ComposerFormat.NAME).includingAnyOfTypes(ProxyType.NAME)
+            .includeAnEntryForAllRepositories(),
+        new TextAreaFormField(
+            PACKAGES_FIELD_ID,
+            "Packages",
+            "Names (vendor/project) of the packages to warm up, one per line. Leave empty to use the package list " +
+                "of the remote repository",
+            FormField.OPTIONAL
+        ),
+        new StringTextFormField(
+            FILTER_FIELD_ID,
+            "Package filter",
+            "Only warm up packages whose name matches this pattern, where * matches any characters (e.g. symfony/*)",
+            FormField.OPTIONAL
+        ),
+        new NumberTextFormField(
+            VERSIONS_FIELD_ID,
+            "Versions",
+            "Number of newest versions of each package whose zipballs are fetched, 0 to only fetch metadata",
+            FormField.OPTIONAL
+        ).withMinimumValue(0).withInitialValue(1),
+        new NumberTextFormField(
+            CONCURRENCY_FIELD_ID,
+            "Concurrency",
+            "Number of packages warmed up in parallel",
+            FormField.OPTIONAL
+        ).withMinimumValue(1).withMaximumValue(64).withInitialValue(4),
+        new CheckboxFormField(
+            SKIP_CACHED_FIELD_ID,
+            "Skip cached",
+            "Do not fetch package metadata and zipballs that are already cached. A rerun still processes every " +
+                "package, but only fetches what is missing",
+            FormField.OPTIONAL
+        ).withInitialValue(true)
+    );
+  }
+}
@@ -17,6 +17,7 @@ import org.sonatype.nexus.repository.composer.ComposerFormat
 import org.sonatype.nexus.repository.composer.internal.group.ComposerGroupPackageJsonHandler
 import org.sonatype.nexus.repository.composer.internal.group.ComposerGroupPackagesJsonHandler
 import org.sonatype.nexus.repository.composer.internal.group.ComposerGroupProviderJsonHandler
+import org.sonatype.nexus.repository.composer.internal.group.ComposerGroupZipballHandler
 
 import javax.annotation.Nonnull
 import javax.inject.Inject
@@ -29,7 +30,6 @@ import org.sonatype.nexus.repository.Format
 import org.sonatype.nexus.repository.Repository
 import org.sonatype.nexus.repository.Type
 import org.sonatype.nexus.repository.group.GroupFacetImpl
-import org.sonatype.nexus.repository.group.GroupHandler
 import org.sonatype.nexus.repository.http.HttpHandlers
 import org.sonatype.nexus.repository.types.GroupType
 import org.sonatype.nexus.repository.view.ConfigurableViewFacet
@@ -51,7 +51,7 @@ class ComposerGroupRecipe
   Provider<GroupFacetImpl> groupFacet
 
   @Inject
-  GroupHandler standardGroupHandler
+  ComposerGroupZipballHandler zipballHandler
 
   @Inject
   ComposerGroupPackagesJsonHandler packagesJsonHandler
@@ -86,6 +86,7 @@ class ComposerGroupRecipe
 
     builder.route(packagesMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(AssetKind.PACKAGES))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -95,6 +96,7 @@ class ComposerGroupRecipe
 
     builder.route(providerMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(AssetKind.PROVIDER))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -104,6 +106,7 @@ class ComposerGroupRecipe
 
     builder.route(packageMatcher()
             .handler(timingHandler)
+            .handler(tracingHandler)
             .handler(assetKindHandler.rcurry(AssetKind.PACKAGE))
             .handler(securityHandler)
             .handler(exceptionHandler)
@@ -113,11 +116,12 @@ class ComposerGroupRecipe
 
     builder.route(zipballMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(AssetKind.ZIPBALL))
         .handler(securityHandler)
         .handler(exceptionHandler)
         .handler(handlerContributor)
-        .handler(standardGroupHandler)
+        .handler(zipballHandler)
         .create())
 
     addBrowseUnsupportedRoute(builder)
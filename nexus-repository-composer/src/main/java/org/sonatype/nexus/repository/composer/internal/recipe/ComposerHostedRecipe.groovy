@@ -87,6 +87,7 @@ class ComposerHostedRecipe
 
     builder.route(packagesMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(PACKAGES))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -99,6 +100,7 @@ class ComposerHostedRecipe
 
     builder.route(listMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(LIST))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -111,6 +113,7 @@ class ComposerHostedRecipe
 
     builder.route(providerMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(PROVIDER))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -124,6 +127,7 @@ class ComposerHostedRecipe
 
     builder.route(packageMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(PACKAGE))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -137,6 +141,7 @@ class ComposerHostedRecipe
 
     builder.route(zipballMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(ZIPBALL))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -150,6 +155,7 @@ class ComposerHostedRecipe
 
     builder.route(uploadMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(ZIPBALL))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -98,6 +98,7 @@ class ComposerProxyRecipe
 
     builder.route(packagesMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(AssetKind.PACKAGES))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -111,6 +112,7 @@ class ComposerProxyRecipe
 
     builder.route(listMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(AssetKind.LIST))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -124,6 +126,7 @@ class ComposerProxyRecipe
 
     builder.route(providerMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(AssetKind.PROVIDER))
         .handler(securityHandler)
         .handler(exceptionHandler)
@@ -138,6 +141,7 @@ class ComposerProxyRecipe
 
     builder.route(packageMatcher()
             .handler(timingHandler)
+            .handler(tracingHandler)
             .handler(assetKindHandler.rcurry(AssetKind.PACKAGE))
             .handler(securityHandler)
             .handler(exceptionHandler)
@@ -152,6 +156,7 @@ class ComposerProxyRecipe
 
     builder.route(zipballMatcher()
         .handler(timingHandler)
+        .handler(tracingHandler)
         .handler(assetKindHandler.rcurry(AssetKind.ZIPBALL))
         .handler(securityHandler)
         .handler(exceptionHandler)
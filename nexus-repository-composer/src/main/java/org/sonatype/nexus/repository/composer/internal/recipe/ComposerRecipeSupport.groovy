@@ -17,6 +17,7 @@ import org.sonatype.nexus.repository.composer.AssetKind
 import org.sonatype.nexus.repository.composer.ComposerContentFacet
 import org.sonatype.nexus.repository.composer.internal.ComposerMaintenanceFacet
 import org.sonatype.nexus.repository.composer.internal.ComposerSecurityFacet
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracingHandler
 import org.sonatype.nexus.repository.content.browse.BrowseFacet
 
 import javax.inject.Inject
@@ -95,6 +96,9 @@ abstract class ComposerRecipeSupport
   @Inject
   TimingHandler timingHandler
 
+  @Inject
+  ComposerTracingHandler tracingHandler
+
   @Inject
   SecurityHandler securityHandler
 
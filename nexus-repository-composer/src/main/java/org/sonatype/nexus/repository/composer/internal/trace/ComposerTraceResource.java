@@ -0,0 +1,64 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.trace;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.rest.Resource;
+
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Dumps the slowest recently traced Composer requests with their spans, see {@link ComposerTracer}.
+ */
+@Named
+@Singleton
+@Path(ComposerTraceResource.RESOURCE_URI)
+@Produces(MediaType.APPLICATION_JSON)
+public class ComposerTraceResource
+    extends ComponentSupport
+    implements Resource
+{
+  public static final String RESOURCE_URI = "/internal/composer/traces";
+
+  private static final int MAX_LIMIT = 100;
+
+  private final ComposerTracer tracer;
+
+  @Inject
+  public ComposerTraceResource(final ComposerTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
+  @GET
+  @RequiresAuthentication
+  @RequiresPermissions("nexus:metrics:read")
+  public List<Map<String, Object>> getSlowestTraces(@QueryParam("limit") @DefaultValue("20") final int limit) {
+    return tracer.slowest(Math.max(0, Math.min(limit, MAX_LIMIT)));
+  }
+}
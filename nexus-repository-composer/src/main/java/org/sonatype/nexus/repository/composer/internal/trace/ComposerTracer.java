@@ -0,0 +1,289 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.ComponentSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Records traces of Composer requests: one trace per request that enters a Composer repository, with a span for each
+ * member dispatch, upstream fetch, cache lookup, rewrite, merge and blob write done while serving it. Requests which
+ * enter another Composer repository while being served, such as group member dispatches, become spans of the trace
+ * of the outer request. Finished traces are kept in a ring buffer of recent traces, from which the slowest can be
+ * dumped, see {@link ComposerTraceResource}. Tracing is disabled by default, recording nothing, and is enabled by
+ * setting {@code nexus.composer.trace.enabled} to {@code true}.
+ */
+@Named
+@Singleton
+public class ComposerTracer
+    extends ComponentSupport
+{
+  /**
+   * A tracer which records nothing, for components used before or without one being injected.
+   */
+  public static final ComposerTracer DISABLED = new ComposerTracer(false, 1);
+
+  private static final Span NO_SPAN = new Span(null, "", null, 0, 0L);
+
+  private static final int MAX_SPANS = 256;
+
+  private final boolean enabled;
+
+  private final Trace[] recent;
+
+  private final ThreadLocal<Frame> current = new ThreadLocal<>();
+
+  private int next;
+
+  @Inject
+  public ComposerTracer(@Named("${nexus.composer.trace.enabled:-false}") final boolean enabled,
+                        @Named("${nexus.composer.trace.bufferSize:-500}") final int bufferSize)
+  {
+    checkArgument(bufferSize > 0, "bufferSize must be positive");
+    this.enabled = enabled;
+    this.recent = new Trace[bufferSize];
+  }
+
+  /**
+   * Starts a trace for a request served on the current thread, or a span if the thread is already serving a traced
+   * request. Must be closed on the same thread.
+   */
+  public Span begin(final String repository, final String action, final String path) {
+    if (!enabled) {
+      return NO_SPAN;
+    }
+    Frame frame = current.get();
+    if (frame != null) {
+      return span("dispatch", repository + " " + action + " " + path);
+    }
+    Trace trace = new Trace(repository, action, path);
+    current.set(new Frame(trace, 1));
+    return new Span(this, "request", trace, 0, System.nanoTime())
+    {
+      @Override
+      public void close() {
+        super.close();
+        current.remove();
+        trace.durationNanos = getDurationNanos();
+        record(trace);
+      }
+    };
+  }
+
+  /**
+   * Starts a span of the trace of the current thread, if it has one. Must be closed on the same thread.
+   */
+  public Span span(final String name, @Nullable final String detail) {
+    Frame frame = current.get();
+    if (frame == null) {
+      return NO_SPAN;
+    }
+    String spanName = detail == null ? name : name + " " + detail;
+    Span span = new Span(this, spanName, frame.trace, frame.depth, System.nanoTime());
+    frame.trace.add(span);
+    frame.depth++;
+    return span;
+  }
+
+  /**
+   * Returns the trace of the current thread, to continue it on another thread with {@link #continueTrace}.
+   */
+  @Nullable
+  public Trace currentTrace() {
+    Frame frame = current.get();
+    return frame != null ? frame.trace : null;
+  }
+
+  /**
+   * Continues the given trace on the current thread until the returned span is closed, so work handed to other
+   * threads is part of the trace of the request it is done for.
+   */
+  public Span continueTrace(@Nullable final Trace trace, final String name, @Nullable final String detail) {
+    if (trace == null || current.get() != null) {
+      return span(name, detail);
+    }
+    current.set(new Frame(trace, 1));
+    Span span = span(name, detail);
+    return new Span(null, span.name, trace, span.depth, span.startNanos)
+    {
+      @Override
+      public void close() {
+        span.close();
+        current.remove();
+      }
+    };
+  }
+
+  /**
+   * Returns the slowest of the recently finished traces, slowest first.
+   */
+  public List<Map<String, Object>> slowest(final int limit) {
+    List<Trace> traces = new ArrayList<>();
+    synchronized (recent) {
+      for (Trace trace : recent) {
+        if (trace != null) {
+          traces.add(trace);
+        }
+      }
+    }
+    traces.sort(Comparator.comparingLong((Trace trace) -> trace.durationNanos).reversed());
+    List<Map<String, Object>> result = new ArrayList<>();
+    for (Trace trace : traces.subList(0, Math.min(limit, traces.size()))) {
+      result.add(trace.toMap());
+    }
+    return result;
+  }
+
+  private void record(final Trace trace) {
+    synchronized (recent) {
+      recent[next] = trace;
+      next = (next + 1) % recent.length;
+    }
+  }
+
+  private void closed(final Span span) {
+    Frame frame = current.get();
+    if (frame != null && frame.trace == span.trace) {
+      frame.depth = span.depth;
+    }
+  }
+
+  private static long toMillis(final long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static class Frame
+  {
+    private final Trace trace;
+
+    private int depth;
+
+    private Frame(final Trace trace, final int depth) {
+      this.trace = trace;
+      this.depth = depth;
+    }
+  }
+
+  /**
+   * A traced request.
+   */
+  public static class Trace
+  {
+    private final String repository;
+
+    private final String action;
+
+    private final String path;
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final List<Span> spans = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile long durationNanos = -1L;
+
+    private Trace(final String repository, final String action, final String path) {
+      this.repository = checkNotNull(repository);
+      this.action = checkNotNull(action);
+      this.path = checkNotNull(path);
+    }
+
+    private void add(final Span span) {
+      if (spans.size() < MAX_SPANS) {
+        spans.add(span);
+      }
+    }
+
+    private Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("repository", repository);
+      map.put("action", action);
+      map.put("path", path);
+      map.put("start", startMillis);
+      map.put("durationMs", toMillis(durationNanos));
+      List<Map<String, Object>> spanMaps = new ArrayList<>();
+      synchronized (spans) {
+        for (Span span : spans) {
+          Map<String, Object> spanMap = new LinkedHashMap<>();
+          spanMap.put("name", span.name);
+          spanMap.put("depth", span.depth);
+          spanMap.put("thread", span.thread);
+          spanMap.put("durationMs", span.durationNanos < 0L ? null : toMillis(span.durationNanos));
+          spanMaps.add(spanMap);
+        }
+      }
+      map.put("spans", spanMaps);
+      return map;
+    }
+  }
+
+  /**
+   * A timed part of a trace, ended by closing it.
+   */
+  public static class Span
+      implements AutoCloseable
+  {
+    private final ComposerTracer tracer;
+
+    private final String name;
+
+    private final Trace trace;
+
+    private final int depth;
+
+    private final long startNanos;
+
+    private final String thread = Thread.currentThread().getName();
+
+    private volatile long durationNanos = -1L;
+
+    private Span(@Nullable final ComposerTracer tracer,
+                 final String name,
+                 @Nullable final Trace trace,
+                 final int depth,
+                 final long startNanos)
+    {
+      this.tracer = tracer;
+      this.name = name;
+      this.trace = trace;
+      this.depth = depth;
+      this.startNanos = startNanos;
+    }
+
+    long getDurationNanos() {
+      return durationNanos;
+    }
+
+    @Override
+    public void close() {
+      if (tracer != null && durationNanos < 0L) {
+        durationNanos = System.nanoTime() - startNanos;
+        tracer.closed(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.trace;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Span;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Handler;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Traces each request served by a Composer repository, see {@link ComposerTracer}.
+ */
+@Named
+@Singleton
+public class ComposerTracingHandler
+    implements Handler
+{
+  private final ComposerTracer tracer;
+
+  @Inject
+  public ComposerTracingHandler(final ComposerTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
+  @Nonnull
+  @Override
+  public Response handle(@Nonnull final Context context) throws Exception {
+    Request request = context.getRequest();
+    try (Span span = tracer.begin(context.getRepository().getName(), request.getAction(), request.getPath())) {
+      return context.proceed();
+    }
+  }
+}
@@ -12,10 +12,32 @@
  */
 package org.sonatype.nexus.repository.composer.store;
 
+import java.util.List;
+
+import javax.annotation.Nullable;
+
 import org.sonatype.nexus.repository.content.store.ComponentDAO;
 
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * Composer {@link ComponentDAO}, which adds a {@code sort_key} column holding the Composer version precedence of each
+ * component.
+ */
 public interface ComposerComponentDAO
     extends ComponentDAO
 {
-  // nothing to add...
+  /**
+   * Sets the sort key of the component, unless it already has that key.
+   */
+  void updateSortKey(@Param("componentId") int componentId, @Param("sortKey") String sortKey);
+
+  /**
+   * Returns the names ({@code vendor/project}) of up to {@code limit} packages of the repository in namespace and name
+   * order, starting after the given package, or with the first package when none is given.
+   */
+  List<String> browsePackageNames(@Param("repositoryId") int repositoryId,
+                                  @Param("limit") int limit,
+                                  @Nullable @Param("lastNamespace") String lastNamespace,
+                                  @Nullable @Param("lastName") String lastName);
 }
@@ -0,0 +1,63 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2024-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.store;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.sonatype.nexus.datastore.api.DataSessionSupplier;
+import org.sonatype.nexus.repository.content.Component;
+import org.sonatype.nexus.repository.content.store.ComponentStore;
+import org.sonatype.nexus.transaction.Transactional;
+
+import com.google.inject.assistedinject.Assisted;
+
+import static org.sonatype.nexus.repository.content.store.InternalIds.internalComponentId;
+
+/**
+ * Composer {@link ComponentStore}, exposing the methods {@link ComposerComponentDAO} adds.
+ */
+public class ComposerComponentStore
+    extends ComponentStore<ComposerComponentDAO>
+{
+  @Inject
+  public ComposerComponentStore(final DataSessionSupplier sessionSupplier,
+                                @Assisted final String contentStoreName,
+                                @Assisted final Class<ComposerComponentDAO> daoClass)
+  {
+    super(sessionSupplier, contentStoreName, daoClass);
+  }
+
+  /**
+   * Sets the sort key of the component, see {@link ComposerComponentDAO#updateSortKey(int, String)}.
+   */
+  @Transactional
+  public void updateSortKey(final Component component, final String sortKey) {
+    dao().updateSortKey(internalComponentId(component), sortKey);
+  }
+
+  /**
+   * Returns the names of up to {@code limit} packages of the repository, see
+   * {@link ComposerComponentDAO#browsePackageNames(int, int, String, String)}.
+   */
+  @Transactional
+  public List<String> browsePackageNames(final int repositoryId,
+                                         final int limit,
+                                         @Nullable final String lastNamespace,
+                                         @Nullable final String lastName)
+  {
+    return dao().browsePackageNames(repositoryId, limit, lastNamespace, lastName);
+  }
+}
@@ -26,7 +26,24 @@ Ext.define('NX.composer.app.PluginStrings', {
   keys: {
     SearchComposer_Group: 'Composer Repositories',
     SearchComposer_Text: 'Composer',
-    SearchComposer_Description: 'Search for components in Composer repositories'
+    SearchComposer_Description: 'Search for components in Composer repositories',
+
+    Repository_Facet_ComposerProxyFacet_Title: 'Composer',
+    Repository_Facet_ComposerProxyFacet_PrefetchEnabled_FieldLabel: 'Prefetch',
+    Repository_Facet_ComposerProxyFacet_PrefetchEnabled_HelpText:
+        'Prefetch zipballs and required packages in the background when package metadata is first proxied',
+    Repository_Facet_ComposerProxyFacet_PrefetchVersions_FieldLabel: 'Prefetched versions',
+    Repository_Facet_ComposerProxyFacet_PrefetchVersions_HelpText:
+        'How many of the newest versions of a package have their zipballs prefetched',
+    Repository_Facet_ComposerProxyFacet_PrefetchDependencies_FieldLabel: 'Prefetch dependencies',
+    Repository_Facet_ComposerProxyFacet_PrefetchDependencies_HelpText:
+        'Also prefetch the metadata of packages required by the prefetched versions',
+    Repository_Facet_ComposerProxyFacet_StaleWhileRevalidate_FieldLabel: 'Stale while revalidate',
+    Repository_Facet_ComposerProxyFacet_StaleWhileRevalidate_HelpText:
+        'Serve expired metadata immediately and refresh it from the remote in the background',
+    Repository_Facet_ComposerProxyFacet_MaxStaleness_FieldLabel: 'Maximum staleness (minutes)',
+    Repository_Facet_ComposerProxyFacet_MaxStaleness_HelpText:
+        'How long after it was last checked expired metadata may still be served while it is refreshed'
   }
 }, function(self) {
   NX.I18n.register(self);
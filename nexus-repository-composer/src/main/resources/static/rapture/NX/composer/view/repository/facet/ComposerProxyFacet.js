@@ -0,0 +1,85 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+/*global Ext, NX*/
+
+/**
+ * Configuration specific to Composer proxy repositories.
+ */
+Ext.define('NX.composer.view.repository.facet.ComposerProxyFacet', {
+  extend: 'Ext.form.FieldContainer',
+  alias: 'widget.nx-composer-repository-proxy-facet',
+  requires: [
+    'NX.I18n'
+  ],
+
+  defaults: {
+    allowBlank: false,
+    itemCls: 'required-field'
+  },
+
+  /**
+   * @override
+   */
+  initComponent: function() {
+    var me = this;
+
+    me.items = [
+      {
+        xtype: 'fieldset',
+        cls: 'nx-form-section',
+        title: NX.I18n.get('Repository_Facet_ComposerProxyFacet_Title'),
+        items: [
+          {
+            xtype: 'checkbox',
+            name: 'attributes.composer.prefetchEnabled',
+            fieldLabel: NX.I18n.get('Repository_Facet_ComposerProxyFacet_PrefetchEnabled_FieldLabel'),
+            helpText: NX.I18n.get('Repository_Facet_ComposerProxyFacet_PrefetchEnabled_HelpText'),
+            value: false
+          },
+          {
+            xtype: 'numberfield',
+            name: 'attributes.composer.prefetchVersions',
+            fieldLabel: NX.I18n.get('Repository_Facet_ComposerProxyFacet_PrefetchVersions_FieldLabel'),
+            helpText: NX.I18n.get('Repository_Facet_ComposerProxyFacet_PrefetchVersions_HelpText'),
+            minValue: 0,
+            value: 3
+          },
+          {
+            xtype: 'checkbox',
+            name: 'attributes.composer.prefetchDependencies',
+            fieldLabel: NX.I18n.get('Repository_Facet_ComposerProxyFacet_PrefetchDependencies_FieldLabel'),
+            helpText: NX.I18n.get('Repository_Facet_ComposerProxyFacet_PrefetchDependencies_HelpText'),
+            value: true
+          },
+          {
+            xtype: 'checkbox',
+            name: 'attributes.composer.staleWhileRevalidate',
+            fieldLabel: NX.I18n.get('Repository_Facet_ComposerProxyFacet_StaleWhileRevalidate_FieldLabel'),
+            helpText: NX.I18n.get('Repository_Facet_ComposerProxyFacet_StaleWhileRevalidate_HelpText'),
+            value: false
+          },
+          {
+            xtype: 'numberfield',
+            name: 'attributes.composer.maxStaleness',
+            fieldLabel: NX.I18n.get('Repository_Facet_ComposerProxyFacet_MaxStaleness_FieldLabel'),
+            helpText: NX.I18n.get('Repository_Facet_ComposerProxyFacet_MaxStaleness_HelpText'),
+            minValue: 0,
+            value: 1440
+          }
+        ]
+      }
+    ];
+
+    me.callParent();
+  }
+});
@@ -23,7 +23,8 @@ Ext.define('NX.composer.view.repository.recipe.ComposerProxy', {
     'NX.coreui.view.repository.facet.StorageFacet',
     'NX.coreui.view.repository.facet.HttpClientFacet',
     'NX.coreui.view.repository.facet.NegativeCacheFacet',
-    'NX.coreui.view.repository.facet.CleanupPolicyFacet'
+    'NX.coreui.view.repository.facet.CleanupPolicyFacet',
+    'NX.composer.view.repository.facet.ComposerProxyFacet'
   ],
 
   /**
@@ -34,6 +35,7 @@ Ext.define('NX.composer.view.repository.recipe.ComposerProxy', {
 
     me.items = [
       {xtype: 'nx-coreui-repository-proxy-facet'},
+      {xtype: 'nx-composer-repository-proxy-facet'},
       {xtype: 'nx-coreui-repository-storage-facet'},
       {xtype: 'nx-coreui-repository-negativecache-facet'},
       {xtype: 'nx-coreui-repository-httpclient-facet-with-preemptive-auth'},
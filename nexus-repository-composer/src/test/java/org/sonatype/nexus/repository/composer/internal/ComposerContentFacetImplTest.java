@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.repository.composer.internal;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.HashCode;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -37,11 +38,13 @@ import org.sonatype.nexus.repository.view.payloads.TempBlob;
 
 import java.io.InputStream;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -201,8 +204,7 @@ public class ComposerContentFacetImplTest
 
     when(upload.getContentType()).thenReturn(CONTENT_TYPE);
 
-    doThrow(new RuntimeException("Test")).when(composerFormatAttributesExtractor)
-        .extractFromZip(tempBlob, fluentComponent);
+    doThrow(new RuntimeException("Test")).when(composerFormatAttributesExtractor).extractFromZip(tempBlob);
   }
 
   @Test
@@ -236,6 +238,31 @@ public class ComposerContentFacetImplTest
     testPutOrUpdate(ZIPBALL, ZIPBALL_PATH);
   }
 
+  @Test
+  public void unchangedAttributesAreNotWritten() {
+    when(fluentComponent.attributes()).thenReturn(new NestedAttributesMap("attributes",
+        new HashMap<>(ImmutableMap.of("name", "vendor/project", "license", singletonList("MIT")))));
+
+    ComposerContentFacetImpl.withChangedAttributes(fluentComponent,
+        ImmutableMap.of("name", "vendor/project", "license", singletonList("MIT")));
+
+    verify(fluentComponent, never()).withAttribute(anyString(), any());
+  }
+
+  @Test
+  public void onlyChangedAttributesAreWritten() {
+    when(fluentComponent.attributes()).thenReturn(new NestedAttributesMap("attributes",
+        new HashMap<>(ImmutableMap.of("name", "vendor/project", "description", "old"))));
+    when(fluentComponent.withAttribute(anyString(), any())).thenReturn(fluentComponent);
+
+    ComposerContentFacetImpl.withChangedAttributes(fluentComponent,
+        ImmutableMap.of("name", "vendor/project", "description", "new", "license", singletonList("MIT")));
+
+    verify(fluentComponent).withAttribute("description", "new");
+    verify(fluentComponent).withAttribute("license", singletonList("MIT"));
+    verify(fluentComponent, times(2)).withAttribute(anyString(), any());
+  }
+
   private void testGet(final String path) {
     when(fluentAssets.path(path)).thenReturn(fluentAssetBuilder);
 
@@ -19,8 +19,6 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.blobstore.api.Blob;
-import org.sonatype.nexus.common.collect.NestedAttributesMap;
-import org.sonatype.nexus.repository.content.fluent.FluentComponent;
 import org.sonatype.nexus.repository.view.payloads.TempBlob;
 
 import java.io.InputStream;
@@ -29,9 +27,6 @@ import java.util.*;
 import static java.util.Collections.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.*;
 
@@ -54,22 +49,12 @@ public class ComposerFormatAttributesExtractorTest
 
   private ComposerFormatAttributesExtractor underTest;
 
-  private FluentComponent destination;
-  private NestedAttributesMap attributesMap;
+  private Map<String, Object> attributesMap;
 
   @Before
   public void setUp() {
     underTest = new ComposerFormatAttributesExtractor(composerJsonExtractor);
-    destination = mock(FluentComponent.class);
-    attributesMap = new NestedAttributesMap("backing", new LinkedHashMap<>());
-    when(destination.attributes()).thenReturn(attributesMap);
-    when(destination.attributes(anyString()))
-        .thenAnswer((inv) -> attributesMap.get(inv.getArgument(0, String.class)));
-    when(destination.withAttribute(anyString(), any()))
-        .thenAnswer((inv) -> {
-          attributesMap.set(inv.getArgument(0, String.class), inv.getArgument(1));
-          return destination;
-        });
+    attributesMap = new LinkedHashMap<>();
   }
 
   @Test
@@ -84,9 +69,9 @@ public class ComposerFormatAttributesExtractorTest
     when(tempBlob.getBlob()).thenReturn(blob);
     when(composerJsonExtractor.extractFromZip(blob)).thenReturn(contents);
 
-    underTest.extractFromZip(tempBlob, destination);
+    attributesMap = underTest.extractFromZip(tempBlob);
 
-    assertThat(attributesMap.keys(), containsInAnyOrder(EXPECTED_FIELDS));
+    assertThat(attributesMap.keySet(), containsInAnyOrder(EXPECTED_FIELDS));
     assertThat(attributesMap.get(P_NAME), is("vendor/project"));
     assertThat(attributesMap.get(P_VERSION), is("1.2.3"));
     assertThat(attributesMap.get(P_DESCRIPTION), is("Test description"));
@@ -113,56 +98,51 @@ public class ComposerFormatAttributesExtractorTest
     when(tempBlob.getBlob()).thenReturn(blob);
     when(composerJsonExtractor.extractFromZip(blob)).thenReturn(Collections.emptyMap());
 
-    NestedAttributesMap attributesMap = new NestedAttributesMap("composer", new LinkedHashMap<>());
-    FluentComponent component = mock(FluentComponent.class);
-    when(component.attributes()).thenReturn(attributesMap);
-    underTest.extractFromZip(tempBlob, component);
-
-    assertThat(attributesMap.keys(), is(empty()));
+    assertThat(underTest.extractFromZip(tempBlob).keySet(), is(empty()));
   }
 
   @Test
   public void extractStringsMissing() {
-    underTest.extractStrings(emptyMap(), destination, singletonMap("inkey", "outkey"));
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractStrings(emptyMap(), attributesMap, singletonMap("inkey", "outkey"));
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractStringsNull() {
-    underTest.extractStrings(singletonMap("inkey", null), destination, singletonMap("inkey", "outkey"));
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractStrings(singletonMap("inkey", null), attributesMap, singletonMap("inkey", "outkey"));
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractStringsNonStringValue() {
-    underTest.extractStrings(singletonMap("inkey", Integer.MAX_VALUE), destination, singletonMap("inkey", "outkey"));
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractStrings(singletonMap("inkey", Integer.MAX_VALUE), attributesMap, singletonMap("inkey", "outkey"));
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractStringsSingleString() {
-    underTest.extractStrings(singletonMap("inkey", "value"), destination, singletonMap("inkey", "outkey"));
-    assertThat(attributesMap.keys(), contains("outkey"));
+    underTest.extractStrings(singletonMap("inkey", "value"), attributesMap, singletonMap("inkey", "outkey"));
+    assertThat(attributesMap.keySet(), contains("outkey"));
     assertThat(attributesMap.get("outkey"), is("value"));
   }
 
   @Test
   public void extractStringsEmptyCollection() {
-    underTest.extractStrings(singletonMap("inkey", emptyList()), destination, singletonMap("inkey", "outkey"));
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractStrings(singletonMap("inkey", emptyList()), attributesMap, singletonMap("inkey", "outkey"));
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractStringsCollectionWithNonStringValue() {
-    underTest.extractStrings(singletonMap("inkey", Integer.MAX_VALUE), destination, singletonMap("inkey", "outkey"));
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractStrings(singletonMap("inkey", Integer.MAX_VALUE), attributesMap, singletonMap("inkey", "outkey"));
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractStringsCollectionWithString() {
     underTest
-        .extractStrings(singletonMap("inkey", singletonList("value")), destination, singletonMap("inkey", "outkey"));
-    assertThat(attributesMap.keys(), contains("outkey"));
+        .extractStrings(singletonMap("inkey", singletonList("value")), attributesMap, singletonMap("inkey", "outkey"));
+    assertThat(attributesMap.keySet(), contains("outkey"));
     assertThat((List<String>) attributesMap.get("outkey"), contains("value"));
   }
 
@@ -196,46 +176,46 @@ public class ComposerFormatAttributesExtractorTest
 
   @Test
   public void extractAuthorsMissing() {
-    underTest.extractAuthors(emptyMap(), destination);
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractAuthors(emptyMap(), attributesMap);
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractAuthorsNull() {
-    underTest.extractAuthors(singletonMap("authors", null), destination);
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractAuthors(singletonMap("authors", null), attributesMap);
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractAuthorsEmptyCollection() {
-    underTest.extractAuthors(singletonMap("authors", emptyList()), destination);
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractAuthors(singletonMap("authors", emptyList()), attributesMap);
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractAuthorsEmptyAuthor() {
-    underTest.extractAuthors(singletonMap("authors", singletonList(emptyMap())), destination);
-    assertThat(attributesMap.keys(), is(empty()));
+    underTest.extractAuthors(singletonMap("authors", singletonList(emptyMap())), attributesMap);
+    assertThat(attributesMap.keySet(), is(empty()));
   }
 
   @Test
   public void extractAuthorsAuthorName() {
-    underTest.extractAuthors(singletonMap("authors", singletonList(singletonMap("name", "value"))), destination);
-    assertThat(attributesMap.keys(), contains(P_AUTHORS));
+    underTest.extractAuthors(singletonMap("authors", singletonList(singletonMap("name", "value"))), attributesMap);
+    assertThat(attributesMap.keySet(), contains(P_AUTHORS));
     assertThat((List<String>) attributesMap.get(P_AUTHORS), contains("value"));
   }
 
   @Test
   public void extractAuthorsAuthorEmail() {
-    underTest.extractAuthors(singletonMap("authors", singletonList(singletonMap("email", "value"))), destination);
-    assertThat(attributesMap.keys(), contains(P_AUTHORS));
+    underTest.extractAuthors(singletonMap("authors", singletonList(singletonMap("email", "value"))), attributesMap);
+    assertThat(attributesMap.keySet(), contains(P_AUTHORS));
     assertThat((List<String>) attributesMap.get(P_AUTHORS), contains("<value>"));
   }
 
   @Test
   public void extractAuthorsAuthorHomepage() {
-    underTest.extractAuthors(singletonMap("authors", singletonList(singletonMap("homepage", "value"))), destination);
-    assertThat(attributesMap.keys(), contains(P_AUTHORS));
+    underTest.extractAuthors(singletonMap("authors", singletonList(singletonMap("homepage", "value"))), attributesMap);
+    assertThat(attributesMap.keySet(), contains(P_AUTHORS));
     assertThat((List<String>) attributesMap.get(P_AUTHORS), contains("(value)"));
   }
 }
@@ -0,0 +1,43 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.util.regex.Pattern;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ComposerGlobTest
+    extends TestSupport
+{
+  @Test
+  public void testToPattern() {
+    Pattern pattern = ComposerGlob.toPattern("*abc**/pr0_j3c.T");
+    assertThat(pattern.matcher("xabcy/pr0_j3c.T").matches(), is(true));
+    assertThat(pattern.matcher("abc/pr0_j3c.T").matches(), is(true));
+    assertThat(pattern.matcher("xaby/pr0_j3c.T").matches(), is(false));
+    assertThat(pattern.matcher("xabcy/pr0-j3c.T").matches(), is(false));
+    assertThat(pattern.matcher("xabcy/pr0_j3cxT").matches(), is(false));
+  }
+
+  @Test
+  public void testToRegex() {
+    assertThat(ComposerGlob.toRegex("vendor/*"), is("\\Qvendor/\\E.*"));
+    assertThat(ComposerGlob.toRegex("*"), is(".*"));
+    assertThat(ComposerGlob.toRegex("a+b"), is("\\Qa+b\\E"));
+  }
+}
@@ -12,17 +12,24 @@ package org.sonatype.nexus.repository.composer.internal;
  * Eclipse Foundation. All other trademarks are the property of their respective owners.
  */
 
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.sonatype.goodies.common.Time;
 import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.common.collect.AttributesMap;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.composer.internal.group.ComposerGroupProviderJsonHandler;
+import org.sonatype.nexus.repository.composer.internal.group.ComposerZipballOrigins;
 import org.sonatype.nexus.repository.group.GroupFacet;
 import org.sonatype.nexus.repository.view.*;
 
 import java.time.OffsetDateTime;
+import java.util.concurrent.Callable;
+import java.util.function.ObjIntConsumer;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
@@ -31,6 +38,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.repository.http.HttpMethods.GET;
@@ -40,6 +48,7 @@ import static org.sonatype.nexus.repository.http.HttpStatus.OK;
 public class ComposerGroupProviderJsonHandlerTest
     extends TestSupport
 {
+  private static final String ZIPBALL_PATH = "/vendor/project/1.0.0/vendor-project-1.0.0.zip";
 
   @Mock
   private Request request;
@@ -130,7 +139,58 @@ public class ComposerGroupProviderJsonHandlerTest
     assertThat(result.getStatus().getCode(), is(OK));
 
     verify(composerJsonProcessor)
-        .mergeProviderJson(eq(repository), eq(asList(payload1, payload2)), any(OffsetDateTime.class));
+        .mergeProviderJson(eq(repository), eq(asList(payload1, payload2)), any(OffsetDateTime.class), any());
+  }
+
+  @Test
+  public void mergeContentsOfMembersAskedConcurrently() throws Exception {
+    Subject subject = mock(Subject.class);
+    when(subject.associateWith(any(Callable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    ThreadContext.bind(subject);
+    when(request.getPath()).thenReturn("/p/vendor/project.json");
+    when(request.getParameters()).thenReturn(new Parameters());
+    when(memberRepository1ViewFacet.dispatch(any(Request.class), any(Context.class))).thenReturn(response1);
+    when(memberRepository2ViewFacet.dispatch(any(Request.class), any(Context.class))).thenReturn(response2);
+    ComposerUpstreamExecutor upstreamExecutor = new ComposerUpstreamExecutor(true, 32, Time.seconds(60));
+    upstreamExecutor.start();
+    try {
+      underTest.setUpstreamExecutor(upstreamExecutor);
+
+      Response result = underTest.handle(context);
+
+      assertThat(result.getStatus().getCode(), is(OK));
+      verify(composerJsonProcessor)
+          .mergeProviderJson(eq(repository), eq(asList(payload1, payload2)), any(OffsetDateTime.class), any());
+      ArgumentCaptor<Request> request1 = ArgumentCaptor.forClass(Request.class);
+      ArgumentCaptor<Request> request2 = ArgumentCaptor.forClass(Request.class);
+      verify(memberRepository1ViewFacet).dispatch(request1.capture(), any(Context.class));
+      verify(memberRepository2ViewFacet).dispatch(request2.capture(), any(Context.class));
+      assertThat(request1.getValue().getPath(), is("/p/vendor/project.json"));
+      assertThat(request1.getValue() != request && request2.getValue() != request, is(true));
+      assertThat(request1.getValue() != request2.getValue(), is(true));
+    }
+    finally {
+      upstreamExecutor.stop();
+      ThreadContext.unbindSubject();
+    }
+  }
+
+  @Test
+  public void recordMemberOfMergedVersions() throws Exception {
+    ComposerZipballOrigins zipballOrigins = new ComposerZipballOrigins(100, Time.hours(1));
+    underTest.setZipballOrigins(zipballOrigins);
+    when(repository.getName()).thenReturn("group");
+    when(composerJsonProcessor.mergeProviderJson(eq(repository), eq(asList(payload1, payload2)),
+        any(OffsetDateTime.class), any())).thenAnswer(invocation -> {
+          ObjIntConsumer<String> origins = invocation.getArgument(3);
+          origins.accept(ZIPBALL_PATH, 1);
+          return mock(Content.class);
+        });
+
+    underTest.handle(context);
+
+    assertThat(zipballOrigins.lookup(repository, ZIPBALL_PATH, asList(memberRepository1, memberRepository2)),
+        is(memberRepository2));
   }
 
   @Test
@@ -142,7 +202,7 @@ public class ComposerGroupProviderJsonHandlerTest
     assertThat(result.getStatus(), is(notNullValue()));
     assertThat(result.getStatus().getCode(), is(OK));
 
-    verify(composerJsonProcessor).mergeProviderJson(eq(repository), eq(singletonList(payload2)), any(OffsetDateTime.class));
+    verify(composerJsonProcessor).mergeProviderJson(eq(repository), eq(singletonList(payload2)), any(OffsetDateTime.class), any());
   }
 
   @Test
@@ -154,6 +214,6 @@ public class ComposerGroupProviderJsonHandlerTest
     assertThat(result.getStatus(), is(notNullValue()));
     assertThat(result.getStatus().getCode(), is(OK));
 
-    verify(composerJsonProcessor).mergeProviderJson(eq(repository), eq(singletonList(payload2)), any(OffsetDateTime.class));
+    verify(composerJsonProcessor).mergeProviderJson(eq(repository), eq(singletonList(payload2)), any(OffsetDateTime.class), any());
   }
 }
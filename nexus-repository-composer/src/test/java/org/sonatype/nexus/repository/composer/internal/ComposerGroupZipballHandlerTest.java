@@ -0,0 +1,144 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.collect.AttributesMap;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.internal.group.ComposerGroupZipballHandler;
+import org.sonatype.nexus.repository.composer.internal.group.ComposerZipballOrigins;
+import org.sonatype.nexus.repository.group.GroupFacet;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Headers;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.Status;
+import org.sonatype.nexus.repository.view.ViewFacet;
+import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.http.HttpMethods.GET;
+import static org.sonatype.nexus.repository.http.HttpStatus.NOT_FOUND;
+import static org.sonatype.nexus.repository.http.HttpStatus.OK;
+
+public class ComposerGroupZipballHandlerTest
+    extends TestSupport
+{
+  private static final String ZIPBALL_PATH = "/vendor/project/1.0.0/vendor-project-1.0.0.zip";
+
+  @Mock
+  private Request request;
+
+  @Mock
+  private Context context;
+
+  @Mock
+  private TokenMatcher.State state;
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private GroupFacet groupFacet;
+
+  @Mock
+  private Repository member1;
+
+  @Mock
+  private Repository member2;
+
+  @Mock
+  private ViewFacet member1ViewFacet;
+
+  @Mock
+  private ViewFacet member2ViewFacet;
+
+  @Mock
+  private Response response1;
+
+  @Mock
+  private Response response2;
+
+  private final ComposerZipballOrigins zipballOrigins = new ComposerZipballOrigins(100, Time.hours(1));
+
+  private ComposerGroupZipballHandler underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    AttributesMap attributes = new AttributesMap();
+    attributes.set(TokenMatcher.State.class, state);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project", "version", "1.0.0",
+        "name", "vendor-project-1.0.0"));
+    when(context.getRepository()).thenReturn(repository);
+    when(context.getRequest()).thenReturn(request);
+    when(context.getAttributes()).thenReturn(attributes);
+
+    when(request.getAction()).thenReturn(GET);
+    when(request.getAttributes()).thenReturn(new AttributesMap());
+    when(request.getHeaders()).thenReturn(new Headers());
+
+    when(repository.getName()).thenReturn("group");
+    when(repository.facet(GroupFacet.class)).thenReturn(groupFacet);
+    when(groupFacet.members()).thenReturn(asList(member1, member2));
+
+    when(member1.getName()).thenReturn("member1");
+    when(member1.facet(ViewFacet.class)).thenReturn(member1ViewFacet);
+    when(member2.getName()).thenReturn("member2");
+    when(member2.facet(ViewFacet.class)).thenReturn(member2ViewFacet);
+
+    when(member1ViewFacet.dispatch(request, context)).thenReturn(response1);
+    when(member2ViewFacet.dispatch(request, context)).thenReturn(response2);
+    when(response1.getStatus()).thenReturn(Status.failure(NOT_FOUND));
+    when(response2.getStatus()).thenReturn(Status.success(OK));
+
+    underTest = new ComposerGroupZipballHandler(zipballOrigins);
+  }
+
+  @Test
+  public void testKnownOriginIsAskedDirectly() throws Exception {
+    zipballOrigins.record(repository, ZIPBALL_PATH, member2);
+
+    assertThat(underTest.handle(context), is(response2));
+
+    verify(member1ViewFacet, never()).dispatch(request, context);
+  }
+
+  @Test
+  public void testUnknownOriginAsksMembersInTurn() throws Exception {
+    assertThat(underTest.handle(context), is(response2));
+
+    verify(member1ViewFacet).dispatch(request, context);
+  }
+
+  @Test
+  public void testStaleOriginIsForgotten() throws Exception {
+    zipballOrigins.record(repository, ZIPBALL_PATH, member1);
+
+    assertThat(underTest.handle(context), is(response2));
+
+    verify(member1ViewFacet).dispatch(request, context);
+    assertThat(zipballOrigins.lookup(repository, ZIPBALL_PATH, asList(member1, member2)), is(nullValue()));
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerVersion;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.skyscreamer.jsonassert.JSONAssert.assertEquals;
+
+public class ComposerJsonCodecTest
+    extends TestSupport
+{
+  private final ComposerJsonCodec underTest = new ComposerJsonCodec();
+
+  @Test
+  public void testReadMapLeavesStreamOpen() throws Exception {
+    AtomicBoolean closed = new AtomicBoolean();
+    InputStream in = new FilterInputStream(new ByteArrayInputStream("{\"a\":[1]}".getBytes(StandardCharsets.UTF_8)))
+    {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+
+    assertThat(underTest.readMap(in), is(ImmutableMap.of("a", singletonList(1))));
+    assertThat(closed.get(), is(false));
+  }
+
+  @Test
+  public void testReadVersionFromStream() throws Exception {
+    String json = "[{\"name\":\"vendor/project\",\"version\":\"1.0.0\"}]";
+    try (JsonParser parser = underTest.createParser(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+      assertThat(parser.nextToken(), is(JsonToken.START_ARRAY));
+      assertThat(parser.nextToken(), is(JsonToken.START_OBJECT));
+
+      ComposerVersion version = underTest.readVersion(parser);
+
+      assertThat(version.getName(), is("vendor/project"));
+      assertThat(parser.nextToken(), is(JsonToken.END_ARRAY));
+      assertEquals(json, underTest.writeValueAsString(singletonList(version)), true);
+    }
+  }
+}
@@ -41,7 +41,7 @@ public class ComposerJsonExtractorTest
 
   @Before
   public void setUp() {
-    underTest = new ComposerJsonExtractor();
+    underTest = new ComposerJsonExtractor(new ComposerJsonCodec());
   }
 
   @Test
@@ -0,0 +1,71 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.util.Arrays;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerPackage;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerVersion;
+import org.sonatype.nexus.repository.composer.internal.model.Dist;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class ComposerJsonMinifierTest
+    extends TestSupport
+{
+  private final ComposerJsonMinifier underTest = new ComposerJsonMinifier();
+
+  private final ComposerVersion v2 = ComposerVersion.builder()
+      .name("vendor/project")
+      .version("2.0.0")
+      .dist(new Dist("zip", "https://example.com/2.0.0.zip", "def", ""))
+      .set("require", singletonMap("psr/log", "^3.0"))
+      .set("license", Arrays.asList("MIT"))
+      .build();
+
+  private final ComposerVersion v1 = ComposerVersion.builder()
+      .name("vendor/project")
+      .version("1.0.0")
+      .dist(new Dist("zip", "https://example.com/1.0.0.zip", "abc", ""))
+      .set("license", Arrays.asList("MIT"))
+      .build();
+
+  @Test
+  public void testMinify() {
+    ComposerPackage minified = underTest.minify(new ComposerPackage("vendor/project", Arrays.asList(v2, v1)));
+
+    assertThat(minified.getVersions().get(0), is(v2));
+    ComposerVersion delta = minified.getVersions().get(1);
+    assertThat(delta.keys(), contains("version", "dist"));
+    assertThat(delta.getUnset(), contains("require"));
+  }
+
+  @Test
+  public void testExpandReversesMinify() {
+    ComposerPackage minified = underTest.minify(new ComposerPackage("vendor/project", Arrays.asList(v2, v1)));
+
+    ComposerPackage expanded = underTest.expand(minified);
+
+    assertThat(expanded.getVersions(), contains(v2, v1));
+    assertThat(expanded.getVersions().get(1).getUnset(), empty());
+    assertThat(expanded.getVersions().get(1).getAttributes(), is(ImmutableMap.of("license", Arrays.asList("MIT"))));
+  }
+}
@@ -12,7 +12,9 @@
  */
 package org.sonatype.nexus.repository.composer.internal;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.hash.HashCode;
 import com.google.common.io.CharStreams;
 import org.junit.Test;
@@ -24,12 +26,14 @@ import org.sonatype.nexus.common.collect.NestedAttributesMap;
 import org.sonatype.nexus.common.entity.Continuation;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerPackage;
 import org.sonatype.nexus.repository.content.AssetBlob;
 import org.sonatype.nexus.repository.content.fluent.*;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.repository.view.Payload;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -38,15 +42,21 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import static com.google.common.base.Preconditions.checkState;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.mock;
@@ -141,10 +151,16 @@ public class ComposerJsonProcessorTest
   @Mock
   private ComposerJsonMinifier composerJsonMinifier;
 
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+
+  private final ComposerMetrics composerMetrics = new ComposerMetrics(metricRegistry);
+
+  private final ComposerJsonCodec codec = new ComposerJsonCodec();
+
   @Test
   public void rewritePackagesJson() throws Exception {
     when(repository.getUrl()).thenReturn("http://nexus.repo/base/repo");
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
 
     // test 1: packagist.org style
     String original = readStreamToString(getClass().getResourceAsStream("rewritePackagesJson.input1.json"));
@@ -187,7 +203,7 @@ public class ComposerJsonProcessorTest
     when(components.browse(anyInt(), eq("con-tkn-001"))).thenReturn(new ContinuationList("con-tkn-002", component3));
     when(components.browse(anyInt(), eq("con-tkn-002"))).thenReturn(new ContinuationList(""));
 
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
 
     Content output = underTest.generatePackagesFromComponents(repository, components);
 
@@ -202,10 +218,16 @@ public class ComposerJsonProcessorTest
     when(repository.getUrl()).thenReturn("http://nexus.repo/base/repo");
     when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson.getBytes(UTF_8)));
 
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
+    when(repository.getName()).thenReturn("composer-proxy");
     Payload output = underTest.rewriteProviderJson(repository, payload1);
 
     assertEquals(outputJson, readStreamToString(output.openInputStream()), true);
+
+    String prefix = ComposerMetrics.class.getName() + ".composer-proxy.provider.";
+    assertThat(metricRegistry.timer(prefix + "rewrite").getCount(), is(1L));
+    assertThat(metricRegistry.histogram(prefix + "versionCount").getCount(), is(1L));
+    assertThat(metricRegistry.histogram(prefix + "payloadSize").getCount(), is(1L));
   }
 
   @Test
@@ -220,7 +242,7 @@ public class ComposerJsonProcessorTest
     when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson1.getBytes(UTF_8)));
     when(payload2.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson2.getBytes(UTF_8)));
 
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
     Payload output = underTest.mergeProviderJson(repository, Arrays.asList(payload1, payload2), time);
 
     assertEquals(outputJson, readStreamToString(output.openInputStream()), true);
@@ -374,8 +396,11 @@ public class ComposerJsonProcessorTest
     when(components.browse(anyInt(), eq("con-tkn-001"))).thenReturn(new ContinuationList("con-tkn-002", component3, component4));
     when(components.browse(anyInt(), eq("con-tkn-002"))).thenReturn(new ContinuationList(""));
 
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
-    Optional<Content> output = underTest.buildProviderJson(repository, composerContentFacet, components);
+    ComposerJsonProcessor underTest =
+        new ComposerJsonProcessor(codec, composerJsonExtractor, new ComposerJsonMinifier(), composerMetrics);
+    Optional<Content> packageJson = underTest.buildPackageJson(repository, composerContentFacet, components);
+    assertTrue(packageJson.isPresent());
+    Optional<Content> output = underTest.buildProviderJson(repository, singletonList(packageJson.get()));
 
     assertTrue(output.isPresent());
     assertEquals(outputJson, readStreamToString(output.get().openInputStream()), true);
@@ -388,8 +413,10 @@ public class ComposerJsonProcessorTest
 
     when(repository.getUrl()).thenReturn("http://nexus.repo/base/repo");
     when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson.getBytes(UTF_8)));
+    when(composerJsonMinifier.expand(any(ComposerPackage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(composerJsonMinifier.minify(any(ComposerPackage.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
     Payload output = underTest.rewritePackageJson(repository, payload1);
 
     assertEquals(outputJson, readStreamToString(output.openInputStream()), true);
@@ -405,7 +432,7 @@ public class ComposerJsonProcessorTest
     when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson1.getBytes(UTF_8)));
     when(payload2.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson2.getBytes(UTF_8)));
 
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
     Payload output = underTest.mergePackagesJson(repository, Arrays.asList(payload1, payload2));
 
     assertEquals(outputJson, readStreamToString(output.openInputStream()), true);
@@ -426,12 +453,69 @@ public class ComposerJsonProcessorTest
     String inputJson = readStreamToString(getClass().getResourceAsStream("getDistUrl.json"));
     when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson.getBytes(UTF_8)));
 
-    ComposerJsonProcessor underTest = new ComposerJsonProcessor(composerJsonExtractor, composerJsonMinifier);
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
     String distUrl = underTest.getDistUrl("vendor1", "project1", "2.0.0", payload1);
 
     assertThat(distUrl, is("https://git.example.com/zipball/418e708b379598333d0a48954c0fa210437795be"));
   }
 
+  @Test
+  public void getRequiredPackagesByVersion() throws Exception {
+    String inputJson = readStreamToString(getClass().getResourceAsStream("getRequiredPackagesByVersion.json"));
+    when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson.getBytes(UTF_8)));
+
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, new ComposerJsonMinifier(), composerMetrics);
+    Map<String, Set<String>> requiredByVersion = underTest.getRequiredPackagesByVersion("vendor1", "project1", payload1);
+
+    assertThat(new ArrayList<>(requiredByVersion.keySet()), is(asList("v2.0.0", "v1.1.0", "v1.0.0")));
+    assertThat(requiredByVersion.get("v2.0.0"), is(ImmutableSet.of("psr/log", "vendor2/project2")));
+    assertThat(requiredByVersion.get("v1.1.0"), is(ImmutableSet.of("psr/log", "vendor2/project2")));
+    assertThat(requiredByVersion.get("v1.0.0"), is(emptySet()));
+  }
+
+  @Test
+  public void getPackageNames() throws Exception {
+    String inputJson = "{\"packageNames\":[\"vendor1/project1\",\"vendor2/project2\",42]}";
+    when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson.getBytes(UTF_8)));
+
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
+
+    assertThat(underTest.getPackageNames(payload1), is(asList("vendor1/project1", "vendor2/project2")));
+  }
+
+  @Test
+  public void getAvailablePackages() throws Exception {
+    String inputJson = "{\"available-packages\":[\"Vendor1/Project1\"]," +
+        "\"available-package-patterns\":[\"vendor2/*\",\"*/bundle-*\"]}";
+    when(payload1.openInputStream()).thenReturn(new ByteArrayInputStream(inputJson.getBytes(UTF_8)));
+    when(payload2.openInputStream()).thenReturn(new ByteArrayInputStream("{\"packages\":[]}".getBytes(UTF_8)));
+
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
+
+    Predicate<String> available = underTest.getAvailablePackages(payload1);
+    assertThat(available.test("vendor1/project1"), is(true));
+    assertThat(available.test("vendor1/project2"), is(false));
+    assertThat(available.test("vendor2/anything"), is(true));
+    assertThat(available.test("vendor3/bundle-foo"), is(true));
+    assertThat(available.test("vendor3/foo"), is(false));
+    assertThat(underTest.getAvailablePackages(payload2), is(nullValue()));
+  }
+
+  @Test
+  public void generateList() throws Exception {
+    ComposerJsonProcessor underTest = new ComposerJsonProcessor(codec, composerJsonExtractor, composerJsonMinifier, composerMetrics);
+
+    Content output = underTest.generateList(asList("a/z", "a-b/c", "vendor2/other"));
+    ByteArrayOutputStream copied = new ByteArrayOutputStream();
+    try (InputStream in = output.openInputStream()) {
+      output.getPayload().copy(in, copied);
+    }
+    assertEquals("{\"packageNames\":[\"a/z\",\"a-b/c\",\"vendor2/other\"]}", copied.toString("UTF-8"), true);
+
+    output = underTest.generateList(emptyList());
+    assertEquals("{\"packageNames\":[]}", readStreamToString(output.openInputStream()), true);
+  }
+
   private String readStreamToString(final InputStream in) throws IOException {
     try {
       return CharStreams.toString(new InputStreamReader(in, UTF_8));
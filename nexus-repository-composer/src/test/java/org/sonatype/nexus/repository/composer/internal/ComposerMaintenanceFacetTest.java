@@ -33,6 +33,8 @@ import java.util.Set;
 
 import static java.util.Collections.singleton;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ComposerMaintenanceFacetTest
@@ -46,6 +48,7 @@ public class ComposerMaintenanceFacetTest
   private static final String ZIPBALL_PATH = "/" + VENDOR + "/" + PROJECT + "/1.0.0/" + VENDOR + "-" + PROJECT + "-1.0.0.zip";
   private static final String PROVIDER_PATH = "/p/" + VENDOR + "/" + PROJECT + ".json";
   private static final String PACKAGE_PATH = "/p2/" + VENDOR + "/" + PROJECT + ".json";
+  private static final String DEV_PACKAGE_PATH = "/p2/" + VENDOR + "/" + PROJECT + "~dev.json";
 
 
   @Mock
@@ -88,6 +91,7 @@ public class ComposerMaintenanceFacetTest
 
     when(component.namespace()).thenReturn(VENDOR);
     when(component.name()).thenReturn(PROJECT);
+    when(component.version()).thenReturn("1.0.0");
 
     underTest = new ComposerMaintenanceFacet();
     underTest.attach(repository);
@@ -95,8 +99,7 @@ public class ComposerMaintenanceFacetTest
 
   @Test
   public void testDeleteComponent() throws IOException {
-    when(hostedFacet.rebuildPackageJson(VENDOR, PROJECT)).thenReturn(Optional.of(content));
-    when(hostedFacet.rebuildProviderJson(VENDOR, PROJECT)).thenReturn(Optional.of(content));
+    when(hostedFacet.rebuildPackageJson(VENDOR, PROJECT, false)).thenReturn(Optional.of(content));
 
     Set<String> deletedPaths = underTest.deleteComponent(component);
     assertEquals(singleton(ZIPBALL_PATH), deletedPaths);
@@ -104,17 +107,52 @@ public class ComposerMaintenanceFacetTest
 
   @Test
   public void testDeleteComponentLast() throws IOException {
-    when(hostedFacet.rebuildPackageJson(VENDOR, PROJECT)).thenReturn(Optional.empty());
-    when(hostedFacet.rebuildProviderJson(VENDOR, PROJECT)).thenReturn(Optional.empty());
+    when(hostedFacet.rebuildPackageJson(VENDOR, PROJECT, false)).thenReturn(Optional.empty());
 
     Set<String> deletedPaths = underTest.deleteComponent(component);
     assertEquals(new HashSet<>(Arrays.asList(ZIPBALL_PATH, PROVIDER_PATH, PACKAGE_PATH)), deletedPaths);
   }
 
+  @Test
+  public void testDeleteDevComponentLast() throws IOException {
+    when(component.version()).thenReturn("dev-main");
+    when(hostedFacet.rebuildPackageJson(VENDOR, PROJECT, true)).thenReturn(Optional.empty());
+
+    Set<String> deletedPaths = underTest.deleteComponent(component);
+    assertEquals(new HashSet<>(Arrays.asList(ZIPBALL_PATH, PROVIDER_PATH, DEV_PACKAGE_PATH)), deletedPaths);
+    verify(hostedFacet, never()).rebuildPackageJson(VENDOR, PROJECT, false);
+  }
+
   @Test
   public void testDeleteProxyComponent() {
     when(repository.optionalFacet(ComposerHostedFacet.class)).thenReturn(Optional.empty());
     Set<String> deletedPaths = underTest.deleteComponent(component);
     assertEquals(singleton(ZIPBALL_PATH), deletedPaths);
   }
+
+  @Test
+  public void testDeleteComponentsInBatchRebuildsOncePerPackage() throws IOException {
+    when(hostedFacet.rebuildPackageJson(VENDOR, PROJECT, false)).thenReturn(Optional.of(content));
+
+    int deleted = underTest.batched(affected -> {
+      int count = 0;
+      for (int i = 0; i < 3; i++) {
+        count += underTest.deleteComponent(component).size();
+      }
+      verify(hostedFacet, never()).rebuildPackageJson(VENDOR, PROJECT, false);
+      return count;
+    });
+
+    assertEquals(3, deleted);
+    verify(hostedFacet).rebuildPackageJson(VENDOR, PROJECT, false);
+    verify(hostedFacet, never()).rebuildProviderJson(VENDOR, PROJECT);
+  }
+
+  @Test
+  public void testNestedBatchesJoinTheOuterBatch() throws IOException {
+    underTest.batched(outer -> underTest.batched(inner -> underTest.deleteComponent(component)));
+
+    verify(hostedFacet).rebuildPackageJson(VENDOR, PROJECT, false);
+    verify(hostedFacet, never()).rebuildProviderJson(VENDOR, PROJECT);
+  }
 }
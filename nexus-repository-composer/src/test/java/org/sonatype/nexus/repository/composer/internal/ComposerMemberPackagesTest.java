@@ -0,0 +1,138 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.internal.group.ComposerMemberPackages;
+import org.sonatype.nexus.repository.types.HostedType;
+import org.sonatype.nexus.repository.types.ProxyType;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.Status;
+import org.sonatype.nexus.repository.view.ViewFacet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.http.HttpStatus.NOT_FOUND;
+import static org.sonatype.nexus.repository.http.HttpStatus.OK;
+
+public class ComposerMemberPackagesTest
+    extends TestSupport
+{
+  @Mock
+  private ComposerJsonProcessor composerJsonProcessor;
+
+  @Mock
+  private Context context;
+
+  @Mock
+  private Repository hosted;
+
+  @Mock
+  private Repository proxy;
+
+  @Mock
+  private ViewFacet hostedViewFacet;
+
+  @Mock
+  private ViewFacet proxyViewFacet;
+
+  @Mock
+  private Response proxyResponse;
+
+  @Mock
+  private Payload packagesJson;
+
+  private ComposerMemberPackages underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(hosted.getName()).thenReturn("hosted");
+    when(hosted.getType()).thenReturn(new HostedType());
+    when(hosted.facet(ViewFacet.class)).thenReturn(hostedViewFacet);
+    when(proxy.getName()).thenReturn("proxy");
+    when(proxy.getType()).thenReturn(new ProxyType());
+    when(proxy.facet(ViewFacet.class)).thenReturn(proxyViewFacet);
+
+    when(proxyViewFacet.dispatch(any(Request.class), eq(context))).thenReturn(proxyResponse);
+    when(proxyResponse.getStatus()).thenReturn(Status.success(OK));
+    when(proxyResponse.getPayload()).thenReturn(packagesJson);
+
+    underTest = new ComposerMemberPackages(composerJsonProcessor, Time.minutes(5), Time.seconds(30));
+  }
+
+  @Test
+  public void testProxyNotAdvertisingThePackageIsLeftOut() throws Exception {
+    when(composerJsonProcessor.getAvailablePackages(packagesJson)).thenReturn("vendor/project"::equals);
+
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/project"), is(asList(hosted, proxy)));
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/other"), is(singletonList(hosted)));
+
+    verify(proxyViewFacet, times(1)).dispatch(any(Request.class), eq(context));
+    verify(hostedViewFacet, never()).dispatch(any(Request.class), eq(context));
+  }
+
+  @Test
+  public void testProxyWithoutAvailablePackagesIsAlwaysAsked() throws Exception {
+    when(composerJsonProcessor.getAvailablePackages(packagesJson)).thenReturn(null);
+
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/other"), is(asList(hosted, proxy)));
+  }
+
+  @Test
+  public void testProxyIsAskedWhenItsPackagesJsonIsUnavailable() throws Exception {
+    when(proxyResponse.getStatus()).thenReturn(Status.failure(NOT_FOUND));
+
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/other"), is(asList(hosted, proxy)));
+
+    verify(composerJsonProcessor, never()).getAvailablePackages(any());
+  }
+
+  @Test
+  public void testUnreadablePackagesJsonIsNotFetchedAgainWithinFailureTtl() throws Exception {
+    when(proxyViewFacet.dispatch(any(Request.class), eq(context))).thenThrow(new IllegalStateException("down"));
+
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/other"), is(asList(hosted, proxy)));
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/other"), is(asList(hosted, proxy)));
+
+    verify(proxyViewFacet, times(1)).dispatch(any(Request.class), eq(context));
+  }
+
+  @Test
+  public void testUnreadablePackagesJsonIsFetchedAgainAfterFailureTtl() throws Exception {
+    underTest = new ComposerMemberPackages(composerJsonProcessor, Time.minutes(5), Time.millis(0));
+    when(proxyResponse.getStatus()).thenReturn(Status.failure(NOT_FOUND), Status.success(OK));
+    when(composerJsonProcessor.getAvailablePackages(packagesJson)).thenReturn("vendor/project"::equals);
+
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/other"), is(asList(hosted, proxy)));
+    assertThat(underTest.mayServe(context, asList(hosted, proxy), "vendor/other"), is(singletonList(hosted)));
+
+    verify(proxyViewFacet, times(2)).dispatch(any(Request.class), eq(context));
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.internal.ComposerMetrics.Stage;
+import org.sonatype.nexus.repository.manager.RepositoryDeletedEvent;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.composer.AssetKind.PACKAGE;
+import static org.sonatype.nexus.repository.composer.AssetKind.PROVIDER;
+
+public class ComposerMetricsTest
+    extends TestSupport
+{
+  @Mock
+  private Repository deleted;
+
+  @Mock
+  private Repository kept;
+
+  @Mock
+  private RepositoryDeletedEvent event;
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+
+  private final ComposerMetrics underTest = new ComposerMetrics(metricRegistry);
+
+  @Before
+  public void setUp() {
+    when(deleted.getName()).thenReturn("composer-proxy");
+    when(kept.getName()).thenReturn("composer-proxy.kept");
+    when(event.getRepository()).thenReturn(deleted);
+  }
+
+  @Test
+  public void testMetricsOfDeletedRepositoryAreRemoved() {
+    underTest.time(Stage.REWRITE, deleted, PACKAGE).stop();
+    underTest.payloadSize(deleted, PACKAGE, 100L);
+    underTest.versionCount(deleted, PROVIDER, 10);
+    underTest.time(Stage.REWRITE, kept, PACKAGE).stop();
+
+    underTest.on(event);
+
+    assertThat(metricRegistry.getHistograms().keySet(), is(empty()));
+    assertThat(metricRegistry.getTimers().keySet(), contains(
+        "org.sonatype.nexus.repository.composer.internal.ComposerMetrics.composer-proxy.kept.package.rewrite"));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+public class ComposerUpstreamExecutorTest
+    extends TestSupport
+{
+  @Mock
+  private Subject subject;
+
+  private ComposerUpstreamExecutor underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(subject.associateWith(any(Callable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    ThreadContext.bind(subject);
+
+    underTest = new ComposerUpstreamExecutor(true, 1, Time.millis(100));
+    underTest.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    underTest.stop();
+    ThreadContext.unbindSubject();
+  }
+
+  @Test
+  public void testInvokeAllRunsConcurrentlyAndKeepsOrder() throws Exception {
+    CountDownLatch started = new CountDownLatch(2);
+    Callable<String> first = () -> {
+      started.countDown();
+      // only completes if the second call runs at the same time
+      assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+      return "first";
+    };
+    Callable<String> second = () -> {
+      started.countDown();
+      return "second";
+    };
+
+    assertThat(underTest.invokeAll(Arrays.asList(first, second)), is(Arrays.asList("first", "second")));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvokeAllRethrowsFailure() throws Exception {
+    List<Callable<String>> calls = Arrays.asList(() -> "ok", () -> {
+      throw new IOException("failed");
+    });
+    underTest.invokeAll(calls);
+  }
+
+  @Test
+  public void testHostPermitIsReleased() throws Exception {
+    assertThat(underTest.withHostPermit("repo.packagist.org", () -> underTest.availablePermits("repo.packagist.org")),
+        is(0));
+    assertThat(underTest.availablePermits("repo.packagist.org"), is(1));
+  }
+
+  @Test
+  public void testAcquiredHostPermitIsHeldUntilClosed() throws Exception {
+    ComposerUpstreamExecutor.HostPermit permit = underTest.acquireHostPermit("repo.packagist.org");
+    assertThat(underTest.availablePermits("repo.packagist.org"), is(0));
+    permit.close();
+    permit.close();
+    assertThat(underTest.availablePermits("repo.packagist.org"), is(1));
+  }
+
+  @Test(expected = IOException.class)
+  public void testHostPermitTimesOutWhenHostIsBusy() throws Exception {
+    underTest.withHostPermit("codeload.github.com",
+        () -> underTest.withHostPermit("codeload.github.com", () -> "unreachable"));
+  }
+
+  @Test
+  public void testOtherHostsAreNotLimited() throws Exception {
+    assertThat(underTest.withHostPermit("codeload.github.com",
+        () -> underTest.withHostPermit("repo.packagist.org", () -> "ok")), is("ok"));
+  }
+
+  @Test
+  public void testHostsAreNotLimitedUnlessConcurrent() throws Exception {
+    ComposerUpstreamExecutor sequential = new ComposerUpstreamExecutor(false, 1, Time.millis(100));
+
+    assertThat(sequential.withHostPermit("codeload.github.com",
+        () -> sequential.withHostPermit("codeload.github.com", () -> "ok")), is("ok"));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerPackage;
+import org.sonatype.nexus.repository.composer.internal.model.ComposerVersion;
+import org.sonatype.nexus.repository.composer.internal.model.Dist;
+
+import org.junit.Test;
+
+import static java.util.Collections.singletonMap;
+import static java.util.Comparator.comparing;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.NEWEST_FIRST;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.isDevVersion;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.isStableVersion;
+import static org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator.sortKey;
+
+public class ComposerVersionComparatorTest
+    extends TestSupport
+{
+  @Test
+  public void testNewestFirst() {
+    List<String> versions = new ArrayList<>(Arrays.asList(
+        "dev-main", "1.0.0", "v1.10.0", "1.2.0", "1.2.0-beta2", "1.2.0-RC1", "1.2.0-beta10", "1.2.0-alpha1",
+        "1.2.0-patch1", "2.0.x-dev", "not-a-version", "1.2"));
+
+    versions.sort(NEWEST_FIRST);
+
+    assertThat(versions, contains(
+        "v1.10.0", "1.2.0-patch1", "1.2", "1.2.0", "1.2.0-RC1", "1.2.0-beta10", "1.2.0-beta2", "1.2.0-alpha1",
+        "1.0.0", "2.0.x-dev", "dev-main", "not-a-version"));
+  }
+
+  @Test
+  public void testSortKeyRanksReleasesNewestFirst() {
+    List<String> versions = new ArrayList<>(Arrays.asList(
+        "1.0.0", "v1.10.0", "1.2.0", "1.2.0-beta2", "1.2.0-RC1", "1.2.0-beta10", "1.2.0-alpha1", "1.2.0-patch1",
+        "1.2.0-b1", "1.2.0-a2", "1.2.0-pl2", "1.2.0.1", "0.9", "0.0.1"));
+
+    versions.sort(comparing(ComposerVersionComparator::sortKey).reversed());
+
+    assertThat(versions, contains(
+        "v1.10.0", "1.2.0.1", "1.2.0-pl2", "1.2.0-patch1", "1.2.0", "1.2.0-RC1", "1.2.0-beta10", "1.2.0-beta2",
+        "1.2.0-b1", "1.2.0-a2", "1.2.0-alpha1", "1.0.0", "0.9", "0.0.1"));
+    List<String> newestFirst = new ArrayList<>(versions);
+    newestFirst.sort(NEWEST_FIRST);
+    assertThat(versions, is(newestFirst));
+  }
+
+  @Test
+  public void testSortKeyRanksReleasesAboveOtherVersions() {
+    assertThat(sortKey("1.2"), is(sortKey("1.2.0")));
+    assertThat(sortKey("1.10.0-beta2"), is("2" + padded(1) + padded(10) + padded(0) + padded(0) + "1" + padded(2)));
+    assertThat(sortKey("0.0.1-alpha1"), greaterThan(sortKey("dev-main")));
+    assertThat(sortKey("dev-main"), greaterThan(sortKey("not-a-version")));
+    assertThat(sortKey("1.2.3.4.5"), is(sortKey("not-a-version")));
+    assertThat(sortKey("1.123456789012345678901"), is(sortKey("not-a-version")));
+  }
+
+  @Test
+  public void testSortKeyIsCollationIndependent() {
+    for (String version : Arrays.asList("0.0.1", "1.10.0-beta2", "v2.1", "1.0.0-patch1", "20231015120000")) {
+      assertThat(version, sortKey(version).matches("2\\d{101}"), is(true));
+    }
+  }
+
+  @Test
+  public void testIsStableVersion() {
+    for (String version : Arrays.asList("1.0.0", "v2.1", "1.0.0-stable", "1.0.0-patch1", "1.0.0-p2", "1.0.0-pl1")) {
+      assertThat(version, isStableVersion(version), is(true));
+    }
+    for (String version : Arrays.asList(
+        "1.0.0-alpha1", "1.0.0-a2", "1.0.0-beta", "1.0.0-b1", "1.0.0-RC1", "dev-main", "1.x-dev", "not-a-version")) {
+      assertThat(version, isStableVersion(version), is(false));
+    }
+  }
+
+  @Test
+  public void testIsDevVersion() {
+    assertThat(isDevVersion("dev-main"), is(true));
+    assertThat(isDevVersion("2.0.x-dev"), is(true));
+    assertThat(isDevVersion("1.0.0"), is(false));
+    assertThat(isDevVersion("1.0.0-beta1"), is(false));
+  }
+
+  @Test
+  public void testOrderedVersionsMinifySmaller() throws Exception {
+    List<ComposerVersion> versions = new ArrayList<>();
+    for (int major = 1; major <= 5; major++) {
+      for (int minor = 0; minor < 10; minor++) {
+        String version = major + "." + minor + ".0";
+        versions.add(ComposerVersion.builder()
+            .name("vendor/project")
+            .version(version)
+            .dist(new Dist("zip", "https://example.com/" + version + ".zip", "ref" + version, ""))
+            .set("require", singletonMap("php", ">=" + (7 + major / 2) + ".0"))
+            .set("license", Arrays.asList("MIT"))
+            .set("type", major < 3 ? "library" : "composer-plugin")
+            .build());
+      }
+    }
+    Collections.shuffle(versions, new Random(42));
+    int shuffledSize = minifiedSize(versions);
+
+    versions.sort((left, right) -> NEWEST_FIRST.compare(left.getVersion(), right.getVersion()));
+    int orderedSize = minifiedSize(versions);
+
+    assertThat(orderedSize, lessThan(shuffledSize));
+  }
+
+  private static String padded(final int number) {
+    return String.format("%020d", number);
+  }
+
+  private static int minifiedSize(final List<ComposerVersion> versions) throws Exception {
+    ComposerPackage minified = new ComposerJsonMinifier().minify(new ComposerPackage("vendor/project", versions));
+    return new ComposerJsonCodec().writeValueAsString(singletonMap("vendor/project", minified.getVersions()))
+        .length();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest
+    extends TestSupport
+{
+  private final SingleFlight<String> underTest = new SingleFlight<>();
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testFollowersWaitForLeader() throws Exception {
+    CountDownLatch leaderStarted = new CountDownLatch(1);
+    CountDownLatch releaseLeader = new CountDownLatch(1);
+    AtomicInteger leaderCalls = new AtomicInteger();
+
+    Future<String> leader = executor.submit(() -> underTest.execute("key", Time.seconds(10), () -> {
+      leaderCalls.incrementAndGet();
+      leaderStarted.countDown();
+      awaitQuietly(releaseLeader);
+      return "leader";
+    }, () -> "unexpected"));
+
+    leaderStarted.await(10, TimeUnit.SECONDS);
+    assertThat(underTest.isInFlight("key"), is(true));
+
+    Future<String> follower = executor.submit(() -> underTest.execute("key", Time.seconds(10), () -> {
+      leaderCalls.incrementAndGet();
+      return "unexpected";
+    }, () -> "timeout"));
+
+    releaseLeader.countDown();
+
+    assertThat(leader.get(10, TimeUnit.SECONDS), is("leader"));
+    assertThat(follower.get(10, TimeUnit.SECONDS), is("leader"));
+    assertThat(leaderCalls.get(), is(1));
+    assertThat(underTest.isInFlight("key"), is(false));
+  }
+
+  @Test
+  public void testFollowersShareLeaderFailure() throws Exception {
+    CountDownLatch leaderStarted = new CountDownLatch(1);
+    CountDownLatch releaseLeader = new CountDownLatch(1);
+    IOException failure = new IOException("upstream failed");
+
+    Future<String> leader = executor.submit(() -> underTest.execute("key", Time.seconds(10), () -> {
+      leaderStarted.countDown();
+      awaitQuietly(releaseLeader);
+      throw failure;
+    }, () -> "unexpected"));
+
+    leaderStarted.await(10, TimeUnit.SECONDS);
+
+    Future<String> follower = executor.submit(
+        () -> underTest.execute("key", Time.seconds(10), () -> "unexpected", () -> "timeout"));
+
+    releaseLeader.countDown();
+
+    for (Future<String> caller : Arrays.asList(leader, follower)) {
+      try {
+        caller.get(10, TimeUnit.SECONDS);
+        fail("Expected the leader's failure");
+      }
+      catch (ExecutionException e) {
+        assertThat(e.getCause(), is(failure));
+      }
+    }
+    assertThat(underTest.isInFlight("key"), is(false));
+  }
+
+  @Test
+  public void testFollowerTimesOut() throws Exception {
+    CountDownLatch leaderStarted = new CountDownLatch(1);
+    CountDownLatch releaseLeader = new CountDownLatch(1);
+
+    executor.submit(() -> underTest.execute("key", Time.seconds(10), () -> {
+      leaderStarted.countDown();
+      awaitQuietly(releaseLeader);
+      return "leader";
+    }, () -> "unexpected"));
+
+    leaderStarted.await(10, TimeUnit.SECONDS);
+
+    String result = underTest.execute("key", Time.millis(50), () -> "unexpected", () -> "stale");
+    assertThat(result, is("stale"));
+
+    releaseLeader.countDown();
+  }
+
+  @Test
+  public void testDifferentKeysDoNotCoalesce() throws Exception {
+    assertThat(underTest.execute("a", Time.seconds(1), () -> "a", () -> "unexpected"), is("a"));
+    assertThat(underTest.execute("b", Time.seconds(1), () -> "b", () -> "unexpected"), is("b"));
+    assertThat(underTest.isInFlight("a"), is(false));
+  }
+
+  private static void awaitQuietly(final CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.cleanup;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.common.entity.EntityUUID;
+import org.sonatype.nexus.datastore.api.DataSession;
+import org.sonatype.nexus.repository.composer.internal.ComposerVersionComparator;
+import org.sonatype.nexus.repository.composer.store.ComposerComponentDAO;
+import org.sonatype.nexus.repository.composer.store.ComposerContentRepositoryDAO;
+import org.sonatype.nexus.repository.content.store.ComponentData;
+import org.sonatype.nexus.repository.content.store.ContentRepositoryData;
+import org.sonatype.nexus.testdb.DataSessionRule;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.sonatype.nexus.datastore.api.DataStoreManager.DEFAULT_DATASTORE_NAME;
+import static org.sonatype.nexus.repository.content.store.InternalIds.internalComponentId;
+
+/**
+ * Runs the {@link ComposerCleanup} filters against the database, whose ordering decides which versions are retained.
+ */
+public class ComposerCleanupFilterTest
+    extends TestSupport
+{
+  @Rule
+  public DataSessionRule sessionRule = new DataSessionRule()
+      .access(ComposerContentRepositoryDAO.class)
+      .access(ComposerComponentDAO.class);
+
+  private int repositoryId;
+
+  @Before
+  public void setUp() {
+    try (DataSession<?> session = sessionRule.openSession(DEFAULT_DATASTORE_NAME)) {
+      ContentRepositoryData repository = new ContentRepositoryData();
+      repository.setConfigRepositoryId(new EntityUUID(UUID.randomUUID()));
+      repository.setAttributes(new NestedAttributesMap("attributes", new HashMap<>()));
+      session.access(ComposerContentRepositoryDAO.class).createContentRepository(repository);
+      repositoryId = repository.contentRepositoryId();
+
+      ComposerComponentDAO dao = session.access(ComposerComponentDAO.class);
+      for (String version : new String[]{"1.0.0", "1.1", "1.10.0", "1.2.0", "1.2.0-p1", "1.9.0-RC1", "dev-main"}) {
+        createComponent(dao, "vendor", "project", version);
+      }
+      createComponent(dao, "vendor", "other", "0.1");
+      createComponent(dao, "vendor", "other", "0.1.x-dev");
+      session.getTransaction().commit();
+    }
+  }
+
+  @Test
+  public void testUnretainedStableVersionsAreOlderStableReleases() {
+    assertThat(versions(ComposerCleanup.UNRETAINED_STABLE_FILTER,
+            ImmutableMap.of("repositoryId", repositoryId, "retain", 2)),
+        containsInAnyOrder("vendor/project:1.2.0", "vendor/project:1.1", "vendor/project:1.0.0"));
+  }
+
+  @Test
+  public void testStaleDevVersionsAreDevelopmentVersions() {
+    assertThat(versions(ComposerCleanup.STALE_DEV_FILTER,
+            ImmutableMap.of("updatedBefore", OffsetDateTime.now().plusDays(1))),
+        containsInAnyOrder("vendor/project:dev-main", "vendor/other:0.1.x-dev"));
+  }
+
+  private void createComponent(final ComposerComponentDAO dao,
+                               final String namespace,
+                               final String name,
+                               final String version)
+  {
+    ComponentData component = new ComponentData();
+    component.setRepositoryId(repositoryId);
+    component.setNamespace(namespace);
+    component.setName(name);
+    component.setKind("");
+    component.setVersion(version);
+    component.setNormalizedVersion(version);
+    component.setAttributes(new NestedAttributesMap("attributes", new HashMap<>()));
+    dao.createComponent(component, false);
+    dao.updateSortKey(internalComponentId(component), ComposerVersionComparator.sortKey(version));
+  }
+
+  private List<String> versions(final String filter, final Map<String, Object> filterParams) {
+    List<String> versions = new ArrayList<>();
+    try (DataSession<?> session = sessionRule.openSession(DEFAULT_DATASTORE_NAME)) {
+      for (ComponentData component : session.access(ComposerComponentDAO.class)
+          .browseComponents(repositoryId, 100, null, null, filter, filterParams)) {
+        versions.add(component.namespace() + "/" + component.name() + ":" + component.version());
+      }
+    }
+    return versions;
+  }
+}
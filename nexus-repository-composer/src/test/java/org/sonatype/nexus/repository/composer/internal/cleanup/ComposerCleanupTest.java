@@ -0,0 +1,138 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.cleanup;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.function.Function;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.entity.Continuation;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.composer.internal.ComposerMaintenanceFacet;
+import org.sonatype.nexus.repository.content.facet.ContentFacet;
+import org.sonatype.nexus.repository.content.fluent.FluentComponent;
+import org.sonatype.nexus.repository.content.fluent.FluentComponents;
+import org.sonatype.nexus.repository.content.fluent.FluentQuery;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ComposerCleanupTest
+    extends TestSupport
+{
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private ContentFacet contentFacet;
+
+  @Mock
+  private ComposerContentFacet composerContentFacet;
+
+  @Mock
+  private ComposerMaintenanceFacet maintenanceFacet;
+
+  @Mock
+  private FluentComponents components;
+
+  @Mock
+  private FluentQuery<FluentComponent> query;
+
+  @Mock
+  private FluentComponent component1;
+
+  @Mock
+  private FluentComponent component2;
+
+  @Mock
+  private FluentComponent component3;
+
+  private final ComposerCleanup underTest = new ComposerCleanup();
+
+  @Before
+  public void setUp() {
+    when(repository.getName()).thenReturn("composer-hosted");
+    when(repository.facet(ContentFacet.class)).thenReturn(contentFacet);
+    when(repository.facet(ComposerMaintenanceFacet.class)).thenReturn(maintenanceFacet);
+    when(contentFacet.components()).thenReturn(components);
+    when(maintenanceFacet.batched(any())).thenAnswer(
+        invocation -> invocation.getArgument(0, Function.class).apply(new HashSet<>()));
+    when(query.browse(anyInt(), isNull())).thenReturn(new Page("1", component1, component2));
+    when(query.browse(anyInt(), eq("1"))).thenReturn(new Page("2", component3));
+    when(query.browse(anyInt(), eq("2"))).thenReturn(new Page(""));
+  }
+
+  @Test
+  public void testRetainLatestStable() {
+    when(repository.facet(ComposerContentFacet.class)).thenReturn(composerContentFacet);
+    when(composerContentFacet.contentRepositoryId()).thenReturn(7);
+    when(components.byFilter(ComposerCleanup.UNRETAINED_STABLE_FILTER, ImmutableMap.of("repositoryId", 7, "retain", 3)))
+        .thenReturn(query);
+
+    assertThat(underTest.retainLatestStable(repository, 3), is(3));
+
+    verify(composerContentFacet).updateMissingSortKeys();
+    verify(maintenanceFacet).deleteComponent(component1);
+    verify(maintenanceFacet).deleteComponent(component2);
+    verify(maintenanceFacet).deleteComponent(component3);
+  }
+
+  @Test
+  public void testPruneDevVersions() {
+    OffsetDateTime updatedBefore = OffsetDateTime.now().minusDays(30);
+    when(components.byFilter(ComposerCleanup.STALE_DEV_FILTER, ImmutableMap.of("updatedBefore", updatedBefore)))
+        .thenReturn(query);
+
+    assertThat(underTest.pruneDevVersions(repository, updatedBefore), is(3));
+
+    verify(maintenanceFacet).batched(any());
+    verify(maintenanceFacet).deleteComponent(component3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeRetainIsRejected() {
+    underTest.retainLatestStable(repository, -1);
+  }
+
+  private static class Page
+      extends ArrayList<FluentComponent>
+      implements Continuation<FluentComponent>
+  {
+    private final String continuationToken;
+
+    private Page(final String continuationToken, final FluentComponent... components) {
+      super(Arrays.asList(components));
+      this.continuationToken = continuationToken;
+    }
+
+    @Override
+    public String nextContinuationToken() {
+      return continuationToken;
+    }
+  }
+}
@@ -19,21 +19,39 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.AssetKind;
 import org.sonatype.nexus.repository.composer.ComposerContentFacet;
 import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.content.fluent.FluentAsset;
 import org.sonatype.nexus.repository.content.fluent.FluentComponent;
 import org.sonatype.nexus.repository.content.fluent.FluentComponents;
 import org.sonatype.nexus.repository.content.fluent.FluentQuery;
-import org.sonatype.nexus.repository.content.fluent.internal.FluentComponentQueryImpl;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.repository.view.Payload;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.nCopies;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.*;
+import static org.sonatype.nexus.repository.composer.internal.hosted.ComposerHostedFacetImpl.LIST_PAGE_SIZE;
 
 public class ComposerHostedFacetImplTest
     extends TestSupport
@@ -54,6 +72,10 @@ public class ComposerHostedFacetImplTest
 
   private static final String PROVIDER_PATH = "/p/vendor/project.json";
 
+  private static final String PACKAGE_PATH = "/p2/vendor/project.json";
+
+  private static final String DEV_PACKAGE_PATH = "/p2/vendor/project~dev.json";
+
   @Mock
   private Repository repository;
 
@@ -102,26 +124,37 @@ public class ComposerHostedFacetImplTest
   }
 
   @Test
-  public void testGetListJson() throws Exception {
-    // Without filter
-    when(composerJsonProcessor.generateListFromComponents(components)).thenReturn(content);
+  public void testGetListJsonReadsPackagesPageByPage() throws Exception {
+    List<String> first = new ArrayList<>(nCopies(LIST_PAGE_SIZE - 1, "a/z"));
+    first.add("vendor/project");
+    when(composerContentFacet.browsePackageNames(LIST_PAGE_SIZE, null)).thenReturn(first);
+    when(composerContentFacet.browsePackageNames(LIST_PAGE_SIZE, "vendor/project"))
+        .thenReturn(singletonList("vendor2/project2"));
+    ArgumentCaptor<Iterable<String>> names = ArgumentCaptor.forClass(Iterable.class);
+    when(composerJsonProcessor.generateList(names.capture())).thenReturn(content);
+
     assertThat(underTest.getListJson(null), is(content));
+    verify(composerContentFacet, never()).browsePackageNames(anyInt(), any());
 
-    // With filter
-    FluentQuery<FluentComponent> query = mock(FluentComponentQueryImpl.class);
-    when(components.byFilter("namespace LIKE #{filterParams.vendor} AND name LIKE #{filterParams.project}",
-        ImmutableMap.of("vendor", "test", "project", "%"))).thenReturn(query);
-    when(composerJsonProcessor.generateListFromComponents(query)).thenReturn(content);
-    assertThat(underTest.getListJson("test/*"), is(content));
+    List<String> listed = newArrayList(names.getValue());
+    assertThat(listed.size(), is(LIST_PAGE_SIZE + 1));
+    assertThat(listed.subList(LIST_PAGE_SIZE - 1, LIST_PAGE_SIZE + 1), contains("vendor/project", "vendor2/project2"));
+    verify(composerContentFacet, times(2)).browsePackageNames(anyInt(), any());
+  }
 
-    when(components.byFilter("namespace LIKE #{filterParams.vendor} AND name LIKE #{filterParams.project}",
-        ImmutableMap.of("vendor", "%abc%", "project", "pr0_j3cT"))).thenReturn(query);
-    when(composerJsonProcessor.generateListFromComponents(query)).thenReturn(content);
-    assertThat(underTest.getListJson("*abc**/pr0_j3cT"), is(content));
+  @Test
+  public void testGetListJsonWithFilter() throws Exception {
+    when(composerContentFacet.browsePackageNames(LIST_PAGE_SIZE, null))
+        .thenReturn(Arrays.asList("xabcy/pr0-j3cT", "xabcy/pr0_j3cT", "xaby/pr0_j3cT"));
+    ArgumentCaptor<Iterable<String>> names = ArgumentCaptor.forClass(Iterable.class);
+    when(composerJsonProcessor.generateList(names.capture())).thenReturn(content);
+
+    assertThat(underTest.getListJson(" *abc**/pr0_j3cT "), is(content));
+    assertThat(newArrayList(names.getValue()), contains("xabcy/pr0_j3cT"));
 
     // Invalid filter
-    when(composerJsonProcessor.generateListFromComponents(null)).thenReturn(content);
     assertThat(underTest.getListJson("In\\al1d"), is(content));
+    assertThat(newArrayList(names.getValue()), is(empty()));
   }
 
   @Test
@@ -132,18 +165,233 @@ public class ComposerHostedFacetImplTest
 
   @Test
   public void testBuildProviderJson() throws Exception {
+    Content packageJson = mock(Content.class);
+    Content devPackageJson = mock(Content.class);
+    when(composerContentFacet.get(PACKAGE_PATH)).thenReturn(Optional.of(packageJson));
+    when(composerContentFacet.get(DEV_PACKAGE_PATH)).thenReturn(Optional.of(devPackageJson));
+    when(composerJsonProcessor.buildProviderJson(repository, Arrays.asList(packageJson, devPackageJson)))
+        .thenReturn(Optional.of(content));
+
+    Optional<Content> res = underTest.rebuildProviderJson(VENDOR, PROJECT);
+    assertThat(res.isPresent(), is(true));
+    assertThat(res.get(), is(content));
+    verify(composerContentFacet).put(PROVIDER_PATH, content, AssetKind.PROVIDER);
+    verify(composerJsonProcessor, never()).buildPackageJson(any(), any(), any());
+  }
+
+  @Test
+  public void testBuildPackageJsonRemovesProviderJson() throws Exception {
     ArgumentCaptor<String> filter = ArgumentCaptor.forClass(String.class);
     ArgumentCaptor<Map<String, Object>> filterArgs = ArgumentCaptor.forClass(Map.class);
 
     FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    FluentAsset providerJson = mock(FluentAsset.class);
     when(components.byFilter(filter.capture(), filterArgs.capture())).thenReturn(query);
-    when(composerJsonProcessor.buildProviderJson(repository, composerContentFacet, query))
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query))
         .thenReturn(Optional.of(content));
+    when(composerContentFacet.getAsset(PROVIDER_PATH)).thenReturn(Optional.of(providerJson));
 
-    Optional<Content> res = underTest.rebuildProviderJson(VENDOR, PROJECT);
+    Optional<Content> res = underTest.rebuildPackageJson(VENDOR, PROJECT, false);
     assertThat(res.isPresent(), is(true));
     assertThat(res.get(), is(content));
-    assertThat(filter.getValue(), is("namespace = #{filterParams.vendor} AND name = #{filterParams.project}"));
+    assertThat(filter.getValue(), is("namespace = #{filterParams.vendor} AND name = #{filterParams.project} AND "
+        + "NOT (LOWER(version) LIKE 'dev-%' OR LOWER(version) LIKE '%-dev')"));
     assertThat(filterArgs.getValue(), is(ImmutableMap.of("vendor", VENDOR, "project", PROJECT)));
+    verify(composerContentFacet).put(PACKAGE_PATH, content, AssetKind.PACKAGE);
+    verify(providerJson).delete();
+  }
+
+  @Test
+  public void testRebuildOfEmptyPackageJsonKeepsProviderJson() throws Exception {
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    FluentAsset providerJson = mock(FluentAsset.class);
+    when(components.byFilter(anyString(), anyMap())).thenReturn(query);
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query)).thenReturn(Optional.empty());
+    when(composerContentFacet.getAsset(DEV_PACKAGE_PATH)).thenReturn(Optional.empty());
+    when(composerContentFacet.getAsset(PROVIDER_PATH)).thenReturn(Optional.of(providerJson));
+
+    assertThat(underTest.rebuildPackageJson(VENDOR, PROJECT, true).isPresent(), is(false));
+
+    verify(providerJson, never()).delete();
+  }
+
+  @Test
+  public void testEmptyDevPackageJsonIsNotRebuiltOnEveryRead() throws Exception {
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    when(components.byFilter(anyString(), anyMap())).thenReturn(query);
+    when(composerContentFacet.get(DEV_PACKAGE_PATH)).thenReturn(Optional.empty());
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query)).thenReturn(Optional.empty());
+
+    assertThat(underTest.getPackageJson(VENDOR, PROJECT + "~dev"), is(nullValue()));
+    assertThat(underTest.getPackageJson(VENDOR, PROJECT + "~dev"), is(nullValue()));
+
+    verify(composerJsonProcessor, times(1)).buildPackageJson(repository, composerContentFacet, query);
+
+    // an upload of a dev version rebuilds it
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query))
+        .thenReturn(Optional.of(content));
+    underTest.rebuildPackageJson(VENDOR, PROJECT, true);
+    assertThat(underTest.emptyMetadata.getIfPresent(DEV_PACKAGE_PATH), is(nullValue()));
+  }
+
+  @Test
+  public void testGetDevPackageJsonListsDevVersions() throws Exception {
+    ArgumentCaptor<String> filter = ArgumentCaptor.forClass(String.class);
+
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    when(components.byFilter(filter.capture(), anyMap())).thenReturn(query);
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query))
+        .thenReturn(Optional.of(content));
+
+    assertThat(underTest.getPackageJson(VENDOR, PROJECT + "~dev"), is(content));
+    assertThat(filter.getValue(), is("namespace = #{filterParams.vendor} AND name = #{filterParams.project} AND "
+        + "(LOWER(version) LIKE 'dev-%' OR LOWER(version) LIKE '%-dev')"));
+    verify(composerContentFacet).put(DEV_PACKAGE_PATH, content, AssetKind.PACKAGE);
+    verify(composerContentFacet, never()).put(eq(PACKAGE_PATH), any(Content.class), any(AssetKind.class));
+  }
+
+  @Test
+  public void testConcurrentRebuildsAreCoalesced() throws Exception {
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    when(components.byFilter(anyString(), anyMap())).thenReturn(query);
+    when(composerContentFacet.get(PACKAGE_PATH)).thenReturn(Optional.of(content));
+    CountDownLatch building = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger builds = new AtomicInteger();
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query)).thenAnswer(invocation -> {
+      if (builds.incrementAndGet() == 1) {
+        building.countDown();
+        release.await();
+      }
+      return Optional.of(content);
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Future<Optional<Content>> first = executor.submit(() -> underTest.rebuildPackageJson(VENDOR, PROJECT, false));
+      building.await();
+      List<Thread> waiting = new CopyOnWriteArrayList<>();
+      List<Future<Optional<Content>>> queued = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        queued.add(executor.submit(() -> {
+          waiting.add(Thread.currentThread());
+          return underTest.rebuildPackageJson(VENDOR, PROJECT, false);
+        }));
+      }
+      while (waiting.size() < 2 || waiting.stream().anyMatch(thread -> thread.getState() != Thread.State.WAITING)) {
+        Thread.sleep(10L);
+      }
+      release.countDown();
+
+      assertThat(first.get(), is(Optional.of(content)));
+      for (Future<Optional<Content>> rebuild : queued) {
+        assertThat(rebuild.get(), is(Optional.of(content)));
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(builds.get(), is(2));
+    verify(composerContentFacet, times(2)).put(eq(PACKAGE_PATH), eq(content), any(AssetKind.class));
+  }
+
+  @Test
+  public void testConcurrentReadsOfMissingMetadataBuildItOnce() throws Exception {
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    when(components.byFilter(anyString(), anyMap())).thenReturn(query);
+    AtomicReference<Content> stored = new AtomicReference<>();
+    when(composerContentFacet.get(PACKAGE_PATH)).thenAnswer(invocation -> Optional.ofNullable(stored.get()));
+    when(composerContentFacet.put(eq(PACKAGE_PATH), eq(content), any(AssetKind.class))).thenAnswer(invocation -> {
+      stored.set(content);
+      return content;
+    });
+    CountDownLatch building = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger builds = new AtomicInteger();
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query)).thenAnswer(invocation -> {
+      builds.incrementAndGet();
+      building.countDown();
+      release.await();
+      return Optional.of(content);
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Content> first = executor.submit(() -> underTest.getPackageJson(VENDOR, PROJECT));
+      building.await();
+      AtomicReference<Thread> waiting = new AtomicReference<>();
+      Future<Content> second = executor.submit(() -> {
+        waiting.set(Thread.currentThread());
+        return underTest.getPackageJson(VENDOR, PROJECT);
+      });
+      while (waiting.get() == null || waiting.get().getState() != Thread.State.TIMED_WAITING) {
+        Thread.sleep(10L);
+      }
+      release.countDown();
+
+      assertThat(first.get(), is(content));
+      assertThat(second.get(), is(content));
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(builds.get(), is(1));
+  }
+
+  @Test
+  public void testMaterializeMissingMetadata() throws Exception {
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    when(components.byFilter(anyString(), anyMap())).thenReturn(query);
+    when(components.namespaces()).thenReturn(singletonList(VENDOR));
+    when(components.names(VENDOR)).thenReturn(singletonList(PROJECT));
+    when(composerContentFacet.getAsset(PACKAGE_PATH)).thenReturn(Optional.empty());
+    when(composerContentFacet.get(anyString())).thenReturn(Optional.empty());
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query))
+        .thenReturn(Optional.of(content));
+
+    assertThat(underTest.materializeMissingMetadata(), is(2));
+
+    verify(composerContentFacet).put(PACKAGE_PATH, content, AssetKind.PACKAGE);
+    verify(composerContentFacet).put(DEV_PACKAGE_PATH, content, AssetKind.PACKAGE);
+    verify(composerJsonProcessor, never()).buildProviderJson(any(), any());
+  }
+
+  @Test
+  public void testMaterializeMissingMetadataSplitsDevVersionsOffStoredPackageJson() throws Exception {
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    when(components.byFilter(anyString(), anyMap())).thenReturn(query);
+    when(components.namespaces()).thenReturn(singletonList(VENDOR));
+    when(components.names(VENDOR)).thenReturn(singletonList(PROJECT));
+    when(composerContentFacet.getAsset(PACKAGE_PATH)).thenReturn(Optional.of(mock(FluentAsset.class)));
+    when(composerContentFacet.getAsset(DEV_PACKAGE_PATH)).thenReturn(Optional.empty());
+    when(composerContentFacet.get(anyString())).thenReturn(Optional.empty());
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query))
+        .thenReturn(Optional.of(content));
+
+    assertThat(underTest.materializeMissingMetadata(), is(2));
+
+    verify(composerContentFacet).put(DEV_PACKAGE_PATH, content, AssetKind.PACKAGE);
+    verify(composerContentFacet).put(PACKAGE_PATH, content, AssetKind.PACKAGE);
+  }
+
+  @Test
+  public void testMaterializeMissingMetadataLeavesStablePackagesAlone() throws Exception {
+    FluentQuery<FluentComponent> query = mock(FluentQuery.class);
+    when(components.byFilter(anyString(), anyMap())).thenReturn(query);
+    when(components.namespaces()).thenReturn(singletonList(VENDOR));
+    when(components.names(VENDOR)).thenReturn(singletonList(PROJECT));
+    when(composerContentFacet.getAsset(PACKAGE_PATH)).thenReturn(Optional.of(mock(FluentAsset.class)));
+    when(composerContentFacet.getAsset(DEV_PACKAGE_PATH)).thenReturn(Optional.empty());
+    when(composerContentFacet.get(anyString())).thenReturn(Optional.empty());
+    when(composerJsonProcessor.buildPackageJson(repository, composerContentFacet, query)).thenReturn(Optional.empty());
+
+    assertThat(underTest.materializeMissingMetadata(), is(0));
+    assertThat(underTest.materializeMissingMetadata(), is(0));
+
+    verify(composerJsonProcessor, times(1)).buildPackageJson(repository, composerContentFacet, query);
+    verify(composerContentFacet, never()).put(anyString(), any(Content.class), any(AssetKind.class));
+    verify(composerContentFacet, never()).getAsset(PROVIDER_PATH);
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.skyscreamer.jsonassert.JSONAssert.assertEquals;
+
+public class ComposerVersionTest
+    extends TestSupport
+{
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void testReadTypedAndUntypedFields() throws Exception {
+    ComposerVersion version = mapper.readValue("{" +
+        "\"name\":\"vendor/project\"," +
+        "\"version\":\"1.0.0\"," +
+        "\"version_normalized\":\"1.0.0.0\"," +
+        "\"dist\":{\"type\":\"zip\",\"url\":\"https://example.com/1.0.0.zip\",\"reference\":\"abc\"," +
+        "\"shasum\":\"\",\"mirrors\":[{\"url\":\"https://mirror.example.com\"}]}," +
+        "\"source\":{\"type\":\"git\",\"url\":\"https://example.com/project.git\",\"reference\":\"abc\"}," +
+        "\"time\":\"2024-09-03T15:30:00+00:00\"," +
+        "\"require\":{\"php\":\">=8.1\"}," +
+        "\"type\":\"library\"}", ComposerVersion.class);
+
+    assertThat(version.getName(), is("vendor/project"));
+    assertThat(version.getVersion(), is("1.0.0"));
+    assertThat(version.getDist(), is(new Dist("zip", "https://example.com/1.0.0.zip", "abc", "")));
+    assertThat(version.getSource(), is(new Source("git", "https://example.com/project.git", "abc")));
+    assertThat(version.getTime(), is("2024-09-03T15:30:00+00:00"));
+    assertThat(version.getAttributes(), is(ImmutableMap.of(
+        "version_normalized", "1.0.0.0",
+        "require", singletonMap("php", ">=8.1"),
+        "type", "library")));
+    assertThat(version.keys(), contains("name", "version", "dist", "source", "time", "version_normalized", "require",
+        "type"));
+  }
+
+  @Test
+  public void testWriteRoundTrip() throws Exception {
+    String json = "{\"name\":\"vendor/project\",\"version\":\"1.0.0\"," +
+        "\"dist\":{\"type\":\"zip\",\"url\":\"https://example.com/1.0.0.zip\",\"reference\":\"abc\",\"shasum\":\"\"}," +
+        "\"license\":[\"MIT\"],\"uid\":1}";
+
+    ComposerVersion version = mapper.readValue(json, ComposerVersion.class);
+
+    assertEquals(json, mapper.writeValueAsString(version), true);
+  }
+
+  @Test
+  public void testUnsetFields() throws Exception {
+    ComposerVersion version = mapper.readValue("{\"version\":\"1.0.0\",\"dist\":\"__unset\",\"require\":\"__unset\"}",
+        ComposerVersion.class);
+
+    assertThat(version.getDist(), nullValue());
+    assertThat(version.getUnset(), contains("dist", "require"));
+    assertEquals("{\"version\":\"1.0.0\",\"dist\":\"__unset\",\"require\":\"__unset\"}",
+        mapper.writeValueAsString(version), true);
+  }
+
+  @Test
+  public void testCommonStringsAreShared() throws Exception {
+    List<ComposerVersion> versions = Arrays.asList(mapper.readValue(
+        "[{\"name\":\"vendor/project\",\"type\":\"library\"},{\"name\":\"vendor/project\",\"type\":\"library\"}]",
+        ComposerVersion[].class));
+
+    assertThat(versions.get(0).getName(), sameInstance(versions.get(1).getName()));
+    assertThat(versions.get(0).getAttributes().get("type"), sameInstance(versions.get(1).getAttributes().get("type")));
+  }
+
+  @Test
+  public void testWithoutSourceAndWithDist() throws Exception {
+    ComposerVersion version = ComposerVersion.builder()
+        .name("vendor/project")
+        .version("1.0.0")
+        .source(new Source("git", "https://example.com/project.git", "abc"))
+        .dist(new Dist("zip", "https://example.com/1.0.0.zip", "abc", ""))
+        .build();
+
+    ComposerVersion rewritten = version.withoutSource().withDist(new Dist("zip", "http://nexus/1.0.0.zip", "abc", ""));
+
+    assertThat(rewritten.getSource(), nullValue());
+    assertThat(rewritten.getDist().getUrl(), is("http://nexus/1.0.0.zip"));
+    assertThat(version.getSource().getReference(), is("abc"));
+  }
+}
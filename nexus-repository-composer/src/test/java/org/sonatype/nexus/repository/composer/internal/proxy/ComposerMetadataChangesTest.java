@@ -0,0 +1,192 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.cache.CacheInfo;
+import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.content.fluent.FluentAsset;
+import org.sonatype.nexus.repository.proxy.ProxyFacet;
+import org.sonatype.nexus.repository.view.Content;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.composer.internal.ComposerAttributes.P_CHANGES_SINCE;
+
+public class ComposerMetadataChangesTest
+    extends TestSupport
+{
+  private static final String CHANGES_PATH = "/metadata/changes.json";
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private ComposerContentFacet composerContentFacet;
+
+  @Mock
+  private ProxyFacet proxyFacet;
+
+  @Mock
+  private FluentAsset packagesJson;
+
+  @Mock
+  private Content projectJson;
+
+  @Mock
+  private Content devProjectJson;
+
+  private final Map<String, Object> packagesJsonAttributes = new HashMap<>();
+
+  private HttpServer server;
+
+  private CloseableHttpClient httpClient;
+
+  private String changesUrl;
+
+  private final ComposerMetadataChanges underTest = new ComposerMetadataChanges(new ComposerJsonCodec());
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(CHANGES_PATH, this::changes);
+    server.start();
+    changesUrl = "http://127.0.0.1:" + server.getAddress().getPort() + CHANGES_PATH;
+    httpClient = HttpClients.createDefault();
+
+    when(repository.getName()).thenReturn("composer-proxy");
+    when(repository.facet(ComposerContentFacet.class)).thenReturn(composerContentFacet);
+    when(repository.facet(ProxyFacet.class)).thenReturn(proxyFacet);
+    when(composerContentFacet.getAsset("/packages.json")).thenReturn(Optional.of(packagesJson));
+    when(packagesJson.attributes()).thenReturn(new NestedAttributesMap("attributes", packagesJsonAttributes));
+    when(composerContentFacet.get(anyString())).thenReturn(Optional.empty());
+    when(composerContentFacet.get("/p2/vendor/project.json")).thenReturn(Optional.of(projectJson));
+    when(composerContentFacet.get("/p2/vendor/deleted~dev.json")).thenReturn(Optional.of(devProjectJson));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    httpClient.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testFirstPollOnlyRecordsCursor() throws Exception {
+    assertThat(underTest.poll(repository, httpClient, changesUrl), is(0));
+
+    verify(packagesJson).withAttribute(P_CHANGES_SINCE, 1000L);
+    verify(composerContentFacet, never()).setCacheInfo(anyString(), any(), any());
+  }
+
+  @Test
+  public void testPollInvalidatesChangedPackages() throws Exception {
+    packagesJsonAttributes.put(P_CHANGES_SINCE, 1000);
+
+    assertThat(underTest.poll(repository, httpClient, changesUrl), is(2));
+
+    verify(composerContentFacet)
+        .setCacheInfo(eq("/p2/vendor/project.json"), eq(projectJson), argThat(this::isInvalidated));
+    verify(composerContentFacet)
+        .setCacheInfo(eq("/p2/vendor/deleted~dev.json"), eq(devProjectJson), argThat(this::isInvalidated));
+    verify(packagesJson).withAttribute(P_CHANGES_SINCE, 2000L);
+    verifyNoInteractions(proxyFacet);
+  }
+
+  @Test
+  public void testResyncInvalidatesAllCachedContent() throws Exception {
+    packagesJsonAttributes.put(P_CHANGES_SINCE, 2000);
+
+    assertThat(underTest.poll(repository, httpClient, changesUrl), is(0));
+
+    verify(proxyFacet).invalidateProxyCaches();
+    verify(packagesJson).withAttribute(P_CHANGES_SINCE, 3000L);
+  }
+
+  @Test
+  public void testNotPolledUntilPackagesJsonIsCached() throws Exception {
+    when(composerContentFacet.getAsset("/packages.json")).thenReturn(Optional.empty());
+
+    assertThat(underTest.poll(repository, httpClient, changesUrl), is(0));
+
+    verify(composerContentFacet, never()).get(anyString());
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnexpectedResponseFailsThePoll() throws Exception {
+    packagesJsonAttributes.put(P_CHANGES_SINCE, 4000);
+
+    underTest.poll(repository, httpClient, changesUrl);
+  }
+
+  private boolean isInvalidated(final CacheInfo cacheInfo) {
+    return ComposerMetadataChanges.INVALIDATED.equals(cacheInfo.getCacheToken())
+        && cacheInfo.getLastVerified().getMillis() == 0L;
+  }
+
+  private void changes(final HttpExchange exchange) throws IOException {
+    String query = exchange.getRequestURI().getQuery();
+    int status = 200;
+    String body;
+    if (query == null) {
+      status = 400;
+      body = "{\"error\":\"Invalid or missing \\\"since\\\" query parameter\",\"timestamp\":1000}";
+    }
+    else if (query.equals("since=1000")) {
+      body = "{\"actions\":[" +
+          "{\"type\":\"update\",\"package\":\"vendor/project\",\"time\":1500}," +
+          "{\"type\":\"update\",\"package\":\"vendor/uncached\",\"time\":1600}," +
+          "{\"type\":\"delete\",\"package\":\"vendor/deleted\",\"time\":1700}" +
+          "],\"timestamp\":2000}";
+    }
+    else if (query.equals("since=2000")) {
+      body = "{\"actions\":[{\"type\":\"resync\",\"package\":\"*\",\"time\":2500}],\"timestamp\":3000}";
+    }
+    else {
+      status = 500;
+      body = "{}";
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
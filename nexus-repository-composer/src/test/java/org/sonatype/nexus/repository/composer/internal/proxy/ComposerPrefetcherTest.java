@@ -0,0 +1,147 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.ViewFacet;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ComposerPrefetcherTest
+    extends TestSupport
+{
+  @Mock
+  private ComposerJsonProcessor composerJsonProcessor;
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private ViewFacet viewFacet;
+
+  @Mock
+  private Subject subject;
+
+  @Mock
+  private Payload payload;
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+
+  private ComposerPrefetcher underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(repository.getName()).thenReturn("composer-proxy");
+    when(repository.facet(ViewFacet.class)).thenReturn(viewFacet);
+    when(viewFacet.dispatch(any(Request.class))).thenReturn(HttpResponses.ok());
+    when(subject.associateWith(any(Runnable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    ThreadContext.bind(subject);
+
+    Map<String, Set<String>> requiredByVersion = new LinkedHashMap<>();
+    requiredByVersion.put("2.0.0", ImmutableSet.of("psr/log"));
+    requiredByVersion.put("1.0.0", ImmutableSet.of("psr/log", "psr/container"));
+    when(composerJsonProcessor.getRequiredPackagesByVersion("vendor", "project", payload))
+        .thenReturn(requiredByVersion);
+
+    underTest = new ComposerPrefetcher(composerJsonProcessor, metricRegistry, 1, 10, 1000);
+    underTest.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    underTest.stop();
+    ThreadContext.unbindSubject();
+  }
+
+  @Test
+  public void testPrefetchLatestVersionAndDependencies() throws Exception {
+    underTest.prefetch(repository, "vendor", "project", payload, 1, true);
+
+    ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+    verify(viewFacet, timeout(5000).times(2)).dispatch(requests.capture());
+    assertThat(paths(requests.getAllValues()),
+        containsInAnyOrder("/vendor/project/2.0.0/vendor-project-2.0.0.zip", "/p2/psr/log.json"));
+    for (Request request : requests.getAllValues()) {
+      assertThat(request.getAttributes().get(ComposerPrefetcher.PREFETCH, String.class), is("true"));
+    }
+  }
+
+  @Test
+  public void testCompletedCountsFetchesOnly() throws Exception {
+    underTest.prefetch(repository, "vendor", "project", payload, 1, true);
+
+    verify(viewFacet, timeout(5000).times(2)).dispatch(any(Request.class));
+    Counter completed = metricRegistry.counter(MetricRegistry.name(ComposerPrefetcher.class, "completed"));
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (completed.getCount() < 2L && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    Thread.sleep(100L);
+    assertThat(completed.getCount(), is(2L));
+  }
+
+  @Test
+  public void testPrefetchWithoutDependencies() throws Exception {
+    underTest.prefetch(repository, "vendor", "project", payload, 2, false);
+
+    ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+    verify(viewFacet, timeout(5000).times(2)).dispatch(requests.capture());
+    assertThat(paths(requests.getAllValues()), containsInAnyOrder(
+        "/vendor/project/2.0.0/vendor-project-2.0.0.zip", "/vendor/project/1.0.0/vendor-project-1.0.0.zip"));
+  }
+
+  @Test
+  public void testRecentlyQueuedPathsAreNotPrefetchedAgain() throws Exception {
+    underTest.prefetch(repository, "vendor", "project", payload, 2, true);
+
+    verify(viewFacet, timeout(5000).times(4)).dispatch(any(Request.class));
+    assertThat(metricRegistry.meter(MetricRegistry.name(ComposerPrefetcher.class, "queued")).getCount(), is(5L));
+
+    underTest.prefetch(repository, "vendor", "project", payload, 2, true);
+    Thread.sleep(100);
+    verify(viewFacet, times(4)).dispatch(any(Request.class));
+  }
+
+  private static List<String> paths(final List<Request> requests) {
+    return requests.stream().map(Request::getPath).collect(Collectors.toList());
+  }
+}
@@ -12,28 +12,64 @@
  */
 package org.sonatype.nexus.repository.composer.internal.proxy;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.junit.Before;
 import org.junit.Test;
+import org.joda.time.DateTime;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.sonatype.goodies.common.Time;
 import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.common.collect.AttributesMap;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
 import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.cache.CacheController;
 import org.sonatype.nexus.repository.cache.CacheInfo;
 import org.sonatype.nexus.repository.composer.AssetKind;
 import org.sonatype.nexus.repository.composer.ComposerContentFacet;
 import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.composer.internal.ComposerMetrics;
+import org.sonatype.nexus.repository.composer.internal.ComposerUpstreamExecutor;
 import org.sonatype.nexus.repository.content.fluent.FluentAsset;
 import org.sonatype.nexus.repository.view.*;
 import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.repository.composer.AssetKind.*;
 
@@ -46,6 +82,8 @@ public class ComposerProxyFacetImplTest
 
   private static final String PROVIDER_PATH = "/p/vendor/project.json";
 
+  private static final String PACKAGE_PATH = "/p2/vendor/project.json";
+
   private static final String ZIPBALL_PATH = "/vendor/project/version/project-version.zip";
 
   @Mock
@@ -66,6 +104,9 @@ public class ComposerProxyFacetImplTest
   @Mock
   private ComposerJsonProcessor composerJsonProcessor;
 
+  @Mock
+  private ComposerPrefetcher composerPrefetcher;
+
   @Mock
   private Content content;
 
@@ -87,11 +128,19 @@ public class ComposerProxyFacetImplTest
   @Mock
   private Payload payload;
 
+  @Mock
+  private HttpClient httpClient;
+
+  @Mock
+  private CacheController cacheController;
+
   private ComposerProxyFacet underTest;
 
   @Before
   public void setUp() throws Exception {
-    underTest = new ComposerProxyFacet(composerJsonProcessor);
+    underTest = new ComposerProxyFacet(composerJsonProcessor, composerPrefetcher,
+        new ComposerUpstreamExecutor(false, 32, Time.seconds(60)), new MetricRegistry(),
+        new ComposerMetrics(new MetricRegistry()));
     underTest.attach(repository);
 
     when(repository.facet(ComposerContentFacet.class)).thenReturn(composerContentFacet);
@@ -262,6 +311,178 @@ public class ComposerProxyFacetImplTest
     verify(composerContentFacet).put(ZIPBALL_PATH, content, ZIPBALL);
   }
 
+  @Test
+  public void storePackageWithoutPrefetch() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(PACKAGE);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(composerContentFacet.put(PACKAGE_PATH, content, PACKAGE)).thenReturn(content);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project"));
+
+    assertThat(underTest.store(context, content), is(content));
+
+    verifyNoInteractions(composerPrefetcher);
+  }
+
+  @Test
+  public void storePackageWithPrefetch() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(PACKAGE);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(composerContentFacet.put(PACKAGE_PATH, content, PACKAGE)).thenReturn(content);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project"));
+    when(request.getAttributes()).thenReturn(new AttributesMap());
+    underTest.composerConfig.prefetchEnabled = true;
+
+    assertThat(underTest.store(context, content), is(content));
+
+    verify(composerPrefetcher).prefetch(repository, "vendor", "project", content, 3, true);
+  }
+
+  @Test
+  public void storePackageOfPrefetchDoesNotPrefetchAgain() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(PACKAGE);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(composerContentFacet.put(PACKAGE_PATH, content, PACKAGE)).thenReturn(content);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project"));
+    AttributesMap requestAttributes = new AttributesMap();
+    requestAttributes.set(ComposerPrefetcher.PREFETCH, "true");
+    when(request.getAttributes()).thenReturn(requestAttributes);
+    underTest.composerConfig.prefetchEnabled = true;
+
+    assertThat(underTest.store(context, content), is(content));
+
+    verifyNoInteractions(composerPrefetcher);
+  }
+
+  @Test
+  public void storeRecordsUpstreamValidators() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(LIST);
+    when(contextAttributes.get(ComposerProxyFacet.UpstreamValidators.class))
+        .thenReturn(new ComposerProxyFacet.UpstreamValidators("Mon, 19 Oct 2026 10:00:00 GMT", "\"abc\""));
+    when(composerContentFacet.put(LIST_PATH, content, LIST)).thenReturn(content);
+
+    assertThat(underTest.store(context, content), is(content));
+
+    verify(composerContentFacet)
+        .setUpstreamValidators(LIST_PATH, content, "Mon, 19 Oct 2026 10:00:00 GMT", "\"abc\"");
+  }
+
+  @Test
+  public void executeRevalidatesWithUpstreamValidators() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(PACKAGE);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project"));
+    Map<String, Object> upstream = new HashMap<>();
+    upstream.put("last_modified", "Mon, 19 Oct 2026 10:00:00 GMT");
+    upstream.put("etag", "W/\"abc\"");
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("upstream", upstream);
+    when(fluentAsset.attributes()).thenReturn(new NestedAttributesMap("attributes", attributes));
+    when(composerContentFacet.getAsset(PACKAGE_PATH)).thenReturn(Optional.of(fluentAsset));
+
+    HttpGet httpRequest = new HttpGet("https://repo.packagist.org" + PACKAGE_PATH);
+    httpRequest.addHeader("If-Modified-Since", "Tue, 20 Oct 2026 08:00:00 GMT");
+    httpRequest.addHeader("If-None-Match", "\"local\"");
+    HttpResponse notModified = new BasicHttpResponse(HttpVersion.HTTP_1_1, 304, "Not Modified");
+    when(httpClient.execute(httpRequest)).thenReturn(notModified);
+
+    assertThat(underTest.execute(context, httpClient, httpRequest), is(notModified));
+
+    assertThat(httpRequest.getHeaders("If-Modified-Since").length, is(1));
+    assertThat(httpRequest.getFirstHeader("If-Modified-Since").getValue(), is("Mon, 19 Oct 2026 10:00:00 GMT"));
+    assertThat(httpRequest.getHeaders("If-None-Match").length, is(1));
+    assertThat(httpRequest.getFirstHeader("If-None-Match").getValue(), is("W/\"abc\""));
+    verify(contextAttributes, never()).set(eq(ComposerProxyFacet.UpstreamValidators.class), any());
+  }
+
+  @Test
+  public void executeDoesNotAddConditionalHeadersToInitialFetch() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(LIST);
+
+    HttpGet httpRequest = new HttpGet("https://repo.packagist.org" + LIST_PATH);
+    HttpResponse ok = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    ok.addHeader("Last-Modified", "Mon, 19 Oct 2026 10:00:00 GMT");
+    when(httpClient.execute(httpRequest)).thenReturn(ok);
+
+    assertThat(underTest.execute(context, httpClient, httpRequest), is(ok));
+
+    assertThat(httpRequest.getFirstHeader("If-Modified-Since"), is(nullValue()));
+    verifyNoInteractions(composerContentFacet);
+    verify(contextAttributes).set(eq(ComposerProxyFacet.UpstreamValidators.class),
+        argThat(validators -> "Mon, 19 Oct 2026 10:00:00 GMT".equals(validators.lastModified)
+            && validators.etag == null));
+  }
+
+  @Test
+  public void zipballDownloadHoldsUpstreamSlotUntilBodyIsRead() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(ZIPBALL);
+    underTest.upstreamLimiter = new ComposerUpstreamLimiter("composer-proxy", 1, 0L, new MetricRegistry());
+    Subject subject = mock(Subject.class);
+    ThreadContext.bind(subject);
+    try {
+      HttpGet httpRequest = new HttpGet("https://codeload.github.com/vendor/project/legacy.zip/abc");
+      HttpResponse ok = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+      ok.setEntity(new ByteArrayEntity(new byte[]{1, 2, 3}));
+      when(httpClient.execute(httpRequest)).thenReturn(ok);
+
+      HttpResponse response = underTest.execute(context, httpClient, httpRequest);
+
+      assertThat(underTest.upstreamLimiter.getInFlight(), is(1));
+      try (InputStream in = response.getEntity().getContent()) {
+        assertThat(ByteStreams.toByteArray(in).length, is(3));
+        assertThat(underTest.upstreamLimiter.getInFlight(), is(1));
+      }
+      assertThat(underTest.upstreamLimiter.getInFlight(), is(0));
+    }
+    finally {
+      ThreadContext.unbindSubject();
+    }
+  }
+
+  @Test
+  public void metadataFetchHoldsHostPermitUntilBodyIsRead() throws Exception {
+    ComposerUpstreamExecutor upstreamExecutor = new ComposerUpstreamExecutor(true, 1, Time.millis(10));
+    underTest = new ComposerProxyFacet(composerJsonProcessor, composerPrefetcher, upstreamExecutor,
+        new MetricRegistry(), new ComposerMetrics(new MetricRegistry()));
+    underTest.attach(repository);
+    when(contextAttributes.require(AssetKind.class)).thenReturn(LIST);
+
+    HttpGet httpRequest = new HttpGet("https://repo.packagist.org" + LIST_PATH);
+    HttpResponse ok = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    ok.setEntity(new ByteArrayEntity("{\"packageNames\":[]}".getBytes(UTF_8)));
+    when(httpClient.execute(httpRequest)).thenReturn(ok);
+
+    HttpResponse response = underTest.execute(context, httpClient, httpRequest);
+
+    try {
+      upstreamExecutor.acquireHostPermit("repo.packagist.org");
+      fail("Expected the permit to be held until the body is read");
+    }
+    catch (IOException e) {
+      // expected
+    }
+    EntityUtils.consume(response.getEntity());
+    upstreamExecutor.acquireHostPermit("repo.packagist.org").close();
+  }
+
+  @Test
+  public void zipballFetchWithoutBodyGivesBackUpstreamSlot() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(ZIPBALL);
+    underTest.upstreamLimiter = new ComposerUpstreamLimiter("composer-proxy", 1, 0L, new MetricRegistry());
+    Subject subject = mock(Subject.class);
+    ThreadContext.bind(subject);
+    try {
+      HttpGet httpRequest = new HttpGet("https://codeload.github.com/vendor/project/legacy.zip/abc");
+      when(httpClient.execute(httpRequest)).thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 404, "Not Found"));
+
+      underTest.execute(context, httpClient, httpRequest);
+
+      assertThat(underTest.upstreamLimiter.getInFlight(), is(0));
+    }
+    finally {
+      ThreadContext.unbindSubject();
+    }
+  }
+
   @Test
   public void getUrlPackages() throws Exception {
     when(contextAttributes.require(AssetKind.class)).thenReturn(LIST);
@@ -321,4 +542,166 @@ public class ComposerProxyFacetImplTest
 
     underTest.getUrl(context);
   }
+
+  @Test
+  public void getUrlZipballKnownMissingDoesNotDispatch() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(ZIPBALL);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(state.getTokens()).thenReturn(new ImmutableMap.Builder<String, String>()
+        .put("vendor", "vendor")
+        .put("project", "project")
+        .put("version", "version")
+        .put("name", "project-version")
+        .build());
+    underTest.missingMetadata.put(PACKAGE_PATH, true);
+    underTest.missingMetadata.put("/p2/vendor/project~dev.json", true);
+    underTest.missingMetadata.put(PROVIDER_PATH, true);
+
+    try {
+      underTest.getUrl(context);
+      fail("Expected NonResolvableProviderJsonException");
+    }
+    catch (ComposerProxyFacet.NonResolvableProviderJsonException e) {
+      // expected
+    }
+
+    verifyNoInteractions(viewFacet);
+  }
+
+  @Test
+  public void executeRemembersMissingPackage() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(PACKAGE);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project"));
+
+    HttpGet httpRequest = new HttpGet("https://repo.packagist.org" + PACKAGE_PATH);
+    when(httpClient.execute(httpRequest)).thenReturn(new BasicHttpResponse(HttpVersion.HTTP_1_1, 404, "Not Found"));
+
+    underTest.execute(context, httpClient, httpRequest);
+
+    assertThat(underTest.missingMetadata.getIfPresent(PACKAGE_PATH), is(notNullValue()));
+  }
+
+  @Test
+  public void storeForgetsMissingPackage() throws Exception {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(PACKAGE);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(composerContentFacet.put(PACKAGE_PATH, content, PACKAGE)).thenReturn(content);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project"));
+    underTest.missingMetadata.put(PACKAGE_PATH, true);
+
+    underTest.store(context, content);
+
+    assertThat(underTest.missingMetadata.getIfPresent(PACKAGE_PATH), is(nullValue()));
+  }
+
+  @Test
+  public void staleMetadataIsServedWhileRefreshedInBackground() throws Exception {
+    underTest = staleWhileRevalidate(DateTime.now().minusMinutes(5));
+    requestCachedPackage();
+    underTest.refreshExecutor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+    ThreadContext.bind(subject());
+    try {
+      assertThat(underTest.get(context), is(content));
+
+      ArgumentCaptor<Request> refresh = ArgumentCaptor.forClass(Request.class);
+      verify(viewFacet, timeout(5000)).dispatch(refresh.capture());
+      assertThat(refresh.getValue().getPath(), is(PACKAGE_PATH));
+      assertThat(refresh.getValue().getAttributes().get(ComposerProxyFacet.REFRESH, String.class), is("true"));
+    }
+    finally {
+      underTest.refreshExecutor.shutdownNow();
+      ThreadContext.unbindSubject();
+    }
+  }
+
+  @Test
+  public void staleMetadataIsServedWhenRefreshQueueIsFull() throws Exception {
+    underTest = staleWhileRevalidate(DateTime.now().minusMinutes(5));
+    requestCachedPackage();
+    underTest.refreshExecutor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    CountDownLatch release = new CountDownLatch(1);
+    underTest.refreshExecutor.execute(() -> {
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    ThreadContext.bind(subject());
+    try {
+      assertThat(underTest.get(context), is(content));
+
+      verify(viewFacet, never()).dispatch(any(Request.class));
+    }
+    finally {
+      release.countDown();
+      underTest.refreshExecutor.shutdownNow();
+      ThreadContext.unbindSubject();
+    }
+  }
+
+  @Test
+  public void freshContentIsServedFromTheCacheOnce() throws Exception {
+    underTest = staleWhileRevalidate(DateTime.now());
+    requestCachedPackage();
+    when(cacheController.isStale(cacheInfo)).thenReturn(false);
+
+    assertThat(underTest.get(context), is(content));
+
+    verify(composerContentFacet).get(PACKAGE_PATH);
+  }
+
+  @Test
+  public void staleMetadataIsServableOnlyWithinMaxStaleness() throws Exception {
+    underTest = staleWhileRevalidate(DateTime.now().minusMinutes(5));
+    assertThat(underTest.isServableWhileRevalidating(context, content, 60), is(true));
+    assertThat(underTest.isServableWhileRevalidating(context, content, 1), is(false));
+
+    when(cacheController.isStale(cacheInfo)).thenReturn(false);
+    assertThat(underTest.isServableWhileRevalidating(context, content, 60), is(false));
+  }
+
+  /**
+   * Sets up a stale-while-revalidate enabled facet with a cached package JSON last verified at the given time.
+   */
+  private ComposerProxyFacet staleWhileRevalidate(final DateTime lastVerified) {
+    ComposerProxyFacet facet = new ComposerProxyFacet(composerJsonProcessor, composerPrefetcher,
+        new ComposerUpstreamExecutor(false, 32, Time.seconds(60)), new MetricRegistry(),
+        new ComposerMetrics(new MetricRegistry()))
+    {
+      @Override
+      protected CacheController getCacheController(final Context context) {
+        return cacheController;
+      }
+    };
+    facet.attach(repository);
+    facet.composerConfig.staleWhileRevalidate = true;
+
+    AttributesMap contentAttributes = new AttributesMap();
+    contentAttributes.set(CacheInfo.class, cacheInfo);
+    when(content.getAttributes()).thenReturn(contentAttributes);
+    when(cacheInfo.getLastVerified()).thenReturn(lastVerified);
+    when(cacheController.isStale(cacheInfo)).thenReturn(true);
+    return facet;
+  }
+
+  /**
+   * Sets up a request for the cached package JSON.
+   */
+  private void requestCachedPackage() {
+    when(contextAttributes.require(AssetKind.class)).thenReturn(PACKAGE);
+    when(contextAttributes.require(TokenMatcher.State.class)).thenReturn(state);
+    when(state.getTokens()).thenReturn(ImmutableMap.of("vendor", "vendor", "project", "project"));
+    when(request.getPath()).thenReturn(PACKAGE_PATH);
+    when(request.getAttributes()).thenReturn(new AttributesMap());
+    when(composerContentFacet.get(PACKAGE_PATH)).thenReturn(Optional.of(content));
+  }
+
+  private static Subject subject() {
+    Subject subject = mock(Subject.class);
+    when(subject.associateWith(any(Runnable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    return subject;
+  }
 }
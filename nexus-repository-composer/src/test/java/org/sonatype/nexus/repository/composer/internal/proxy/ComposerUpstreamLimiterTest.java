@@ -0,0 +1,117 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import com.codahale.metrics.MetricRegistry;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.sonatype.nexus.repository.composer.internal.proxy.ComposerUpstreamLimiter.SC_TOO_MANY_REQUESTS;
+
+public class ComposerUpstreamLimiterTest
+    extends TestSupport
+{
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+
+  @Test
+  public void testLimitHalvesOnThrottlingAndGrowsBack() throws Exception {
+    ComposerUpstreamLimiter underTest = new ComposerUpstreamLimiter("composer-proxy", 4, 1000L, metricRegistry);
+
+    underTest.acquire("client", 1000L);
+    underTest.release(SC_TOO_MANY_REQUESTS, null);
+    assertThat(underTest.getLimit(), is(2));
+    assertThat(metricRegistry.meter("org.sonatype.nexus.repository.composer.internal.proxy.ComposerUpstreamLimiter"
+        + ".composer-proxy.throttled").getCount(), is(1L));
+
+    for (int i = 0; i < 2; i++) {
+      underTest.acquire("client", 1000L);
+      underTest.release(200, null);
+    }
+    assertThat(underTest.getLimit(), is(3));
+  }
+
+  @Test
+  public void testRetryAfterPausesFetches() throws Exception {
+    ComposerUpstreamLimiter underTest = new ComposerUpstreamLimiter("composer-proxy", 4, 1000L, metricRegistry);
+
+    underTest.acquire("client", 1000L);
+    underTest.release(SC_TOO_MANY_REQUESTS, "1");
+
+    long start = System.nanoTime();
+    underTest.acquire("client", 5000L);
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThan(500L));
+    underTest.release(200, null);
+  }
+
+  @Test(expected = IOException.class)
+  public void testQueuedFetchTimesOut() throws Exception {
+    ComposerUpstreamLimiter underTest = new ComposerUpstreamLimiter("composer-proxy", 1, 1000L, metricRegistry);
+
+    underTest.acquire("client1", 1000L);
+    underTest.acquire("client2", 50L);
+  }
+
+  @Test
+  public void testSlotsAreSharedFairlyBetweenClients() throws Exception {
+    ComposerUpstreamLimiter underTest = new ComposerUpstreamLimiter("composer-proxy", 1, 1000L, metricRegistry);
+    underTest.acquire("busy", 1000L);
+
+    List<String> order = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(4);
+    List<String> clients = asList("busy", "busy", "busy", "other");
+    for (int i = 0; i < clients.size(); i++) {
+      String client = clients.get(i);
+      new Thread(() -> {
+        try {
+          underTest.acquire(client, 5000L);
+          order.add(client);
+          underTest.release(200, null);
+        }
+        catch (IOException e) {
+          order.add("failed");
+        }
+        done.countDown();
+      }).start();
+      // queue the waiters in a known order
+      while (underTest.getQueueDepth() < i + 1) {
+        Thread.sleep(5);
+      }
+    }
+    assertThat(underTest.getQueueDepth(), is(4));
+
+    underTest.release(200, null);
+    assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(order.indexOf("other"), lessThanOrEqualTo(1));
+    assertThat(underTest.getInFlight(), is(0));
+  }
+
+  @Test
+  public void testRetryAfterAsHttpDate() {
+    assertThat(ComposerUpstreamLimiter.parseRetryAfter("120"), is(120_000L));
+    assertThat(ComposerUpstreamLimiter.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"), is(0L));
+    assertThat(ComposerUpstreamLimiter.parseRetryAfter("soon"), is(0L));
+    assertThat(ComposerUpstreamLimiter.parseRetryAfter(null), is(0L));
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.proxy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.composer.ComposerContentFacet;
+import org.sonatype.nexus.repository.composer.internal.ComposerJsonProcessor;
+import org.sonatype.nexus.repository.content.fluent.FluentAsset;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.ViewFacet;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import static java.util.Collections.emptySet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class ComposerWarmupTest
+    extends TestSupport
+{
+  @Mock
+  private ComposerJsonProcessor composerJsonProcessor;
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private ViewFacet viewFacet;
+
+  @Mock
+  private ComposerContentFacet composerContentFacet;
+
+  @Mock
+  private Subject subject;
+
+  @Mock
+  private Payload payload;
+
+  @Mock
+  private Content cachedPackageJson;
+
+  @Mock
+  private FluentAsset cachedZipball;
+
+  private ComposerWarmup underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    when(repository.getName()).thenReturn("composer-proxy");
+    when(repository.facet(ViewFacet.class)).thenReturn(viewFacet);
+    when(repository.facet(ComposerContentFacet.class)).thenReturn(composerContentFacet);
+    when(viewFacet.dispatch(any(Request.class))).thenReturn(HttpResponses.ok(payload));
+    when(composerContentFacet.get(anyString())).thenReturn(Optional.empty());
+    when(composerContentFacet.getAsset(anyString())).thenReturn(Optional.empty());
+    when(subject.associateWith(any(Runnable.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    ThreadContext.bind(subject);
+
+    Map<String, Set<String>> versions = new LinkedHashMap<>();
+    versions.put("3.0.0", emptySet());
+    versions.put("2.0.0", ImmutableSet.of("psr/container"));
+    versions.put("1.0.0", emptySet());
+    when(composerJsonProcessor.getRequiredPackagesByVersion("psr", "log", payload)).thenReturn(versions);
+    when(composerJsonProcessor.getRequiredPackagesByVersion("psr", "log", cachedPackageJson)).thenReturn(versions);
+
+    underTest = new ComposerWarmup(composerJsonProcessor, new MetricRegistry());
+  }
+
+  @After
+  public void tearDown() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Test
+  public void testResolvePackagesFromRemoteListWithFilter() throws Exception {
+    when(composerJsonProcessor.getPackageNames(payload))
+        .thenReturn(Arrays.asList("symfony/console", "psr/log", "symfony/yaml", "invalid"));
+
+    assertThat(underTest.resolvePackages(repository, null, "symfony/*"), contains("symfony/console", "symfony/yaml"));
+
+    ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+    verify(viewFacet).dispatch(request.capture());
+    assertThat(request.getValue().getPath(), is("/packages/list.json"));
+  }
+
+  @Test
+  public void testResolveGivenPackages() throws Exception {
+    assertThat(underTest.resolvePackages(repository, "psr/log, psr/container\npsr/log\n", ""),
+        contains("psr/log", "psr/container"));
+
+    verifyNoInteractions(viewFacet);
+  }
+
+  @Test
+  public void testWarmFetchesPackageJsonAndNewestZipballs() throws Exception {
+    ComposerWarmup.Result result = underTest.warm(repository, Arrays.asList("psr/log"), 2, 2, true);
+
+    ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+    verify(viewFacet, times(3)).dispatch(requests.capture());
+    assertThat(paths(requests.getAllValues()), containsInAnyOrder("/p2/psr/log.json",
+        "/psr/log/3.0.0/psr-log-3.0.0.zip", "/psr/log/2.0.0/psr-log-2.0.0.zip"));
+    assertThat(result.getWarmed(), is(1L));
+    assertThat(result.getZipballs(), is(2L));
+    assertThat(result.getFailed(), is(0L));
+  }
+
+  @Test
+  public void testSkipCachedDoesNotFetchCachedPackages() throws Exception {
+    when(composerContentFacet.get("/p2/psr/log.json")).thenReturn(Optional.of(cachedPackageJson));
+    when(composerContentFacet.getAsset("/psr/log/3.0.0/psr-log-3.0.0.zip")).thenReturn(Optional.of(cachedZipball));
+
+    ComposerWarmup.Result result = underTest.warm(repository, Arrays.asList("psr/log"), 1, 1, true);
+
+    verifyNoInteractions(viewFacet);
+    assertThat(result.getSkipped(), is(1L));
+    assertThat(result.getWarmed(), is(0L));
+  }
+
+  @Test
+  public void testFailedPackagesAreCounted() throws Exception {
+    when(viewFacet.dispatch(any(Request.class))).thenReturn(HttpResponses.notFound());
+
+    ComposerWarmup.Result result = underTest.warm(repository, Arrays.asList("psr/log", "psr/missing"), 1, 2, false);
+
+    assertThat(result.getFailed(), is(2L));
+    assertThat(result.getWarmed(), is(0L));
+  }
+
+  private static List<String> paths(final List<Request> requests) {
+    return requests.stream().map(Request::getPath).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.internal.trace;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Span;
+import org.sonatype.nexus.repository.composer.internal.trace.ComposerTracer.Trace;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ComposerTracerTest
+    extends TestSupport
+{
+  private final ComposerTracer underTest = new ComposerTracer(true, 3);
+
+  @Test
+  public void testNestedSpansAndDispatches() throws Exception {
+    try (Span request = underTest.begin("composer-group", "GET", "/p2/vendor/project.json")) {
+      try (Span member = underTest.begin("composer-proxy", "GET", "/p2/vendor/project.json")) {
+        try (Span upstream = underTest.span("upstream", "https://repo.packagist.org/p2/vendor/project.json")) {
+          // fetching
+        }
+        try (Span store = underTest.span("store", "/p2/vendor/project.json")) {
+          // storing
+        }
+      }
+      try (Span merge = underTest.span("merge", null)) {
+        // merging
+      }
+    }
+
+    List<Map<String, Object>> traces = underTest.slowest(10);
+    assertThat(traces, hasSize(1));
+    assertThat(traces.get(0).get("repository"), is("composer-group"));
+    assertThat(spans(traces.get(0), "name"), contains(
+        "dispatch composer-proxy GET /p2/vendor/project.json",
+        "upstream https://repo.packagist.org/p2/vendor/project.json",
+        "store /p2/vendor/project.json",
+        "merge"));
+    assertThat(spans(traces.get(0), "depth"), contains(1, 2, 2, 1));
+    assertThat(underTest.currentTrace(), nullValue());
+  }
+
+  @Test
+  public void testTraceContinuedOnAnotherThread() throws Exception {
+    try (Span request = underTest.begin("composer-group", "GET", "/packages.json")) {
+      Trace trace = underTest.currentTrace();
+      Thread thread = new Thread(() -> {
+        try (Span member = underTest.continueTrace(trace, "member", "composer-hosted")) {
+          try (Span dispatch = underTest.begin("composer-hosted", "GET", "/packages.json")) {
+            // serving
+          }
+        }
+      });
+      thread.start();
+      thread.join();
+    }
+
+    List<Map<String, Object>> traces = underTest.slowest(10);
+    assertThat(spans(traces.get(0), "name"),
+        contains("member composer-hosted", "dispatch composer-hosted GET /packages.json"));
+    assertThat(spans(traces.get(0), "depth"), contains(1, 2));
+  }
+
+  @Test
+  public void testSlowestOfRecentTraces() throws Exception {
+    for (long sleep : new long[]{0L, 30L, 10L, 20L}) {
+      try (Span request = underTest.begin("composer-proxy", "GET", "/" + sleep)) {
+        Thread.sleep(sleep);
+      }
+    }
+
+    List<Map<String, Object>> traces = underTest.slowest(2);
+    assertThat(traces, hasSize(2));
+    assertThat(traces.get(0).get("path"), is("/30"));
+    assertThat(traces.get(1).get("path"), is("/20"));
+  }
+
+  @Test
+  public void testSpansOutsideOfTracesAreNotRecorded() throws Exception {
+    try (Span span = underTest.span("cache", "/packages.json")) {
+      // not traced
+    }
+
+    assertThat(underTest.slowest(10), empty());
+  }
+
+  @Test
+  public void testDisabledTracerRecordsNothing() throws Exception {
+    ComposerTracer disabled = new ComposerTracer(false, 3);
+    try (Span request = disabled.begin("composer-proxy", "GET", "/packages.json")) {
+      assertThat(disabled.currentTrace(), nullValue());
+    }
+
+    assertThat(disabled.slowest(10), empty());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> spans(final Map<String, Object> trace, final String key) {
+    return ((List<Map<String, Object>>) trace.get("spans")).stream()
+        .map(span -> span.get(key))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2018-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.composer.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+import org.sonatype.nexus.common.entity.EntityUUID;
+import org.sonatype.nexus.datastore.api.DataSession;
+import org.sonatype.nexus.repository.content.store.ComponentData;
+import org.sonatype.nexus.repository.content.store.ContentRepositoryData;
+import org.sonatype.nexus.testdb.DataSessionRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.sonatype.nexus.datastore.api.DataStoreManager.DEFAULT_DATASTORE_NAME;
+
+public class ComposerComponentDAOTest
+    extends TestSupport
+{
+  @Rule
+  public DataSessionRule sessionRule = new DataSessionRule()
+      .access(ComposerContentRepositoryDAO.class)
+      .access(ComposerComponentDAO.class);
+
+  private int repositoryId;
+
+  private int otherRepositoryId;
+
+  @Before
+  public void setUp() {
+    try (DataSession<?> session = sessionRule.openSession(DEFAULT_DATASTORE_NAME)) {
+      repositoryId = createRepository(session);
+      otherRepositoryId = createRepository(session);
+
+      ComposerComponentDAO dao = session.access(ComposerComponentDAO.class);
+      createComponent(dao, repositoryId, "vendor", "project", "1.0.0");
+      createComponent(dao, repositoryId, "vendor", "project", "1.1.0");
+      createComponent(dao, repositoryId, "vendor", "project-b", "1.0.0");
+      createComponent(dao, repositoryId, "vendor-b", "project", "1.0.0");
+      createComponent(dao, repositoryId, "a", "z", "1.0.0");
+      createComponent(dao, otherRepositoryId, "other", "project", "1.0.0");
+      session.getTransaction().commit();
+    }
+  }
+
+  @Test
+  public void testBrowsePackageNamesContinuesAfterTheLastPackage() {
+    try (DataSession<?> session = sessionRule.openSession(DEFAULT_DATASTORE_NAME)) {
+      ComposerComponentDAO dao = session.access(ComposerComponentDAO.class);
+
+      List<String> packageNames = new ArrayList<>();
+      List<String> page = dao.browsePackageNames(repositoryId, 2, null, null);
+      while (!page.isEmpty()) {
+        assertThat(page.size() <= 2, is(true));
+        packageNames.addAll(page);
+        String[] last = page.get(page.size() - 1).split("/", 2);
+        page = dao.browsePackageNames(repositoryId, 2, last[0], last[1]);
+      }
+
+      assertThat(packageNames, contains("a/z", "vendor/project", "vendor/project-b", "vendor-b/project"));
+      assertThat(dao.browsePackageNames(repositoryId, 10, "vendor-b", "project"), is(empty()));
+    }
+  }
+
+  private static int createRepository(final DataSession<?> session) {
+    ContentRepositoryData repository = new ContentRepositoryData();
+    repository.setConfigRepositoryId(new EntityUUID(UUID.randomUUID()));
+    repository.setAttributes(new NestedAttributesMap("attributes", new HashMap<>()));
+    session.access(ComposerContentRepositoryDAO.class).createContentRepository(repository);
+    return repository.contentRepositoryId();
+  }
+
+  private static void createComponent(final ComposerComponentDAO dao,
+                                      final int repositoryId,
+                                      final String namespace,
+                                      final String name,
+                                      final String version)
+  {
+    ComponentData component = new ComponentData();
+    component.setRepositoryId(repositoryId);
+    component.setNamespace(namespace);
+    component.setName(name);
+    component.setKind("");
+    component.setVersion(version);
+    component.setNormalizedVersion(version);
+    component.setAttributes(new NestedAttributesMap("attributes", new HashMap<>()));
+    dao.createComponent(component, false);
+  }
+}